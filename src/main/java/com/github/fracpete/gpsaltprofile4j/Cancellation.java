@@ -0,0 +1,242 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Cancellation.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Token for stopping a conversion early, either on request or once its
+ * deadline has passed. The reading, generating and writing loops check
+ * the token every {@link #INTERVAL} iterations and stop with an
+ * {@link InterruptedIOException}, freeing up the thread. An interrupted
+ * thread counts as cancelled as well. Thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class Cancellation {
+
+  /**
+   * Completes the futures of {@link #async(Callable, Executor)} once their
+   * deadline has passed, created on first use.
+   */
+  protected static class Timer {
+
+    /** the shared timer thread. */
+    protected static final ScheduledThreadPoolExecutor INSTANCE;
+    static {
+      INSTANCE = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+	Thread thread = new Thread(r, Cancellation.class.getSimpleName() + "-timer");
+	thread.setDaemon(true);
+	return thread;
+      });
+      INSTANCE.setRemoveOnCancelPolicy(true);
+    }
+  }
+
+  /** the number of loop iterations between checks. */
+  public static final int INTERVAL = 4096;
+
+  /** the token that never stops a conversion (unless interrupted). */
+  public static final Cancellation NONE = new Cancellation(false, 0L);
+
+  /** whether the token can be cancelled. */
+  protected final boolean m_Cancellable;
+
+  /** the deadline (see {@link System#nanoTime()}), only if timeout. */
+  protected final long m_Deadline;
+
+  /** whether there is a deadline. */
+  protected final boolean m_HasDeadline;
+
+  /** whether cancelled. */
+  protected volatile boolean m_Cancelled;
+
+  /**
+   * Initializes the token without deadline.
+   */
+  public Cancellation() {
+    this(true, 0L);
+  }
+
+  /**
+   * Initializes the token with a deadline.
+   *
+   * @param timeout	the timeout from now, 0 or less for none
+   * @param unit	the unit of the timeout
+   */
+  public Cancellation(long timeout, TimeUnit unit) {
+    this(true, unit.toNanos(timeout));
+  }
+
+  /**
+   * Initializes the token.
+   *
+   * @param cancellable	whether the token can be cancelled
+   * @param timeout	the timeout in nanoseconds, 0 or less for none
+   */
+  protected Cancellation(boolean cancellable, long timeout) {
+    m_Cancellable = cancellable;
+    m_HasDeadline = (timeout > 0);
+    m_Deadline    = m_HasDeadline ? System.nanoTime() + timeout : 0L;
+    m_Cancelled   = false;
+  }
+
+  /**
+   * Requests the conversion to stop.
+   */
+  public void cancel() {
+    if (m_Cancellable)
+      m_Cancelled = true;
+  }
+
+  /**
+   * Returns whether the conversion was cancelled.
+   *
+   * @return		true if cancelled
+   */
+  public boolean isCancelled() {
+    return m_Cancelled;
+  }
+
+  /**
+   * Returns whether the deadline has passed.
+   *
+   * @return		true if past the deadline
+   */
+  public boolean isExpired() {
+    return m_HasDeadline && (System.nanoTime() - m_Deadline >= 0);
+  }
+
+  /**
+   * Returns whether the conversion should stop, i.e., it got cancelled,
+   * the deadline has passed or the current thread got interrupted.
+   *
+   * @return		true if to stop
+   */
+  public boolean isStopped() {
+    return m_Cancelled || isExpired() || Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * Checks whether the conversion should stop.
+   *
+   * @throws InterruptedIOException	if to stop
+   * @see		#isStopped()
+   */
+  public void check() throws InterruptedIOException {
+    if (m_Cancelled)
+      throw new InterruptedIOException("Cancelled!");
+    if (isExpired())
+      throw new InterruptedIOException("Deadline exceeded!");
+    if (Thread.currentThread().isInterrupted())
+      throw new InterruptedIOException("Interrupted!");
+  }
+
+  /**
+   * Runs the task on the executor. Cancelling the returned future cancels
+   * the token and interrupts the task if running, which then stops at its
+   * next check. Once the deadline passes, the future completes with a
+   * {@link TimeoutException} right away, with the token and the task
+   * stopped as when cancelled, i.e., the caller gets freed up even if the
+   * task itself does not check the token (eg reading via gpsformats4j).
+   *
+   * @param task	the task to run, should check this token
+   * @param executor	the executor to run the task on
+   * @return		the future
+   */
+  public <T> CompletableFuture<T> async(final Callable<T> task, Executor executor) {
+    final CompletableFuture<T>	result;
+    final Thread[]		worker;
+    final ScheduledFuture<?>	timeout;
+
+    result = new CompletableFuture<>();
+    worker = new Thread[1];
+    if (m_HasDeadline) {
+      timeout = Timer.INSTANCE.schedule(() -> {
+	if (result.completeExceptionally(new TimeoutException("Deadline exceeded!")))
+	  stop(worker);
+      }, m_Deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+    else {
+      timeout = null;
+    }
+    result.whenComplete((value, error) -> {
+      if (timeout != null)
+	timeout.cancel(false);
+      if (result.isCancelled())
+	stop(worker);
+    });
+    try {
+      executor.execute(() -> {
+	synchronized (worker) {
+	  // cancelled or timed out while queued?
+	  if (result.isDone())
+	    return;
+	  worker[0] = Thread.currentThread();
+	}
+	try {
+	  result.complete(task.call());
+	}
+	catch (Throwable t) {
+	  if (isExpired())
+	    result.completeExceptionally(new TimeoutException("Deadline exceeded!"));
+	  else
+	    result.completeExceptionally(t);
+	}
+	finally {
+	  synchronized (worker) {
+	    // don't pass on our interrupt to the next task of the thread
+	    if (worker[0] == null)
+	      Thread.interrupted();
+	    worker[0] = null;
+	  }
+	}
+      });
+    }
+    catch (Exception e) {
+      result.completeExceptionally(e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Cancels the token and interrupts the task, if still running.
+   *
+   * @param worker	the thread running the task, null if none
+   */
+  protected void stop(Thread[] worker) {
+    cancel();
+    synchronized (worker) {
+      if (worker[0] != null) {
+	worker[0].interrupt();
+	worker[0] = null;
+      }
+    }
+  }
+}
@@ -15,30 +15,43 @@
 
 /*
  * Generate.java
- * Copyright (C) 2018-2025 FracPete
+ * Copyright (C) 2018-2026 FracPete
  */
 
 package com.github.fracpete.gpsaltprofile4j;
 
-import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsaltprofile4j.dem.ElevationCorrection;
+import com.github.fracpete.gpsaltprofile4j.dem.TileCache;
+import com.github.fracpete.gpsaltprofile4j.formats.CSV;
+import com.github.fracpete.gpsaltprofile4j.io.ErrorPolicy;
+import com.github.fracpete.gpsaltprofile4j.io.ParallelTraceReader;
+import com.github.fracpete.gpsaltprofile4j.io.PointHandler;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
 import com.github.fracpete.gpsformats4j.core.BaseObject;
 import com.github.fracpete.gpsformats4j.core.OptionHandler;
-import com.github.fracpete.gpsformats4j.core.OptionUtils;
-import com.grum.geocalc.Coordinate;
-import com.grum.geocalc.EarthCalc;
-import com.grum.geocalc.Point;
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.helper.HelpScreenException;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.Namespace;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.csv.CSVRecordFactory;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Generation class.
@@ -49,6 +62,9 @@ public class Generate
   extends BaseObject
   implements OptionHandler {
 
+  /** the file name for reading from stdin or writing to stdout. */
+  public static final String STDIO = "-";
+
   public static final String INPUT_FILE = "in_file";
 
   public static final String INPUT_FORMAT = "in_format";
@@ -61,6 +77,24 @@ public class Generate
 
   public static final String OUTPUT_OPTIONS = "out_options";
 
+  public static final String DEM_DIR = "dem_dir";
+
+  public static final String DEM_MODE = "dem_mode";
+
+  public static final String DEM_WEIGHT = "dem_weight";
+
+  public static final String DEM_CACHE = "dem_cache";
+
+  public static final String THREADS = "threads";
+
+  public static final String STORAGE = "storage";
+
+  public static final String MEMORY_BUDGET = "memory_budget";
+
+  public static final String TMP_DIR = "tmp_dir";
+
+  public static final String ON_ERROR = "on_error";
+
   /** the key for the longitude. */
   public final static String KEY_LON = "Longitude";
 
@@ -79,14 +113,41 @@ public class Generate
   /** the input options. */
   protected String m_InputOptions;
 
-  /** the output file. */
-  protected File m_OutputFile;
+  /** the output files. */
+  protected File[] m_OutputFiles;
+
+  /** the output formats, one per output file. */
+  protected Class[] m_OutputFormats;
+
+  /** the output options, none or one per output file. */
+  protected String[] m_OutputOptions;
+
+  /** the directory with the DEM tiles, null if no correction. */
+  protected File m_DEMDir;
+
+  /** how to apply the DEM elevation. */
+  protected ElevationCorrection.Mode m_DEMMode;
+
+  /** the weight of the DEM elevation when blending. */
+  protected double m_DEMWeight;
+
+  /** the maximum number of DEM tiles to keep mapped. */
+  protected int m_DEMCache;
+
+  /** the number of threads for reading (0 = all cores, 1 = sequential). */
+  protected int m_Threads;
 
-  /** the output format. */
-  protected Class m_OutputFormat;
+  /** where to keep the profile columns. */
+  protected Storage.Mode m_Storage;
 
-  /** the output options. */
-  protected String m_OutputOptions;
+  /** the memory budget for the profile columns in MB (-1 = unlimited). */
+  protected int m_MemoryBudget;
+
+  /** the directory for spill files, null for the system's temp directory. */
+  protected File m_TmpDir;
+
+  /** how to handle malformed records. */
+  protected ErrorPolicy m_OnError;
 
   /** whether help got requested. */
   protected boolean m_HelpRequested;
@@ -102,6 +163,19 @@ public class Generate
 
     super.initialize();
 
+    m_OutputFiles   = new File[0];
+    m_OutputFormats = new Class[0];
+    m_OutputOptions = new String[0];
+    m_DEMDir    = null;
+    m_DEMMode   = ElevationCorrection.Mode.REPLACE;
+    m_DEMWeight = ElevationCorrection.DEFAULT_WEIGHT;
+    m_DEMCache  = TileCache.DEFAULT_SIZE;
+    m_Threads   = 1;
+    m_Storage      = Storage.Mode.HEAP;
+    m_MemoryBudget = -1;
+    m_TmpDir       = null;
+    m_OnError      = ErrorPolicy.FAIL;
+
     formatsIn = new String[com.github.fracpete.gpsformats4j.formats.Formats.allFormats().length];
     for (i = 0; i < com.github.fracpete.gpsformats4j.formats.Formats.allFormats().length; i++)
       formatsIn[i] = com.github.fracpete.gpsformats4j.formats.Formats.allFormats()[i].getSimpleName();
@@ -119,7 +193,7 @@ public class Generate
       .dest(INPUT_FILE)
       .required(true)
       .type(String.class)
-      .help("The GPS input file to use.");
+      .help("The GPS input file to use; use '" + STDIO + "' to read from stdin.");
     m_Parser.addArgument("--" + INPUT_FORMAT)
       .dest(INPUT_FORMAT)
       .required(true)
@@ -139,20 +213,87 @@ public class Generate
       .dest(OUTPUT_FILE)
       .required(true)
       .type(String.class)
-      .help("The output file to generate.");
+      .action(Arguments.append())
+      .help("The output file to generate; can be specified multiple times, generating all outputs from a single pass over the input. Use '" + STDIO + "' to write to stdout.");
     m_Parser.addArgument("--" + OUTPUT_FORMAT)
       .dest(OUTPUT_FORMAT)
       .required(true)
       .type(String.class)
       .choices(formatsOut)
-      .help("The output format.");
+      .action(Arguments.append())
+      .help("The output format, one per output file.");
     m_Parser.addArgument("--" + OUTPUT_OPTIONS)
       .metavar("<options>")
       .dest(OUTPUT_OPTIONS)
       .required(false)
       .type(String.class)
-      .setDefault("")
-      .help("The options for the output format, if supported. Blank-separated list of key=value pairs.");
+      .action(Arguments.append())
+      .help("The options for the output format, if supported. Blank-separated list of key=value pairs. Either omit or specify once per output file.");
+
+    m_Parser.addArgument("--" + DEM_DIR)
+      .metavar("<dir>")
+      .dest(DEM_DIR)
+      .required(false)
+      .type(String.class)
+      .help("The directory with SRTM tiles in HGT format (eg N47W123.hgt) to correct the elevation with.");
+    m_Parser.addArgument("--" + DEM_MODE)
+      .dest(DEM_MODE)
+      .required(false)
+      .type(String.class)
+      .choices(ElevationCorrection.Mode.REPLACE.name(), ElevationCorrection.Mode.BLEND.name(), ElevationCorrection.Mode.FILL.name())
+      .setDefault(ElevationCorrection.Mode.REPLACE.name())
+      .help("How to apply the DEM elevation: replace the recorded one, blend the two or only fill in missing elevations.");
+    m_Parser.addArgument("--" + DEM_WEIGHT)
+      .metavar("<0-1>")
+      .dest(DEM_WEIGHT)
+      .required(false)
+      .type(Double.class)
+      .setDefault(ElevationCorrection.DEFAULT_WEIGHT)
+      .help("The weight of the DEM elevation when blending.");
+    m_Parser.addArgument("--" + DEM_CACHE)
+      .metavar("<tiles>")
+      .dest(DEM_CACHE)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(TileCache.DEFAULT_SIZE)
+      .help("The maximum number of DEM tiles to keep memory-mapped.");
+
+    m_Parser.addArgument("--" + THREADS)
+      .metavar("<num>")
+      .dest(THREADS)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(1)
+      .help("The number of threads for reading GPX/TCX files in parallel; 1 reads sequentially using the input format (stdin then gets spooled), 0 uses all available cores.");
+
+    m_Parser.addArgument("--" + STORAGE)
+      .dest(STORAGE)
+      .required(false)
+      .type(String.class)
+      .choices(Storage.Mode.HEAP.name(), Storage.Mode.OFFHEAP.name())
+      .setDefault(Storage.Mode.HEAP.name())
+      .help("Where to keep the profile columns while within the memory budget: on the heap or in direct memory (see -XX:MaxDirectMemorySize).");
+    m_Parser.addArgument("--" + MEMORY_BUDGET)
+      .metavar("<MB>")
+      .dest(MEMORY_BUDGET)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(-1)
+      .help("The memory budget for the profile columns in MB, beyond which columns get spilled to memory-mapped temporary files; -1 for unlimited.");
+    m_Parser.addArgument("--" + TMP_DIR)
+      .metavar("<dir>")
+      .dest(TMP_DIR)
+      .required(false)
+      .type(String.class)
+      .help("The directory for the spill files, uses the system's temp directory if not specified.");
+
+    m_Parser.addArgument("--" + ON_ERROR)
+      .dest(ON_ERROR)
+      .required(false)
+      .type(String.class)
+      .choices(ErrorPolicy.SKIP.name(), ErrorPolicy.INTERPOLATE.name(), ErrorPolicy.FAIL.name())
+      .setDefault(ErrorPolicy.FAIL.name())
+      .help("How to handle records with malformed coordinates or elevation: skip them, interpolate the elevation (records with malformed coordinates get skipped) or fail.");
   }
 
   /**
@@ -210,48 +351,102 @@ public class Generate
   }
 
   /**
-   * Sets the output file.
+   * Sets the output file, replacing any others.
    * 
    * @param value	the file
    */
   public void setOutputFile(File value) {
-    m_OutputFile = value;
+    m_OutputFiles = new File[]{value};
   }
 
   /**
-   * Returns the output file.
+   * Returns the (first) output file.
    * 
-   * @return		the file
+   * @return		the file, null if none
    */
   public File getOutputFile() {
-    return m_OutputFile;
+    return (m_OutputFiles.length == 0) ? null : m_OutputFiles[0];
+  }
+
+  /**
+   * Sets the output files.
+   *
+   * @param value	the files
+   */
+  public void setOutputFiles(File[] value) {
+    m_OutputFiles = value.clone();
+  }
+
+  /**
+   * Returns the output files.
+   *
+   * @return		the files
+   */
+  public File[] getOutputFiles() {
+    return m_OutputFiles.clone();
   }
 
   /**
-   * Sets the output format.
+   * Sets the output format, replacing any others.
    * 
    * @param value	the format
    */
   public void setOutputFormat(Class value) {
-    m_OutputFormat = value;
+    m_OutputFormats = new Class[]{value};
   }
 
   /**
-   * Returns the output format.
+   * Returns the (first) output format.
    * 
-   * @return		the format
+   * @return		the format, null if none
    */
   public Class getOutputFormat() {
-    return m_OutputFormat;
+    return (m_OutputFormats.length == 0) ? null : m_OutputFormats[0];
+  }
+
+  /**
+   * Sets the output formats, one per output file.
+   *
+   * @param value	the formats
+   */
+  public void setOutputFormats(Class[] value) {
+    m_OutputFormats = value.clone();
+  }
+
+  /**
+   * Returns the output formats.
+   *
+   * @return		the formats
+   */
+  public Class[] getOutputFormats() {
+    return m_OutputFormats.clone();
   }
 
   /**
-   * Sets the output options.
+   * Sets the output options, replacing any others.
    *
    * @param value	the options
    */
   public void setOutputOptions(String value) {
-    m_OutputOptions = value;
+    m_OutputOptions = new String[]{value};
+  }
+
+  /**
+   * Returns the (first) output options.
+   *
+   * @return		the options, null if none
+   */
+  public String getOutputOptions() {
+    return (m_OutputOptions.length == 0) ? null : m_OutputOptions[0];
+  }
+
+  /**
+   * Sets the output options, either none or one per output file.
+   *
+   * @param value	the options
+   */
+  public void setOutputOptionsList(String[] value) {
+    m_OutputOptions = value.clone();
   }
 
   /**
@@ -259,8 +454,186 @@ public class Generate
    *
    * @return		the options
    */
-  public String getOutputOptions() {
-    return m_OutputOptions;
+  public String[] getOutputOptionsList() {
+    return m_OutputOptions.clone();
+  }
+
+  /**
+   * Returns the options for the specified output.
+   *
+   * @param index	the output
+   * @return		the options, empty if none
+   */
+  protected String getOutputOptions(int index) {
+    if ((m_OutputOptions.length == 0) || (m_OutputOptions[index] == null))
+      return "";
+    return m_OutputOptions[index];
+  }
+
+  /**
+   * Sets the directory with the DEM tiles.
+   *
+   * @param value	the directory, null for no correction
+   */
+  public void setDEMDir(File value) {
+    m_DEMDir = value;
+  }
+
+  /**
+   * Returns the directory with the DEM tiles.
+   *
+   * @return		the directory, null for no correction
+   */
+  public File getDEMDir() {
+    return m_DEMDir;
+  }
+
+  /**
+   * Sets how to apply the DEM elevation.
+   *
+   * @param value	the mode
+   */
+  public void setDEMMode(ElevationCorrection.Mode value) {
+    m_DEMMode = value;
+  }
+
+  /**
+   * Returns how to apply the DEM elevation.
+   *
+   * @return		the mode
+   */
+  public ElevationCorrection.Mode getDEMMode() {
+    return m_DEMMode;
+  }
+
+  /**
+   * Sets the weight of the DEM elevation when blending.
+   *
+   * @param value	the weight (0-1)
+   */
+  public void setDEMWeight(double value) {
+    if ((value >= 0) && (value <= 1))
+      m_DEMWeight = value;
+  }
+
+  /**
+   * Returns the weight of the DEM elevation when blending.
+   *
+   * @return		the weight (0-1)
+   */
+  public double getDEMWeight() {
+    return m_DEMWeight;
+  }
+
+  /**
+   * Sets the maximum number of DEM tiles to keep mapped.
+   *
+   * @param value	the number of tiles
+   */
+  public void setDEMCache(int value) {
+    if (value > 0)
+      m_DEMCache = value;
+  }
+
+  /**
+   * Returns the maximum number of DEM tiles to keep mapped.
+   *
+   * @return		the number of tiles
+   */
+  public int getDEMCache() {
+    return m_DEMCache;
+  }
+
+  /**
+   * Sets the number of threads for reading.
+   *
+   * @param value	the number of threads, 0 for all cores, 1 for sequential
+   */
+  public void setThreads(int value) {
+    if (value >= 0)
+      m_Threads = value;
+  }
+
+  /**
+   * Returns the number of threads for reading.
+   *
+   * @return		the number of threads, 0 for all cores, 1 for sequential
+   */
+  public int getThreads() {
+    return m_Threads;
+  }
+
+  /**
+   * Sets where to keep the profile columns.
+   *
+   * @param value	the storage mode
+   */
+  public void setStorage(Storage.Mode value) {
+    m_Storage = value;
+  }
+
+  /**
+   * Returns where to keep the profile columns.
+   *
+   * @return		the storage mode
+   */
+  public Storage.Mode getStorage() {
+    return m_Storage;
+  }
+
+  /**
+   * Sets the memory budget for the profile columns.
+   *
+   * @param value	the budget in MB, -1 for unlimited
+   */
+  public void setMemoryBudget(int value) {
+    if (value >= -1)
+      m_MemoryBudget = value;
+  }
+
+  /**
+   * Returns the memory budget for the profile columns.
+   *
+   * @return		the budget in MB, -1 for unlimited
+   */
+  public int getMemoryBudget() {
+    return m_MemoryBudget;
+  }
+
+  /**
+   * Sets the directory for spill files.
+   *
+   * @param value	the directory, null for the system's temp directory
+   */
+  public void setTmpDir(File value) {
+    m_TmpDir = value;
+  }
+
+  /**
+   * Returns the directory for spill files.
+   *
+   * @return		the directory, null for the system's temp directory
+   */
+  public File getTmpDir() {
+    return m_TmpDir;
+  }
+
+  /**
+   * Sets how to handle malformed records.
+   *
+   * @param value	the policy
+   */
+  public void setOnError(ErrorPolicy value) {
+    m_OnError = value;
+  }
+
+  /**
+   * Returns how to handle malformed records.
+   *
+   * @return		the policy
+   */
+  public ErrorPolicy getOnError() {
+    return m_OnError;
   }
 
   /**
@@ -270,7 +643,13 @@ public class Generate
    */
   @Override
   public void setOptions(String[] options) throws Exception {
-    Namespace	ns;
+    Namespace		ns;
+    List<String>	files;
+    List<String>	formats;
+    List<String>	outOptions;
+    File[]		outputFiles;
+    Class[]		outputFormats;
+    int			i;
 
     try {
       ns = m_Parser.parseArgs(options);
@@ -288,9 +667,27 @@ public class Generate
     setInputFile(new File(ns.getString(INPUT_FILE)));
     setInputFormat(Class.forName(com.github.fracpete.gpsformats4j.formats.Format.class.getPackage().getName() + "." + ns.getString(INPUT_FORMAT)));
     setInputOptions(ns.getString(INPUT_OPTIONS));
-    setOutputFile(new File(ns.getString(OUTPUT_FILE)));
-    setOutputFormat(Class.forName(com.github.fracpete.gpsaltprofile4j.formats.Format.class.getPackage().getName() + "." + ns.getString(OUTPUT_FORMAT)));
-    setOutputOptions(ns.getString(OUTPUT_OPTIONS));
+    files         = ns.getList(OUTPUT_FILE);
+    outputFiles   = new File[files.size()];
+    for (i = 0; i < files.size(); i++)
+      outputFiles[i] = new File(files.get(i));
+    setOutputFiles(outputFiles);
+    formats       = ns.getList(OUTPUT_FORMAT);
+    outputFormats = new Class[formats.size()];
+    for (i = 0; i < formats.size(); i++)
+      outputFormats[i] = Class.forName(com.github.fracpete.gpsaltprofile4j.formats.Format.class.getPackage().getName() + "." + formats.get(i));
+    setOutputFormats(outputFormats);
+    outOptions    = ns.getList(OUTPUT_OPTIONS);
+    setOutputOptionsList((outOptions == null) ? new String[0] : outOptions.toArray(new String[0]));
+    setDEMDir((ns.getString(DEM_DIR) == null) ? null : new File(ns.getString(DEM_DIR)));
+    setDEMMode(ElevationCorrection.Mode.valueOf(ns.getString(DEM_MODE)));
+    setDEMWeight(ns.getDouble(DEM_WEIGHT));
+    setDEMCache(ns.getInt(DEM_CACHE));
+    setThreads(ns.getInt(THREADS));
+    setStorage(Storage.Mode.valueOf(ns.getString(STORAGE)));
+    setMemoryBudget(ns.getInt(MEMORY_BUDGET));
+    setTmpDir((ns.getString(TMP_DIR) == null) ? null : new File(ns.getString(TMP_DIR)));
+    setOnError(ErrorPolicy.valueOf(ns.getString(ON_ERROR)));
   }
 
   /**
@@ -304,144 +701,396 @@ public class Generate
   }
 
   /**
-   * Turns the GPS trace information into altitude profile information.
-   *
-   * @param data	the trace
-   * @return		the profile
-   */
-  protected List<CSVRecord> generate(List<CSVRecord> data) {
-    List<CSVRecord> 	result;
-    String		trackOld;
-    String		trackCur;
-    String		time;
-    String 		lat;
-    String 		lon;
-    Point 		pointOld;
-    Point 		pointCur;
-    String		elev;
-    double		dist;
-    double		distTotal;
-    Map<String,Integer>	map;
-    String[] 		values;
-
-    result    = new ArrayList<>();
-    trackCur  = "";
-    pointCur  = null;
-    distTotal = 0.0;
-    map       = new HashMap<>();
-    map.put(Format.KEY_TRACK, 0);
-    map.put(Format.KEY_TIME, 1);
-    map.put(Format.KEY_DISTANCE, 2);
-    map.put(Format.KEY_ELEVATION, 3);
-    for (CSVRecord rec: data) {
-      trackOld = trackCur;
-      trackCur = rec.get(Format.KEY_TRACK);
-      time     = rec.get(Format.KEY_TIME);
-      elev     = rec.get(Format.KEY_ELEVATION);
-      lat = rec.get(KEY_LAT);
-      lon = rec.get(KEY_LON);
-      pointOld = pointCur;
-      pointCur = Point.at(
-        Coordinate.fromDegrees(Double.parseDouble(lat)),
-	Coordinate.fromDegrees(Double.parseDouble(lon)));
-      if (!trackCur.equals(trackOld)) {
-        distTotal = 0.0;
-        values = new String[]{trackCur, time, "" + distTotal, elev};
-        result.add(CSVRecordFactory.newRecord(values, map));
-	continue;
-      }
+   * Checks whether the outputs are consistent.
+   *
+   * @return		null if consistent, otherwise error message
+   */
+  protected String checkOutputs() {
+    Set<File>	files;
+    int		stdout;
 
-      if (pointOld == null)
-        continue;
+    if (m_OutputFiles.length == 0)
+      return "No output file specified!";
+    if (m_OutputFormats.length != m_OutputFiles.length)
+      return "Number of output formats (" + m_OutputFormats.length + ") differs from number of output files (" + m_OutputFiles.length + ")!";
+    if ((m_OutputOptions.length != 0) && (m_OutputOptions.length != m_OutputFiles.length))
+      return "Number of output options (" + m_OutputOptions.length + ") differs from number of output files (" + m_OutputFiles.length + ")!";
+    files  = new HashSet<>();
+    stdout = 0;
+    for (File file: m_OutputFiles) {
+      if (isStdio(file))
+	stdout++;
+      else if (!files.add(file.getAbsoluteFile()))
+	return "Output file specified more than once: " + file;
+    }
+    if (stdout > 1)
+      return "Only one output can be written to stdout!";
 
-      dist = EarthCalc.gcdDistance(pointOld, pointCur);
-      distTotal += dist;
-      values = new String[]{trackCur, time, "" + distTotal, elev};
-      result.add(CSVRecordFactory.newRecord(values, map));
+    return null;
+  }
+
+  /**
+   * Creates an engine from the current configuration, using the first
+   * output.
+   *
+   * @return		the engine
+   * @throws Exception	if the outputs are inconsistent or the formats cannot be configured
+   */
+  public ProfileEngine toEngine() throws Exception {
+    ProfileEngine	result;
+    String		msg;
+
+    msg = checkOutputs();
+    if (msg != null)
+      throw new Exception(msg);
+
+    result = new ProfileEngine(m_InputFormat, m_InputOptions, m_OutputFormats[0], getOutputOptions(0));
+    result = result.withErrorPolicy(m_OnError);
+    if (m_DEMDir != null) {
+      if (!m_DEMDir.isDirectory())
+	throw new Exception("DEM directory does not exist or is not a directory: " + m_DEMDir);
+      result = result.withCorrection(new ElevationCorrection(new TileCache(m_DEMDir, m_DEMCache), m_DEMMode, m_DEMWeight));
+    }
+    if (m_Threads != 1)
+      result = result.withReader(new ParallelTraceReader(m_Threads));
+    if ((m_Storage != Storage.Mode.HEAP) || (m_MemoryBudget > -1) || (m_TmpDir != null)) {
+      if ((m_TmpDir != null) && !m_TmpDir.isDirectory())
+	throw new Exception("Temp directory does not exist or is not a directory: " + m_TmpDir);
+      result = result.withStorage(new Storage(m_Storage, (m_MemoryBudget == -1) ? Storage.UNLIMITED : m_MemoryBudget * 1024L * 1024L, m_TmpDir));
     }
 
     return result;
   }
 
   /**
-   * Performs the conversion.
+   * Creates an engine per output from the current configuration, all
+   * sharing the same input configuration.
    *
+   * @return		the engines
+   * @throws Exception	if the outputs are inconsistent or the formats cannot be configured
+   */
+  public ProfileEngine[] toEngines() throws Exception {
+    ProfileEngine[]	result;
+    int			i;
+
+    result    = new ProfileEngine[m_OutputFiles.length];
+    result[0] = toEngine();
+    for (i = 1; i < result.length; i++)
+      result[i] = result[0].withOutputFormat(m_OutputFormats[i], getOutputOptions(i));
+
+    return result;
+  }
+
+  /**
+   * Returns whether the file denotes stdin/stdout.
+   *
+   * @param file	the file to check
+   * @return		true if stdin/stdout
+   */
+  public static boolean isStdio(File file) {
+    return STDIO.equals(file.getPath());
+  }
+
+  /**
+   * Writes the profile to the output file or stdout.
+   *
+   * @param profile	the profile to write
+   * @param engine	the engine to use
+   * @param output	the output file
+   * @param stdout	the stream to use for stdout
    * @return		null if successful, otherwise error message
    */
-  protected String doExecute() {
-    com.github.fracpete.gpsformats4j.formats.Format 		formatIn;
-    com.github.fracpete.gpsaltprofile4j.formats.Format		formatOut;
-    List<CSVRecord>						data;
+  protected String write(Profile profile, ProfileEngine engine, File output, PrintStream stdout) {
+    if (isStdio(output))
+      return engine.write(profile, stdout);
+    else
+      return engine.write(profile, output);
+  }
+
+  /**
+   * Writes the profile to all outputs, concurrently if more than one.
+   *
+   * @param profile	the profile to write
+   * @param engines	the engines, one per output file
+   * @param stdout	the stream to use for stdout
+   * @return		null if successful, otherwise error message(s)
+   */
+  protected String write(final Profile profile, ProfileEngine[] engines, final PrintStream stdout) {
+    StringBuilder		result;
+    ExecutorService		executor;
+    List<Future<String>>	futures;
+    String			msg;
+    int				i;
 
-    if (!m_InputFile.exists())
-      return "Input file does not exist: " + m_InputFile;
-    if (m_InputFile.isDirectory())
-      return "Input file points to a directory: " + m_InputFile;
+    if (engines.length == 1)
+      return write(profile, engines[0], m_OutputFiles[0], stdout);
 
+    result   = new StringBuilder();
+    executor = Executors.newFixedThreadPool(engines.length);
     try {
-      formatIn = (com.github.fracpete.gpsformats4j.formats.Format) m_InputFormat.newInstance();
-      m_Logger.info("Input format: " + formatIn.getClass().getName());
-      formatOut = (com.github.fracpete.gpsaltprofile4j.formats.Format) m_OutputFormat.newInstance();
-      m_Logger.info("Output format: " + formatOut.getClass().getName());
+      futures = new ArrayList<>();
+      for (i = 0; i < engines.length; i++) {
+	final ProfileEngine engine = engines[i];
+	final File output = m_OutputFiles[i];
+	futures.add(executor.submit(() -> write(profile, engine, output, stdout)));
+      }
+      for (i = 0; i < futures.size(); i++) {
+	try {
+	  msg = futures.get(i).get();
+	}
+	catch (ExecutionException e) {
+	  msg = "Failed to write: " + m_OutputFiles[i] + "\n" + e.getCause();
+	}
+	if (msg != null) {
+	  if (result.length() > 0)
+	    result.append("\n");
+	  result.append(msg);
+	}
+      }
     }
-    catch (Exception e) {
-      return "Error configuring formats: " + e.toString();
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "Interrupted while writing outputs!";
+    }
+    finally {
+      executor.shutdownNow();
     }
 
-    if (!formatIn.canRead())
-      return "Input format does not support reading!";
+    return (result.length() == 0) ? null : result.toString();
+  }
 
-    if ((formatIn instanceof com.github.fracpete.gpsformats4j.formats.FormatWithOptionHandling) && !m_InputOptions.isEmpty()) {
-      try {
-	m_Logger.info("Input options: " + m_InputOptions);
-	((com.github.fracpete.gpsformats4j.formats.FormatWithOptionHandling) formatIn).setOptions(OptionUtils.split(m_InputOptions));
+  /**
+   * Returns whether the input can be streamed straight to the outputs,
+   * i.e., the input comes from stdin, can be read as a stream and all
+   * outputs are CSV.
+   *
+   * @param engines	the engines, one per output file
+   * @return		true if streaming
+   */
+  protected boolean canStream(ProfileEngine[] engines) {
+    if (!isStdio(m_InputFile) || !engines[0].canStream())
+      return false;
+    for (ProfileEngine engine: engines) {
+      if (!(engine.getOutputFormat() instanceof CSV))
+	return false;
+    }
+    return true;
+  }
+
+  /**
+   * Streams the points from stdin to all (CSV) outputs as they arrive.
+   *
+   * @param engines	the engines, one per output file, the first one gets used for reading
+   * @param stdout	the stream to use for stdout
+   * @return		the number of rejected trackpoints
+   * @throws IOException	if reading or writing fails
+   */
+  protected int stream(ProfileEngine[] engines, PrintStream stdout) throws IOException {
+    final CSV.PointWriter[]	handlers;
+    Writer[]			writers;
+    int				result;
+    int				i;
+
+    writers  = new Writer[m_OutputFiles.length];
+    handlers = new CSV.PointWriter[m_OutputFiles.length];
+    try {
+      for (i = 0; i < m_OutputFiles.length; i++) {
+	if (isStdio(m_OutputFiles[i]))
+	  writers[i] = new OutputStreamWriter(stdout);
+	else
+	  writers[i] = new FileWriter(m_OutputFiles[i]);
+	handlers[i] = new CSV.PointWriter(writers[i], ((CSV) engines[i].getOutputFormat()).getColumns());
+      }
+      result = engines[0].stream(System.in, new PointHandler() {
+	@Override
+	public void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation) throws IOException {
+	  for (CSV.PointWriter handler: handlers)
+	    handler.point(track, time, elapsed, lat, lon, distance, elevation);
+	}
+      });
+      for (CSV.PointWriter handler: handlers)
+	handler.flush();
+    }
+    finally {
+      for (i = 0; i < writers.length; i++) {
+	if (writers[i] == null)
+	  continue;
+	if (isStdio(m_OutputFiles[i]))
+	  writers[i].flush();
+	else
+	  writers[i].close();
       }
-      catch (Exception e) {
-        return "Failed to set options for input format: " + m_InputOptions + "\n" + e;
+    }
+
+    return result;
+  }
+
+  /**
+   * Performs the conversion.
+   *
+   * @param stdout		the stream to use for stdout
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  protected String doExecute(PrintStream stdout, Cancellation cancellation) {
+    ProfileEngine[]	engines;
+    ProfileEngine	engine;
+    Profile		profile;
+    int			rejected;
+    int			i;
+
+    if (!isStdio(m_InputFile)) {
+      if (!m_InputFile.exists())
+	return "Input file does not exist: " + m_InputFile;
+      if (m_InputFile.isDirectory())
+	return "Input file points to a directory: " + m_InputFile;
+    }
+
+    try {
+      engines = toEngines();
+      for (i = 0; i < engines.length; i++)
+	engines[i] = engines[i].withCancellation(cancellation);
+      engine  = engines[0];
+      m_Logger.info("Input format: " + m_InputFormat.getName());
+      if (!engine.getInputOptions().isEmpty())
+	m_Logger.info("Input options: " + engine.getInputOptions());
+      for (i = 0; i < engines.length; i++) {
+	m_Logger.info("Output format: " + m_OutputFormats[i].getName() + " -> " + m_OutputFiles[i]);
+	if (!getOutputOptions(i).isEmpty())
+	  m_Logger.info("Output options: " + getOutputOptions(i));
       }
+      if (m_DEMDir != null)
+	m_Logger.info("DEM correction: " + m_DEMMode + " using " + m_DEMDir);
+      if (engine.isParallel())
+	m_Logger.info("Reading in parallel using " + engine.getReader().getThreads() + " threads");
+      if (engine.getStorage() != Storage.DEFAULT)
+	m_Logger.info("Storage: " + engine.getStorage());
+    }
+    catch (Exception e) {
+      return e.getMessage();
     }
 
-    if ((formatOut instanceof com.github.fracpete.gpsaltprofile4j.formats.FormatWithOptionHandling) && !m_OutputOptions.isEmpty()) {
+    if (canStream(engines)) {
+      m_Logger.info("Streaming from stdin");
       try {
-	m_Logger.info("Output options: " + m_OutputOptions);
-	((com.github.fracpete.gpsaltprofile4j.formats.FormatWithOptionHandling) formatOut).setOptions(OptionUtils.split(m_OutputOptions));
+	rejected = stream(engines, stdout);
       }
-      catch (Exception e) {
-        return "Failed to set options for output format: " + m_OutputOptions + "\n" + e;
+      catch (IOException e) {
+	return "Failed to generate altitude profile from: " + m_InputFile + "\n" + e;
       }
+      if (rejected > 0)
+	m_Logger.info("Malformed records (" + m_OnError + "): " + rejected);
+      return null;
     }
 
-    data = formatIn.read(m_InputFile);
-    if (data == null)
+    try {
+      if (isStdio(m_InputFile))
+	profile = engine.profile(System.in);
+      else
+	profile = engine.profile(m_InputFile);
+    }
+    catch (IOException e) {
+      return "Failed to generate altitude profile from: " + m_InputFile + "\n" + e;
+    }
+    if (profile == null)
       return "Failed to read data from: " + m_InputFile;
+    if (profile.getRejected() > 0)
+      m_Logger.info("Malformed records (" + m_OnError + "): " + profile.getRejected());
 
-    data = generate(data);
-    if (data == null)
-      return "Failed to generate altitude profile from: " + m_InputFile;
+    return write(profile, engines, stdout);
+  }
 
-    return formatOut.write(data, m_OutputFile);
+  /**
+   * Returns whether any output goes to stdout.
+   *
+   * @return		true if stdout is used
+   */
+  protected boolean usesStdout() {
+    for (File file: m_OutputFiles) {
+      if (isStdio(file))
+	return true;
+    }
+    return false;
   }
 
   /**
-   * Performs the conversion.
+   * Performs the conversion. When writing to stdout, anything else
+   * printed to stdout during the conversion (eg logging) gets diverted
+   * to stderr, to keep the output intact.
    *
    * @return		null if successful, otherwise error message
    */
   public String execute() {
     String	result;
+    PrintStream	stdout;
 
     if (m_HelpRequested)
       return null;
 
-    result = doExecute();
-    if (result != null)
-      m_Logger.error(result);
-    else
-      m_Logger.info("Successfully converted!");
+    stdout = System.out;
+    if (usesStdout())
+      System.setOut(System.err);
+    try {
+      result = doExecute(stdout, Cancellation.NONE);
+      if (result != null)
+	m_Logger.error(result);
+      else
+	m_Logger.info("Successfully converted!");
+    }
+    finally {
+      stdout.flush();
+      System.setOut(stdout);
+    }
 
     return result;
   }
 
+  /**
+   * Performs the conversion on the executor.
+   *
+   * @param executor	the executor to run the conversion on
+   * @return		the future, null if successful, otherwise error message
+   * @see		#executeAsync(Executor, long, TimeUnit)
+   */
+  public CompletableFuture<String> executeAsync(Executor executor) {
+    return executeAsync(executor, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Performs the conversion on the executor. Cancelling the future stops
+   * the conversion at the next check within the reading, generating or
+   * writing loops, freeing up the thread. The future completes with a
+   * {@link java.util.concurrent.TimeoutException} if the timeout gets
+   * exceeded. Unlike {@link #execute()}, stdout does not get diverted when
+   * writing to it. The configuration must not be changed until the
+   * future completes.
+   *
+   * @param executor	the executor to run the conversion on
+   * @param timeout	the timeout, 0 or less for none
+   * @param unit	the unit of the timeout
+   * @return		the future, null if successful, otherwise error message
+   */
+  public CompletableFuture<String> executeAsync(Executor executor, long timeout, TimeUnit unit) {
+    final Cancellation	cancellation;
+
+    if (m_HelpRequested)
+      return CompletableFuture.completedFuture(null);
+
+    cancellation = new Cancellation(timeout, unit);
+    return cancellation.async(() -> {
+      String result = doExecute(System.out, cancellation);
+      if (result != null) {
+	// stopped rather than failed?
+	cancellation.check();
+	m_Logger.error(result);
+      }
+      else {
+	m_Logger.info("Successfully converted!");
+      }
+      return result;
+    }, executor);
+  }
+
   /**
    * Generates the profile.
    *
@@ -0,0 +1,877 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GenerateBatch.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.batch.WorkQueue;
+import com.github.fracpete.gpsaltprofile4j.batch.WorkerStats;
+import com.github.fracpete.gpsaltprofile4j.dem.ElevationCorrection;
+import com.github.fracpete.gpsaltprofile4j.dem.TileCache;
+import com.github.fracpete.gpsaltprofile4j.io.ErrorPolicy;
+import com.github.fracpete.gpsaltprofile4j.io.ParallelTraceReader;
+import com.github.fracpete.gpsformats4j.core.BaseObject;
+import com.github.fracpete.gpsformats4j.core.OptionHandler;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.helper.HelpScreenException;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch worker that processes the GPS traces of a shared queue directory
+ * (see {@link WorkQueue}), without coordinator. Any number of workers,
+ * on the same or on different hosts, can process the same queue. Claims
+ * of crashed workers get picked up again once their lease times out.
+ * Workers exit once the queue is drained and print a throughput report
+ * across all workers.
+ * <br>
+ * The outputs get written to the output directory, named after the input
+ * file (including its extension, so eg <code>a.gpx</code> and
+ * <code>a.tcx</code> don't overwrite each other's outputs) with the
+ * extension of the output format appended (preceded by the index of the
+ * output if the format is used more than once). They get
+ * written under a temporary name first and then renamed, so processing
+ * a file twice (after a timed out lease) is safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class GenerateBatch
+  extends BaseObject
+  implements OptionHandler {
+
+  public static final String QUEUE_DIR = "queue_dir";
+
+  public static final String INPUT_FORMAT = Generate.INPUT_FORMAT;
+
+  public static final String INPUT_OPTIONS = Generate.INPUT_OPTIONS;
+
+  public static final String OUTPUT_DIR = "out_dir";
+
+  public static final String OUTPUT_FORMAT = Generate.OUTPUT_FORMAT;
+
+  public static final String OUTPUT_OPTIONS = Generate.OUTPUT_OPTIONS;
+
+  public static final String DEM_DIR = Generate.DEM_DIR;
+
+  public static final String DEM_MODE = Generate.DEM_MODE;
+
+  public static final String THREADS = Generate.THREADS;
+
+  public static final String ON_ERROR = Generate.ON_ERROR;
+
+  public static final String WORKER = "worker";
+
+  public static final String LEASE = "lease";
+
+  public static final String POLL = "poll";
+
+  public static final String REPORT = "report";
+
+  /** the default lease timeout in seconds. */
+  public static final int DEFAULT_LEASE = 300;
+
+  /** the default poll interval in seconds. */
+  public static final int DEFAULT_POLL = 5;
+
+  /** the argument parser. */
+  protected ArgumentParser m_Parser;
+
+  /** the queue directory. */
+  protected File m_QueueDir;
+
+  /** the input format. */
+  protected Class m_InputFormat;
+
+  /** the input options. */
+  protected String m_InputOptions;
+
+  /** the output directory. */
+  protected File m_OutputDir;
+
+  /** the output formats. */
+  protected Class[] m_OutputFormats;
+
+  /** the output options, empty or one per output format. */
+  protected String[] m_OutputOptions;
+
+  /** the directory with the DEM tiles, null for no correction. */
+  protected File m_DEMDir;
+
+  /** how to apply the DEM elevation. */
+  protected ElevationCorrection.Mode m_DEMMode;
+
+  /** the number of threads for reading (0 = all cores, 1 = sequential). */
+  protected int m_Threads;
+
+  /** how to handle malformed records. */
+  protected ErrorPolicy m_OnError;
+
+  /** the worker ID. */
+  protected String m_Worker;
+
+  /** the lease timeout in seconds. */
+  protected int m_Lease;
+
+  /** the poll interval in seconds. */
+  protected int m_Poll;
+
+  /** whether to only print the report. */
+  protected boolean m_ReportOnly;
+
+  /** whether help got requested. */
+  protected boolean m_HelpRequested;
+
+  /**
+   * Initializes the members.
+   */
+  @Override
+  protected void initialize() {
+    String[] 	formatsIn;
+    String[] 	formatsOut;
+    int		i;
+
+    super.initialize();
+
+    m_InputOptions  = "";
+    m_OutputFormats = new Class[0];
+    m_OutputOptions = new String[0];
+    m_DEMMode       = ElevationCorrection.Mode.REPLACE;
+    m_Threads       = 1;
+    m_OnError       = ErrorPolicy.FAIL;
+    m_Worker        = WorkQueue.toWorker(ManagementFactory.getRuntimeMXBean().getName());
+    m_Lease         = DEFAULT_LEASE;
+    m_Poll          = DEFAULT_POLL;
+
+    formatsIn = new String[com.github.fracpete.gpsformats4j.formats.Formats.allFormats().length];
+    for (i = 0; i < com.github.fracpete.gpsformats4j.formats.Formats.allFormats().length; i++)
+      formatsIn[i] = com.github.fracpete.gpsformats4j.formats.Formats.allFormats()[i].getSimpleName();
+    formatsOut = new String[com.github.fracpete.gpsaltprofile4j.formats.Formats.allFormats().length];
+    for (i = 0; i < com.github.fracpete.gpsaltprofile4j.formats.Formats.allFormats().length; i++)
+      formatsOut[i] = com.github.fracpete.gpsaltprofile4j.formats.Formats.allFormats()[i].getSimpleName();
+
+    m_Parser = ArgumentParsers.newFor(getClass().getSimpleName()).build();
+
+    m_Parser.description("Generates altitude profiles for all GPS traces in a queue directory shared by multiple workers.");
+    m_Parser.defaultHelp(true);
+
+    m_Parser.addArgument("--" + QUEUE_DIR)
+      .metavar("<dir>")
+      .dest(QUEUE_DIR)
+      .required(true)
+      .type(String.class)
+      .help("The queue directory; the traces to process go into its '" + WorkQueue.TODO + "' sub-directory.");
+    m_Parser.addArgument("--" + INPUT_FORMAT)
+      .dest(INPUT_FORMAT)
+      .required(false)
+      .type(String.class)
+      .choices(formatsIn)
+      .help("The input format.");
+    m_Parser.addArgument("--" + INPUT_OPTIONS)
+      .metavar("<options>")
+      .dest(INPUT_OPTIONS)
+      .required(false)
+      .type(String.class)
+      .setDefault("")
+      .help("The options for the input format, if supported. Blank-separated list of key=value pairs.");
+
+    m_Parser.addArgument("--" + OUTPUT_DIR)
+      .metavar("<dir>")
+      .dest(OUTPUT_DIR)
+      .required(false)
+      .type(String.class)
+      .help("The directory to write the outputs to.");
+    m_Parser.addArgument("--" + OUTPUT_FORMAT)
+      .dest(OUTPUT_FORMAT)
+      .required(false)
+      .type(String.class)
+      .choices(formatsOut)
+      .action(Arguments.append())
+      .help("The output format; can be specified multiple times, generating all outputs from a single pass over the input.");
+    m_Parser.addArgument("--" + OUTPUT_OPTIONS)
+      .metavar("<options>")
+      .dest(OUTPUT_OPTIONS)
+      .required(false)
+      .type(String.class)
+      .action(Arguments.append())
+      .help("The options for the output format, if supported. Blank-separated list of key=value pairs. Either omit or specify once per output format.");
+
+    m_Parser.addArgument("--" + DEM_DIR)
+      .metavar("<dir>")
+      .dest(DEM_DIR)
+      .required(false)
+      .type(String.class)
+      .help("The directory with SRTM tiles in HGT format (eg N47W123.hgt) to correct the elevation with.");
+    m_Parser.addArgument("--" + DEM_MODE)
+      .dest(DEM_MODE)
+      .required(false)
+      .type(String.class)
+      .choices(ElevationCorrection.Mode.REPLACE.name(), ElevationCorrection.Mode.BLEND.name(), ElevationCorrection.Mode.FILL.name())
+      .setDefault(ElevationCorrection.Mode.REPLACE.name())
+      .help("How to apply the DEM elevation: replace the recorded one, blend the two (using the default weight) or only fill in missing elevations.");
+    m_Parser.addArgument("--" + THREADS)
+      .metavar("<num>")
+      .dest(THREADS)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(1)
+      .help("The number of threads for reading GPX/TCX files in parallel; 1 reads sequentially using the input format, 0 uses all available cores.");
+    m_Parser.addArgument("--" + ON_ERROR)
+      .dest(ON_ERROR)
+      .required(false)
+      .type(String.class)
+      .choices(ErrorPolicy.SKIP.name(), ErrorPolicy.INTERPOLATE.name(), ErrorPolicy.FAIL.name())
+      .setDefault(ErrorPolicy.FAIL.name())
+      .help("How to handle records with malformed coordinates or elevation; files that fail get moved to the '" + WorkQueue.FAILED + "' sub-directory.");
+
+    m_Parser.addArgument("--" + WORKER)
+      .metavar("<id>")
+      .dest(WORKER)
+      .required(false)
+      .type(String.class)
+      .setDefault(m_Worker)
+      .help("The ID of the worker, must be unique among the workers (default: process ID and host); the default changes with every restart, so only an explicit ID continues the statistics of a restarted worker.");
+    m_Parser.addArgument("--" + LEASE)
+      .metavar("<seconds>")
+      .dest(LEASE)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(DEFAULT_LEASE)
+      .help("The time after which files claimed by a worker that stopped renewing its claim (eg crashed) get re-claimed; must be well above the clock skew between the hosts.");
+    m_Parser.addArgument("--" + POLL)
+      .metavar("<seconds>")
+      .dest(POLL)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(DEFAULT_POLL)
+      .help("The interval for checking for stale claims while other workers are still busy.");
+    m_Parser.addArgument("--" + REPORT)
+      .dest(REPORT)
+      .required(false)
+      .action(Arguments.storeTrue())
+      .help("Only prints the throughput report of the workers.");
+  }
+
+  /**
+   * Sets the queue directory.
+   *
+   * @param value	the directory
+   */
+  public void setQueueDir(File value) {
+    m_QueueDir = value;
+  }
+
+  /**
+   * Returns the queue directory.
+   *
+   * @return		the directory
+   */
+  public File getQueueDir() {
+    return m_QueueDir;
+  }
+
+  /**
+   * Sets the input format.
+   *
+   * @param value	the format
+   */
+  public void setInputFormat(Class value) {
+    m_InputFormat = value;
+  }
+
+  /**
+   * Returns the input format.
+   *
+   * @return		the format
+   */
+  public Class getInputFormat() {
+    return m_InputFormat;
+  }
+
+  /**
+   * Sets the input options.
+   *
+   * @param value	the options
+   */
+  public void setInputOptions(String value) {
+    m_InputOptions = value;
+  }
+
+  /**
+   * Returns the input options.
+   *
+   * @return		the options
+   */
+  public String getInputOptions() {
+    return m_InputOptions;
+  }
+
+  /**
+   * Sets the output directory.
+   *
+   * @param value	the directory
+   */
+  public void setOutputDir(File value) {
+    m_OutputDir = value;
+  }
+
+  /**
+   * Returns the output directory.
+   *
+   * @return		the directory
+   */
+  public File getOutputDir() {
+    return m_OutputDir;
+  }
+
+  /**
+   * Sets the output formats.
+   *
+   * @param value	the formats
+   */
+  public void setOutputFormats(Class[] value) {
+    m_OutputFormats = value;
+  }
+
+  /**
+   * Returns the output formats.
+   *
+   * @return		the formats
+   */
+  public Class[] getOutputFormats() {
+    return m_OutputFormats;
+  }
+
+  /**
+   * Sets the output options, either none or one per output format.
+   *
+   * @param value	the options
+   */
+  public void setOutputOptionsList(String[] value) {
+    m_OutputOptions = value;
+  }
+
+  /**
+   * Returns the output options.
+   *
+   * @return		the options
+   */
+  public String[] getOutputOptionsList() {
+    return m_OutputOptions;
+  }
+
+  /**
+   * Returns the options for the specified output.
+   *
+   * @param index	the index of the output
+   * @return		the options, empty if none
+   */
+  public String getOutputOptions(int index) {
+    if (index < m_OutputOptions.length)
+      return m_OutputOptions[index];
+    return "";
+  }
+
+  /**
+   * Sets the directory with the DEM tiles.
+   *
+   * @param value	the directory, null for no correction
+   */
+  public void setDEMDir(File value) {
+    m_DEMDir = value;
+  }
+
+  /**
+   * Returns the directory with the DEM tiles.
+   *
+   * @return		the directory, null for no correction
+   */
+  public File getDEMDir() {
+    return m_DEMDir;
+  }
+
+  /**
+   * Sets how to apply the DEM elevation.
+   *
+   * @param value	the mode
+   */
+  public void setDEMMode(ElevationCorrection.Mode value) {
+    m_DEMMode = value;
+  }
+
+  /**
+   * Returns how to apply the DEM elevation.
+   *
+   * @return		the mode
+   */
+  public ElevationCorrection.Mode getDEMMode() {
+    return m_DEMMode;
+  }
+
+  /**
+   * Sets the number of threads for reading.
+   *
+   * @param value	the number of threads, 0 for all cores, 1 for sequential
+   */
+  public void setThreads(int value) {
+    if (value >= 0)
+      m_Threads = value;
+  }
+
+  /**
+   * Returns the number of threads for reading.
+   *
+   * @return		the number of threads, 0 for all cores, 1 for sequential
+   */
+  public int getThreads() {
+    return m_Threads;
+  }
+
+  /**
+   * Sets how to handle malformed records.
+   *
+   * @param value	the policy
+   */
+  public void setOnError(ErrorPolicy value) {
+    m_OnError = value;
+  }
+
+  /**
+   * Returns how to handle malformed records.
+   *
+   * @return		the policy
+   */
+  public ErrorPolicy getOnError() {
+    return m_OnError;
+  }
+
+  /**
+   * Sets the worker ID.
+   *
+   * @param value	the ID, unique among the workers
+   */
+  public void setWorker(String value) {
+    m_Worker = value;
+  }
+
+  /**
+   * Returns the worker ID.
+   *
+   * @return		the ID
+   */
+  public String getWorker() {
+    return m_Worker;
+  }
+
+  /**
+   * Sets the lease timeout.
+   *
+   * @param value	the timeout in seconds
+   */
+  public void setLease(int value) {
+    if (value > 0)
+      m_Lease = value;
+  }
+
+  /**
+   * Returns the lease timeout.
+   *
+   * @return		the timeout in seconds
+   */
+  public int getLease() {
+    return m_Lease;
+  }
+
+  /**
+   * Sets the poll interval.
+   *
+   * @param value	the interval in seconds
+   */
+  public void setPoll(int value) {
+    if (value > 0)
+      m_Poll = value;
+  }
+
+  /**
+   * Returns the poll interval.
+   *
+   * @return		the interval in seconds
+   */
+  public int getPoll() {
+    return m_Poll;
+  }
+
+  /**
+   * Sets whether to only print the report.
+   *
+   * @param value	true if only to report
+   */
+  public void setReportOnly(boolean value) {
+    m_ReportOnly = value;
+  }
+
+  /**
+   * Returns whether to only print the report.
+   *
+   * @return		true if only to report
+   */
+  public boolean isReportOnly() {
+    return m_ReportOnly;
+  }
+
+  /**
+   * Sets the options.
+   *
+   * @param options	the options
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    Namespace		ns;
+    List<String>	formats;
+    List<String>	outOptions;
+    Class[]		outputFormats;
+    int			i;
+
+    try {
+      ns = m_Parser.parseArgs(options);
+    }
+    catch (HelpScreenException e) {
+      m_HelpRequested = true;
+      return;
+    }
+    catch (Exception e) {
+      m_Parser.printHelp();
+      m_HelpRequested = false;
+      throw e;
+    }
+
+    setQueueDir(new File(ns.getString(QUEUE_DIR)));
+    if (ns.getString(INPUT_FORMAT) != null)
+      setInputFormat(Class.forName(com.github.fracpete.gpsformats4j.formats.Format.class.getPackage().getName() + "." + ns.getString(INPUT_FORMAT)));
+    setInputOptions(ns.getString(INPUT_OPTIONS));
+    setOutputDir((ns.getString(OUTPUT_DIR) == null) ? null : new File(ns.getString(OUTPUT_DIR)));
+    formats       = ns.getList(OUTPUT_FORMAT);
+    outputFormats = new Class[(formats == null) ? 0 : formats.size()];
+    for (i = 0; i < outputFormats.length; i++)
+      outputFormats[i] = Class.forName(com.github.fracpete.gpsaltprofile4j.formats.Format.class.getPackage().getName() + "." + formats.get(i));
+    setOutputFormats(outputFormats);
+    outOptions    = ns.getList(OUTPUT_OPTIONS);
+    setOutputOptionsList((outOptions == null) ? new String[0] : outOptions.toArray(new String[0]));
+    setDEMDir((ns.getString(DEM_DIR) == null) ? null : new File(ns.getString(DEM_DIR)));
+    setDEMMode(ElevationCorrection.Mode.valueOf(ns.getString(DEM_MODE)));
+    setThreads(ns.getInt(THREADS));
+    setOnError(ErrorPolicy.valueOf(ns.getString(ON_ERROR)));
+    setWorker(ns.getString(WORKER));
+    setLease(ns.getInt(LEASE));
+    setPoll(ns.getInt(POLL));
+    setReportOnly(ns.getBoolean(REPORT));
+  }
+
+  /**
+   * Returns the help.
+   *
+   * @return		the help
+   */
+  @Override
+  public String toHelp() {
+    return m_Parser.formatHelp();
+  }
+
+  /**
+   * Creates an engine per output format from the current configuration.
+   *
+   * @return		the engines
+   * @throws Exception	if the configuration is incomplete or the formats cannot be configured
+   */
+  public ProfileEngine[] toEngines() throws Exception {
+    ProfileEngine[]	result;
+    int			i;
+
+    if (m_InputFormat == null)
+      throw new Exception("No input format specified!");
+    if (m_OutputFormats.length == 0)
+      throw new Exception("No output format specified!");
+    if ((m_OutputOptions.length != 0) && (m_OutputOptions.length != m_OutputFormats.length))
+      throw new Exception("Number of output options (" + m_OutputOptions.length + ") differs from number of output formats (" + m_OutputFormats.length + ")!");
+
+    result    = new ProfileEngine[m_OutputFormats.length];
+    result[0] = new ProfileEngine(m_InputFormat, m_InputOptions, m_OutputFormats[0], getOutputOptions(0));
+    result[0] = result[0].withErrorPolicy(m_OnError);
+    if (m_DEMDir != null) {
+      if (!m_DEMDir.isDirectory())
+	throw new Exception("DEM directory does not exist or is not a directory: " + m_DEMDir);
+      result[0] = result[0].withCorrection(new ElevationCorrection(new TileCache(m_DEMDir, TileCache.DEFAULT_SIZE), m_DEMMode, ElevationCorrection.DEFAULT_WEIGHT));
+    }
+    if (m_Threads != 1)
+      result[0] = result[0].withReader(new ParallelTraceReader(m_Threads));
+    for (i = 1; i < result.length; i++)
+      result[i] = result[0].withOutputFormat(m_OutputFormats[i], getOutputOptions(i));
+
+    return result;
+  }
+
+  /**
+   * Returns the output file for the input. The name of the input file is
+   * kept as is, including its extension, so that inputs that only differ
+   * in the extension don't overwrite each other's outputs.
+   *
+   * @param name	the name of the input file
+   * @param index	the index of the output
+   * @return		the output file
+   */
+  protected File outputFile(String name, int index) {
+    String	format;
+    int		count;
+
+    format = m_OutputFormats[index].getSimpleName();
+    count  = 0;
+    for (Class cls: m_OutputFormats) {
+      if (cls == m_OutputFormats[index])
+	count++;
+    }
+    if (count > 1)
+      name += "-" + index;
+
+    return new File(m_OutputDir, name + "." + format.toLowerCase());
+  }
+
+  /**
+   * Generates the outputs for the claimed file.
+   *
+   * @param engines	the engines, one per output format
+   * @param claimed	the claimed file
+   * @return		the number of points, if successful
+   * @throws Exception	if processing fails
+   */
+  protected int process(ProfileEngine[] engines, File claimed) throws Exception {
+    Profile	profile;
+    String	name;
+    String	msg;
+    File	output;
+    File	tmp;
+    int		i;
+
+    name    = WorkQueue.originalName(claimed);
+    profile = engines[0].profile(claimed);
+    if (profile == null)
+      throw new Exception("Failed to read data from: " + name);
+    for (i = 0; i < engines.length; i++) {
+      output = outputFile(name, i);
+      tmp    = new File(m_OutputDir, "." + output.getName() + "." + m_Worker + ".tmp");
+      msg    = engines[i].write(profile, tmp);
+      if (msg != null) {
+	tmp.delete();
+	engines[i].getCancellation().check();
+	throw new Exception(msg);
+      }
+      Files.move(tmp.toPath(), output.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    return profile.size();
+  }
+
+  /**
+   * Processes the claimed file, renewing the claim in the background.
+   * If the claim gets lost, processing gets stopped.
+   *
+   * @param engines	the engines, one per output format
+   * @param queue	the queue
+   * @param claimed	the claimed file
+   * @param stats	for recording the throughput
+   * @param heartbeat	for renewing the claim
+   * @throws IOException	if updating the queue fails
+   */
+  protected void process(ProfileEngine[] engines, final WorkQueue queue, final File claimed, WorkerStats stats, ScheduledExecutorService heartbeat) throws IOException {
+    final Cancellation	cancellation;
+    ScheduledFuture<?>	renewal;
+    long		start;
+    long		bytes;
+    int			points;
+    int			i;
+
+    cancellation = new Cancellation();
+    engines      = engines.clone();
+    for (i = 0; i < engines.length; i++)
+      engines[i] = engines[i].withCancellation(cancellation);
+
+    renewal = heartbeat.scheduleWithFixedDelay(() -> {
+      if (!queue.renew(claimed))
+	cancellation.cancel();
+    }, queue.getLeaseTimeout() / 3, queue.getLeaseTimeout() / 3, TimeUnit.MILLISECONDS);
+
+    m_Logger.info("Processing: " + WorkQueue.originalName(claimed));
+    start = System.currentTimeMillis();
+    bytes = claimed.length();
+    try {
+      points = process(engines, claimed);
+      renewal.cancel(false);
+      if (queue.complete(claimed))
+	stats.processed(bytes, points, System.currentTimeMillis() - start);
+      else
+	m_Logger.info("Lost claim, already re-claimed: " + WorkQueue.originalName(claimed));
+    }
+    catch (Exception e) {
+      renewal.cancel(false);
+      if (cancellation.isCancelled()) {
+	m_Logger.info("Lost claim, stopped processing: " + WorkQueue.originalName(claimed));
+      }
+      else {
+	m_Logger.error("Failed to process: " + WorkQueue.originalName(claimed), e);
+	if (queue.fail(claimed, e.toString()))
+	  stats.failed(System.currentTimeMillis() - start);
+      }
+    }
+  }
+
+  /**
+   * Processes files until the queue is drained.
+   *
+   * @return		null if successful, otherwise error message
+   */
+  protected String doExecute() {
+    ProfileEngine[]		engines;
+    WorkQueue			queue;
+    WorkerStats			stats;
+    File			statsFile;
+    File			claimed;
+    ScheduledExecutorService	heartbeat;
+
+    if (m_QueueDir == null)
+      return "No queue directory specified!";
+    try {
+      queue = new WorkQueue(m_QueueDir, m_Worker, m_Lease * 1000L);
+    }
+    catch (Exception e) {
+      return e.getMessage();
+    }
+
+    if (m_ReportOnly) {
+      System.out.print(WorkerStats.report(WorkerStats.loadAll(queue.dir(WorkQueue.WORKERS))));
+      return null;
+    }
+
+    if (m_OutputDir == null)
+      return "No output directory specified!";
+    try {
+      engines = toEngines();
+      queue.initialize();
+      Files.createDirectories(m_OutputDir.toPath());
+      m_Logger.info("Worker: " + m_Worker);
+      m_Logger.info("Queue: " + m_QueueDir);
+      m_Logger.info("Input format: " + m_InputFormat.getName());
+      for (Class format: m_OutputFormats)
+	m_Logger.info("Output format: " + format.getName() + " -> " + m_OutputDir);
+    }
+    catch (Exception e) {
+      return e.getMessage();
+    }
+
+    statsFile = new File(queue.dir(WorkQueue.WORKERS), m_Worker + WorkerStats.EXT);
+    stats     = new WorkerStats(m_Worker);
+    // restarted worker, continue its statistics
+    if (statsFile.exists()) {
+      try {
+	stats = WorkerStats.load(statsFile);
+	m_Logger.info("Continuing statistics: " + statsFile);
+      }
+      catch (IOException e) {
+	m_Logger.error("Failed to load statistics, starting over: " + statsFile, e);
+      }
+    }
+    heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "heartbeat");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      stats.save(statsFile);
+      while (true) {
+	for (File file: queue.reclaim())
+	  m_Logger.info("Re-claimed stale: " + file.getName());
+	claimed = queue.claim();
+	if (claimed != null) {
+	  process(engines, queue, claimed, stats, heartbeat);
+	  stats.save(statsFile);
+	  continue;
+	}
+	if (queue.isDrained())
+	  break;
+	// other workers still busy, wait for them to finish or time out
+	Thread.sleep(m_Poll * 1000L);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "Interrupted!";
+    }
+    catch (IOException e) {
+      return "Failed to access queue: " + m_QueueDir + "\n" + e;
+    }
+    finally {
+      heartbeat.shutdownNow();
+    }
+
+    System.out.print(WorkerStats.report(WorkerStats.loadAll(queue.dir(WorkQueue.WORKERS))));
+
+    return null;
+  }
+
+  /**
+   * Processes files until the queue is drained.
+   *
+   * @return		null if successful, otherwise error message
+   */
+  public String execute() {
+    String	result;
+
+    if (m_HelpRequested)
+      return null;
+
+    result = doExecute();
+    if (result != null)
+      m_Logger.error(result);
+    else if (!m_ReportOnly)
+      m_Logger.info("Queue drained!");
+
+    return result;
+  }
+
+  /**
+   * Runs the worker.
+   *
+   * @param args	the options
+   * @throws Exception	if something goes wrong, eg setting the options
+   */
+  public static void main(String[] args) throws Exception {
+    GenerateBatch generate = new GenerateBatch();
+    generate.setOptions(args);
+    generate.execute();
+  }
+}
@@ -0,0 +1,626 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GenerateOverlay.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.overlay.Aligner;
+import com.github.fracpete.gpsaltprofile4j.overlay.Overlay;
+import com.github.fracpete.gpsaltprofile4j.overlay.OverlayCSV;
+import com.github.fracpete.gpsaltprofile4j.overlay.OverlayFormat;
+import com.github.fracpete.gpsaltprofile4j.overlay.OverlayPNG;
+import com.github.fracpete.gpsformats4j.core.BaseObject;
+import com.github.fracpete.gpsformats4j.core.OptionHandler;
+import com.github.fracpete.gpsformats4j.core.OptionUtils;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.helper.HelpScreenException;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates an overlay of multiple traces of the same route, aligned by
+ * distance, with median and percentile band.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class GenerateOverlay
+  extends BaseObject
+  implements OptionHandler {
+
+  public static final String INPUT_FILE = Generate.INPUT_FILE;
+
+  public static final String INPUT_FORMAT = Generate.INPUT_FORMAT;
+
+  public static final String INPUT_OPTIONS = Generate.INPUT_OPTIONS;
+
+  public static final String OUTPUT_FILE = Generate.OUTPUT_FILE;
+
+  public static final String OUTPUT_FORMAT = Generate.OUTPUT_FORMAT;
+
+  public static final String OUTPUT_OPTIONS = Generate.OUTPUT_OPTIONS;
+
+  public static final String STEP = "step";
+
+  public static final String LOWER = "lower";
+
+  public static final String UPPER = "upper";
+
+  public static final String THREADS = Generate.THREADS;
+
+  /** the output format for CSV. */
+  public static final String FORMAT_CSV = "CSV";
+
+  /** the output format for PNG. */
+  public static final String FORMAT_PNG = "PNG";
+
+  /** the argument parser. */
+  protected ArgumentParser m_Parser;
+
+  /** the input files. */
+  protected File[] m_InputFiles;
+
+  /** the input format. */
+  protected Class m_InputFormat;
+
+  /** the input options. */
+  protected String m_InputOptions;
+
+  /** the output file. */
+  protected File m_OutputFile;
+
+  /** the output format. */
+  protected String m_OutputFormat;
+
+  /** the output options. */
+  protected String m_OutputOptions;
+
+  /** the grid spacing. */
+  protected double m_Step;
+
+  /** the lower percentile. */
+  protected double m_Lower;
+
+  /** the upper percentile. */
+  protected double m_Upper;
+
+  /** the number of threads (0 = all cores). */
+  protected int m_Threads;
+
+  /** whether help got requested. */
+  protected boolean m_HelpRequested;
+
+  /**
+   * Initializes the members.
+   */
+  @Override
+  protected void initialize() {
+    String[] 	formatsIn;
+    int		i;
+
+    super.initialize();
+
+    m_InputFiles    = new File[0];
+    m_InputOptions  = "";
+    m_OutputFormat  = FORMAT_PNG;
+    m_OutputOptions = "";
+    m_Step          = Aligner.DEFAULT_STEP;
+    m_Lower         = Aligner.DEFAULT_LOWER;
+    m_Upper         = Aligner.DEFAULT_UPPER;
+    m_Threads       = 0;
+
+    formatsIn = new String[com.github.fracpete.gpsformats4j.formats.Formats.allFormats().length];
+    for (i = 0; i < com.github.fracpete.gpsformats4j.formats.Formats.allFormats().length; i++)
+      formatsIn[i] = com.github.fracpete.gpsformats4j.formats.Formats.allFormats()[i].getSimpleName();
+
+    m_Parser = ArgumentParsers.newFor(getClass().getSimpleName()).build();
+
+    m_Parser.description("Generates an overlay of multiple GPS traces of the same route, aligned by distance.");
+    m_Parser.defaultHelp(true);
+
+    m_Parser.addArgument("--" + INPUT_FILE)
+      .metavar("<file>")
+      .dest(INPUT_FILE)
+      .required(true)
+      .type(String.class)
+      .nargs("+")
+      .help("The GPS input files to use.");
+    m_Parser.addArgument("--" + INPUT_FORMAT)
+      .dest(INPUT_FORMAT)
+      .required(true)
+      .type(String.class)
+      .choices(formatsIn)
+      .help("The input format.");
+    m_Parser.addArgument("--" + INPUT_OPTIONS)
+      .metavar("<options>")
+      .dest(INPUT_OPTIONS)
+      .required(false)
+      .type(String.class)
+      .setDefault("")
+      .help("The options for the input format, if supported. Blank-separated list of key=value pairs.");
+
+    m_Parser.addArgument("--" + OUTPUT_FILE)
+      .metavar("<file>")
+      .dest(OUTPUT_FILE)
+      .required(true)
+      .type(String.class)
+      .help("The output file to generate.");
+    m_Parser.addArgument("--" + OUTPUT_FORMAT)
+      .dest(OUTPUT_FORMAT)
+      .required(false)
+      .type(String.class)
+      .choices(FORMAT_CSV, FORMAT_PNG)
+      .setDefault(FORMAT_PNG)
+      .help("The output format: aligned columns as CSV or overlay plot as PNG.");
+    m_Parser.addArgument("--" + OUTPUT_OPTIONS)
+      .metavar("<options>")
+      .dest(OUTPUT_OPTIONS)
+      .required(false)
+      .type(String.class)
+      .setDefault("")
+      .help("The options for the output format, if supported. Blank-separated list of key=value pairs.");
+
+    m_Parser.addArgument("--" + STEP)
+      .metavar("<meters>")
+      .dest(STEP)
+      .required(false)
+      .type(Double.class)
+      .setDefault(Aligner.DEFAULT_STEP)
+      .help("The spacing of the distance grid.");
+    m_Parser.addArgument("--" + LOWER)
+      .metavar("<0-100>")
+      .dest(LOWER)
+      .required(false)
+      .type(Double.class)
+      .setDefault(Aligner.DEFAULT_LOWER)
+      .help("The lower percentile of the band.");
+    m_Parser.addArgument("--" + UPPER)
+      .metavar("<0-100>")
+      .dest(UPPER)
+      .required(false)
+      .type(Double.class)
+      .setDefault(Aligner.DEFAULT_UPPER)
+      .help("The upper percentile of the band.");
+    m_Parser.addArgument("--" + THREADS)
+      .metavar("<num>")
+      .dest(THREADS)
+      .required(false)
+      .type(Integer.class)
+      .setDefault(0)
+      .help("The number of threads for reading and aligning the traces, 0 uses all available cores.");
+  }
+
+  /**
+   * Sets the input files.
+   *
+   * @param value	the files
+   */
+  public void setInputFiles(File[] value) {
+    m_InputFiles = value;
+  }
+
+  /**
+   * Returns the input files.
+   *
+   * @return		the files
+   */
+  public File[] getInputFiles() {
+    return m_InputFiles;
+  }
+
+  /**
+   * Sets the input format.
+   *
+   * @param value	the format
+   */
+  public void setInputFormat(Class value) {
+    m_InputFormat = value;
+  }
+
+  /**
+   * Returns the input format.
+   *
+   * @return		the format
+   */
+  public Class getInputFormat() {
+    return m_InputFormat;
+  }
+
+  /**
+   * Sets the input options.
+   *
+   * @param value	the options
+   */
+  public void setInputOptions(String value) {
+    m_InputOptions = value;
+  }
+
+  /**
+   * Returns the input options.
+   *
+   * @return		the options
+   */
+  public String getInputOptions() {
+    return m_InputOptions;
+  }
+
+  /**
+   * Sets the output file.
+   *
+   * @param value	the file
+   */
+  public void setOutputFile(File value) {
+    m_OutputFile = value;
+  }
+
+  /**
+   * Returns the output file.
+   *
+   * @return		the file
+   */
+  public File getOutputFile() {
+    return m_OutputFile;
+  }
+
+  /**
+   * Sets the output format.
+   *
+   * @param value	the format (CSV or PNG)
+   */
+  public void setOutputFormat(String value) {
+    m_OutputFormat = value;
+  }
+
+  /**
+   * Returns the output format.
+   *
+   * @return		the format (CSV or PNG)
+   */
+  public String getOutputFormat() {
+    return m_OutputFormat;
+  }
+
+  /**
+   * Sets the output options.
+   *
+   * @param value	the options
+   */
+  public void setOutputOptions(String value) {
+    m_OutputOptions = value;
+  }
+
+  /**
+   * Returns the output options.
+   *
+   * @return		the options
+   */
+  public String getOutputOptions() {
+    return m_OutputOptions;
+  }
+
+  /**
+   * Sets the spacing of the distance grid.
+   *
+   * @param value	the spacing in meters
+   */
+  public void setStep(double value) {
+    if (value > 0)
+      m_Step = value;
+  }
+
+  /**
+   * Returns the spacing of the distance grid.
+   *
+   * @return		the spacing in meters
+   */
+  public double getStep() {
+    return m_Step;
+  }
+
+  /**
+   * Sets the lower percentile.
+   *
+   * @param value	the percentile (0-100)
+   */
+  public void setLower(double value) {
+    if ((value >= 0) && (value <= 100))
+      m_Lower = value;
+  }
+
+  /**
+   * Returns the lower percentile.
+   *
+   * @return		the percentile (0-100)
+   */
+  public double getLower() {
+    return m_Lower;
+  }
+
+  /**
+   * Sets the upper percentile.
+   *
+   * @param value	the percentile (0-100)
+   */
+  public void setUpper(double value) {
+    if ((value >= 0) && (value <= 100))
+      m_Upper = value;
+  }
+
+  /**
+   * Returns the upper percentile.
+   *
+   * @return		the percentile (0-100)
+   */
+  public double getUpper() {
+    return m_Upper;
+  }
+
+  /**
+   * Sets the number of threads.
+   *
+   * @param value	the number of threads, 0 for all cores
+   */
+  public void setThreads(int value) {
+    if (value >= 0)
+      m_Threads = value;
+  }
+
+  /**
+   * Returns the number of threads.
+   *
+   * @return		the number of threads, 0 for all cores
+   */
+  public int getThreads() {
+    return m_Threads;
+  }
+
+  /**
+   * Sets the options.
+   *
+   * @param options	the options
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    Namespace		ns;
+    List<String>	files;
+    File[]		inputFiles;
+    int			i;
+
+    try {
+      ns = m_Parser.parseArgs(options);
+    }
+    catch (HelpScreenException e) {
+      m_HelpRequested = true;
+      return;
+    }
+    catch (Exception e) {
+      m_Parser.printHelp();
+      m_HelpRequested = false;
+      throw e;
+    }
+
+    files      = ns.getList(INPUT_FILE);
+    inputFiles = new File[files.size()];
+    for (i = 0; i < files.size(); i++)
+      inputFiles[i] = new File(files.get(i));
+    setInputFiles(inputFiles);
+    setInputFormat(Class.forName(com.github.fracpete.gpsformats4j.formats.Format.class.getPackage().getName() + "." + ns.getString(INPUT_FORMAT)));
+    setInputOptions(ns.getString(INPUT_OPTIONS));
+    setOutputFile(new File(ns.getString(OUTPUT_FILE)));
+    setOutputFormat(ns.getString(OUTPUT_FORMAT));
+    setOutputOptions(ns.getString(OUTPUT_OPTIONS));
+    setStep(ns.getDouble(STEP));
+    setLower(ns.getDouble(LOWER));
+    setUpper(ns.getDouble(UPPER));
+    setThreads(ns.getInt(THREADS));
+  }
+
+  /**
+   * Returns the help.
+   *
+   * @return		the help
+   */
+  @Override
+  public String toHelp() {
+    return m_Parser.formatHelp();
+  }
+
+  /**
+   * Instantiates and configures the output format.
+   *
+   * @return		the format
+   * @throws Exception	if the format is unknown or the options are invalid
+   */
+  protected OverlayFormat newOutputFormat() throws Exception {
+    OverlayPNG	png;
+
+    switch (m_OutputFormat) {
+      case FORMAT_CSV:
+	return new OverlayCSV();
+      case FORMAT_PNG:
+	png = new OverlayPNG();
+	if ((m_OutputOptions != null) && !m_OutputOptions.isEmpty()) {
+	  try {
+	    png.setOptions(OptionUtils.split(m_OutputOptions));
+	  }
+	  catch (Exception e) {
+	    throw new Exception("Failed to set options for output format: " + m_OutputOptions + "\n" + e, e);
+	  }
+	}
+	return png;
+      default:
+	throw new Exception("Unsupported output format: " + m_OutputFormat);
+    }
+  }
+
+  /**
+   * Returns unique names for the traces, used as series names and column
+   * headers. Files with the same name get their path instead, appending
+   * an index if still not unique (eg same file listed twice).
+   *
+   * @param files	the trace files
+   * @return		the names
+   */
+  public static String[] names(File[] files) {
+    String[]		result;
+    Map<String,Integer>	counts;
+    Set<String>		used;
+    String		name;
+    int			n;
+    int			i;
+
+    counts = new HashMap<>();
+    for (File file: files)
+      counts.put(file.getName(), counts.getOrDefault(file.getName(), 0) + 1);
+
+    result = new String[files.length];
+    used   = new HashSet<>();
+    for (i = 0; i < files.length; i++) {
+      name = files[i].getName();
+      if (counts.get(name) > 1)
+	name = files[i].getPath();
+      result[i] = name;
+      n         = 1;
+      while (!used.add(result[i]))
+	result[i] = name + " (" + (++n) + ")";
+    }
+
+    return result;
+  }
+
+  /**
+   * Performs the overlay.
+   *
+   * @return		null if successful, otherwise error message
+   */
+  protected String doExecute() {
+    final ProfileEngine		engine;
+    OverlayFormat		formatOut;
+    Aligner			aligner;
+    ExecutorService		executor;
+    List<Future<Profile>>	futures;
+    String[]			names;
+    Profile[]			profiles;
+    Overlay			overlay;
+    int				threads;
+    int				i;
+
+    if (m_InputFiles.length == 0)
+      return "No input files provided!";
+    for (File file: m_InputFiles) {
+      if (!file.exists())
+	return "Input file does not exist: " + file;
+      if (file.isDirectory())
+	return "Input file points to a directory: " + file;
+    }
+
+    try {
+      engine    = new ProfileEngine(m_InputFormat, m_InputOptions);
+      formatOut = newOutputFormat();
+      aligner   = new Aligner(m_Step, m_Lower, m_Upper);
+      m_Logger.info("Input format: " + m_InputFormat.getName());
+      m_Logger.info("Output format: " + m_OutputFormat);
+    }
+    catch (Exception e) {
+      return e.getMessage();
+    }
+
+    threads  = (m_Threads == 0) ? Runtime.getRuntime().availableProcessors() : m_Threads;
+    executor = Executors.newFixedThreadPool(threads);
+    try {
+      // read
+      futures = new ArrayList<>();
+      for (final File file: m_InputFiles)
+	futures.add(executor.submit(() -> engine.profile(file)));
+      names    = names(m_InputFiles);
+      profiles = new Profile[m_InputFiles.length];
+      for (i = 0; i < m_InputFiles.length; i++) {
+	try {
+	  profiles[i] = futures.get(i).get();
+	}
+	catch (ExecutionException e) {
+	  return "Failed to generate altitude profile from: " + m_InputFiles[i] + "\n" + e.getCause();
+	}
+	if (profiles[i] == null)
+	  return "Failed to read data from: " + m_InputFiles[i];
+      }
+      m_Logger.info("Read " + profiles.length + " traces");
+
+      // align
+      try {
+	overlay = aligner.align(names, profiles, executor, threads);
+      }
+      catch (Exception e) {
+	return "Failed to align traces!\n" + e;
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "Interrupted!";
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    return formatOut.write(overlay, m_OutputFile);
+  }
+
+  /**
+   * Performs the overlay.
+   *
+   * @return		null if successful, otherwise error message
+   */
+  public String execute() {
+    String	result;
+
+    if (m_HelpRequested)
+      return null;
+
+    result = doExecute();
+    if (result != null)
+      m_Logger.error(result);
+    else
+      m_Logger.info("Successfully generated overlay!");
+
+    return result;
+  }
+
+  /**
+   * Generates the overlay.
+   *
+   * @param args	the options
+   * @throws Exception	if something goes wrong, eg setting the options
+   */
+  public static void main(String[] args) throws Exception {
+    GenerateOverlay generate = new GenerateOverlay();
+    generate.setOptions(args);
+    generate.execute();
+  }
+}
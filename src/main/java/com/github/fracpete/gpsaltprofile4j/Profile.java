@@ -0,0 +1,509 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Profile.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsaltprofile4j.io.TimeParser;
+import com.github.fracpete.gpsaltprofile4j.storage.Allocator;
+import com.github.fracpete.gpsaltprofile4j.storage.ArrayDoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.ArrayStringColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.DoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+import com.github.fracpete.gpsaltprofile4j.storage.StringColumn;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.csv.CSVRecordFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable altitude profile, stored column-wise. Missing elevations and
+ * times are represented as NaN. The columns can live on the heap, off-heap
+ * or on disk, see {@link com.github.fracpete.gpsaltprofile4j.storage.Storage}.
+ * Speed and grade get derived from the previous row of the track on
+ * access, so they always reflect the final (eg corrected) elevations.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class Profile {
+
+  /** the track column. */
+  protected final StringColumn m_Tracks;
+
+  /** the time column. */
+  protected final StringColumn m_Times;
+
+  /** the latitude column. */
+  protected final DoubleColumn m_Latitudes;
+
+  /** the longitude column. */
+  protected final DoubleColumn m_Longitudes;
+
+  /** the cumulative distance column. */
+  protected final DoubleColumn m_Distances;
+
+  /** the elevation column. */
+  protected final DoubleColumn m_Elevations;
+
+  /** the elapsed time column. */
+  protected final DoubleColumn m_Elapsed;
+
+  /** the number of rows. */
+  protected final int m_Size;
+
+  /** the number of records rejected while generating the profile. */
+  protected final int m_Rejected;
+
+  /**
+   * Initializes the profile. The arrays get used as is and must not be
+   * modified afterwards.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param latitudes	the latitudes
+   * @param longitudes	the longitudes
+   * @param distances	the cumulative distances
+   * @param elevations	the elevations
+   * @param size	the number of rows in use
+   */
+  public Profile(String[] tracks, String[] times, double[] latitudes, double[] longitudes, double[] distances, double[] elevations, int size) {
+    this(
+      new ArrayStringColumn(tracks, size),
+      new ArrayStringColumn(times, size),
+      new ArrayDoubleColumn(latitudes, size),
+      new ArrayDoubleColumn(longitudes, size),
+      new ArrayDoubleColumn(distances, size),
+      new ArrayDoubleColumn(elevations, size),
+      elapsed(tracks, times, size),
+      size,
+      0);
+  }
+
+  /**
+   * Initializes the profile. The columns get used as is and must not be
+   * modified afterwards.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param latitudes	the latitudes
+   * @param longitudes	the longitudes
+   * @param distances	the cumulative distances
+   * @param elevations	the elevations
+   * @param size	the number of rows in use
+   */
+  public Profile(StringColumn tracks, StringColumn times, DoubleColumn latitudes, DoubleColumn longitudes, DoubleColumn distances, DoubleColumn elevations, int size) {
+    this(tracks, times, latitudes, longitudes, distances, elevations, size, 0);
+  }
+
+  /**
+   * Initializes the profile, determining the elapsed times from the times,
+   * which get kept on the heap (see the constructor with {@link Allocator}
+   * for large profiles). The columns get used as is and must not be
+   * modified afterwards.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param latitudes	the latitudes
+   * @param longitudes	the longitudes
+   * @param distances	the cumulative distances
+   * @param elevations	the elevations
+   * @param size	the number of rows in use
+   * @param rejected	the number of records rejected while generating the profile
+   */
+  public Profile(StringColumn tracks, StringColumn times, DoubleColumn latitudes, DoubleColumn longitudes, DoubleColumn distances, DoubleColumn elevations, int size, int rejected) {
+    this(tracks, times, latitudes, longitudes, distances, elevations, elapsed(tracks, times, size), size, rejected);
+  }
+
+  /**
+   * Initializes the profile, determining the elapsed times from the times,
+   * allocating their column with the allocator. The columns get used as is
+   * and must not be modified afterwards.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param latitudes	the latitudes
+   * @param longitudes	the longitudes
+   * @param distances	the cumulative distances
+   * @param elevations	the elevations
+   * @param size	the number of rows in use
+   * @param rejected	the number of records rejected while generating the profile
+   * @param allocator	for allocating the elapsed time column
+   * @throws IOException	if allocating fails
+   */
+  public Profile(StringColumn tracks, StringColumn times, DoubleColumn latitudes, DoubleColumn longitudes, DoubleColumn distances, DoubleColumn elevations, int size, int rejected, Allocator allocator) throws IOException {
+    this(tracks, times, latitudes, longitudes, distances, elevations, elapsed(tracks, times, size, allocator), size, rejected);
+  }
+
+  /**
+   * Initializes the profile. The columns get used as is and must not be
+   * modified afterwards.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param latitudes	the latitudes
+   * @param longitudes	the longitudes
+   * @param distances	the cumulative distances
+   * @param elevations	the elevations
+   * @param elapsed	the elapsed times
+   * @param size	the number of rows in use
+   * @param rejected	the number of records rejected while generating the profile
+   */
+  public Profile(StringColumn tracks, StringColumn times, DoubleColumn latitudes, DoubleColumn longitudes, DoubleColumn distances, DoubleColumn elevations, DoubleColumn elapsed, int size, int rejected) {
+    m_Tracks     = tracks;
+    m_Times      = times;
+    m_Latitudes  = latitudes;
+    m_Longitudes = longitudes;
+    m_Distances  = distances;
+    m_Elevations = elevations;
+    m_Elapsed    = elapsed;
+    m_Size       = size;
+    m_Rejected   = rejected;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return		the number of rows
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the number of records that were rejected as malformed while
+   * generating the profile, whether skipped or interpolated.
+   *
+   * @return		the number of records
+   */
+  public int getRejected() {
+    return m_Rejected;
+  }
+
+  /**
+   * Returns the track of the specified row.
+   *
+   * @param index	the row
+   * @return		the track
+   */
+  public String getTrack(int index) {
+    return m_Tracks.get(index);
+  }
+
+  /**
+   * Returns the time of the specified row.
+   *
+   * @param index	the row
+   * @return		the time
+   */
+  public String getTime(int index) {
+    return m_Times.get(index);
+  }
+
+  /**
+   * Returns the latitude of the specified row.
+   *
+   * @param index	the row
+   * @return		the latitude
+   */
+  public double getLatitude(int index) {
+    return m_Latitudes.get(index);
+  }
+
+  /**
+   * Returns the longitude of the specified row.
+   *
+   * @param index	the row
+   * @return		the longitude
+   */
+  public double getLongitude(int index) {
+    return m_Longitudes.get(index);
+  }
+
+  /**
+   * Returns the cumulative distance of the specified row.
+   *
+   * @param index	the row
+   * @return		the distance
+   */
+  public double getDistance(int index) {
+    return m_Distances.get(index);
+  }
+
+  /**
+   * Returns the elevation of the specified row.
+   *
+   * @param index	the row
+   * @return		the elevation, NaN if missing
+   */
+  public double getElevation(int index) {
+    return m_Elevations.get(index);
+  }
+
+  /**
+   * Returns the elapsed time of the specified row.
+   *
+   * @param index	the row
+   * @return		the seconds since the first point of the track with a time, NaN if no time
+   */
+  public double getElapsed(int index) {
+    return m_Elapsed.get(index);
+  }
+
+  /**
+   * Returns whether the specified row is the first point of its track.
+   *
+   * @param index	the row
+   * @return		true if the first point
+   */
+  public boolean isTrackStart(int index) {
+    return (index == 0) || !getTrack(index).equals(getTrack(index - 1));
+  }
+
+  /**
+   * Returns the speed of the specified row, from the previous row.
+   *
+   * @param index	the row
+   * @return		the speed in m/s (0 if stationary), NaN if first point of the track or no time
+   */
+  public double getSpeed(int index) {
+    if (isTrackStart(index))
+      return Double.NaN;
+    return speed(getDistance(index) - getDistance(index - 1), getElapsed(index) - getElapsed(index - 1));
+  }
+
+  /**
+   * Returns the grade of the specified row, from the previous row.
+   *
+   * @param index	the row
+   * @return		the grade in percent, NaN if first point of the track, no elevation or no distance covered
+   */
+  public double getGrade(int index) {
+    if (isTrackStart(index))
+      return Double.NaN;
+    return grade(getDistance(index) - getDistance(index - 1), getElevation(index) - getElevation(index - 1));
+  }
+
+  /**
+   * Returns a copy of the profile that uses the new elevations, sharing
+   * all other columns.
+   *
+   * @param elevations	the new elevations, must not be modified afterwards
+   * @return		the new profile
+   */
+  public Profile withElevations(double[] elevations) {
+    return withElevations(new ArrayDoubleColumn(elevations, elevations.length));
+  }
+
+  /**
+   * Returns a copy of the profile that uses the new elevations, sharing
+   * all other columns.
+   *
+   * @param elevations	the new elevations, must not be modified afterwards
+   * @return		the new profile
+   */
+  public Profile withElevations(DoubleColumn elevations) {
+    if (elevations.size() < m_Size)
+      throw new IllegalArgumentException("Expected at least " + m_Size + " elevations, got: " + elevations.size());
+    return new Profile(m_Tracks, m_Times, m_Latitudes, m_Longitudes, m_Distances, elevations, m_Elapsed, m_Size, m_Rejected);
+  }
+
+  /**
+   * Computes the speed between two points of the same track. The first
+   * point of a track has no previous point, the caller should not use the
+   * last point of the preceding track for it.
+   *
+   * @param distance	the distance covered in m
+   * @param elapsed	the time taken in seconds
+   * @return		the speed in m/s (0 if no distance covered), NaN if no time passed or no time available
+   */
+  public static double speed(double distance, double elapsed) {
+    if (!(elapsed > 0))
+      return Double.NaN;
+    return distance / elapsed;
+  }
+
+  /**
+   * Computes the grade between two points.
+   *
+   * @param distance	the distance covered in m
+   * @param climb	the elevation difference in m
+   * @return		the grade in percent, NaN if no distance covered or no elevation available
+   */
+  public static double grade(double distance, double climb) {
+    if (!(distance > 0))
+      return Double.NaN;
+    return climb / distance * 100.0;
+  }
+
+  /**
+   * Determines the elapsed times from the times, for profiles that were
+   * generated without.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param size	the number of rows in use
+   * @param allocator	for allocating the column
+   * @return		the elapsed times
+   * @throws IOException	if allocating fails
+   */
+  protected static DoubleColumn elapsed(StringColumn tracks, StringColumn times, int size, Allocator allocator) throws IOException {
+    DoubleColumn	result;
+    String		track;
+    double		start;
+    double		secs;
+    int			i;
+
+    result = allocator.doubles(size);
+    track  = null;
+    start  = Double.NaN;
+    for (i = 0; i < size; i++) {
+      if (!tracks.get(i).equals(track)) {
+	track = tracks.get(i);
+	start = Double.NaN;
+      }
+      secs = TimeParser.parse(times.get(i));
+      if (Double.isNaN(start))
+	start = secs;
+      result.set(i, secs - start);
+    }
+
+    return result;
+  }
+
+  /**
+   * Determines the elapsed times from the times, for profiles that were
+   * generated without, keeping them on the heap.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param size	the number of rows in use
+   * @return		the elapsed times
+   */
+  protected static DoubleColumn elapsed(StringColumn tracks, StringColumn times, int size) {
+    try {
+      return elapsed(tracks, times, size, Storage.DEFAULT.newAllocator());
+    }
+    catch (IOException e) {
+      // heap columns don't get allocated via buffers
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Determines the elapsed times from the times, for profiles that were
+   * generated without, keeping them on the heap.
+   *
+   * @param tracks	the tracks
+   * @param times	the times
+   * @param size	the number of rows in use
+   * @return		the elapsed times
+   */
+  protected static DoubleColumn elapsed(String[] tracks, String[] times, int size) {
+    return elapsed(new ArrayStringColumn(tracks, size), new ArrayStringColumn(times, size), size);
+  }
+
+  /**
+   * Interpolates the elevations of the specified rows linearly by distance,
+   * between the closest points of the same track that have an elevation.
+   * Rows without such points on both sides are left as is.
+   *
+   * @param tracks	the tracks
+   * @param distances	the cumulative distances
+   * @param elevations	the elevations, gets updated
+   * @param size	the number of rows in use
+   * @param rows	the rows to interpolate, ascending
+   */
+  public static void interpolateElevations(StringColumn tracks, DoubleColumn distances, DoubleColumn elevations, int size, int[] rows) {
+    String	track;
+    int		prev;
+    int		next;
+    double	dist;
+
+    next = -1;
+    for (int row: rows) {
+      track = tracks.get(row);
+      prev  = row - 1;
+      while ((prev >= 0) && Double.isNaN(elevations.get(prev)) && track.equals(tracks.get(prev)))
+	prev--;
+      if (next <= row) {
+	next = row + 1;
+	while ((next < size) && Double.isNaN(elevations.get(next)) && track.equals(tracks.get(next)))
+	  next++;
+      }
+      if ((prev < 0) || (next >= size) || Double.isNaN(elevations.get(prev)) || Double.isNaN(elevations.get(next))
+	|| !track.equals(tracks.get(prev)) || !track.equals(tracks.get(next)))
+	continue;
+      dist = distances.get(next) - distances.get(prev);
+      if (dist <= 0)
+	elevations.set(row, elevations.get(prev));
+      else
+	elevations.set(row, elevations.get(prev)
+	  + (elevations.get(next) - elevations.get(prev)) * (distances.get(row) - distances.get(prev)) / dist);
+    }
+  }
+
+  /**
+   * Formats the elevation for output. Whole numbers are output without
+   * decimals, like they are usually recorded (eg "123" rather than
+   * "123.0").
+   *
+   * @param elevation	the elevation
+   * @return		the formatted elevation, empty if missing
+   */
+  public static String formatElevation(double elevation) {
+    if (Double.isNaN(elevation))
+      return "";
+    if ((elevation == Math.rint(elevation)) && (Math.abs(elevation) < 1e15))
+      return "" + (long) elevation;
+    return "" + elevation;
+  }
+
+  /**
+   * Turns the profile into records, using the columns track, time,
+   * distance and elevation.
+   *
+   * @return		the records
+   */
+  public List<CSVRecord> toRecords() {
+    List<CSVRecord>	result;
+    Map<String,Integer>	map;
+    int			i;
+
+    result = new ArrayList<>(m_Size);
+    map    = new HashMap<>();
+    map.put(Format.KEY_TRACK, 0);
+    map.put(Format.KEY_TIME, 1);
+    map.put(Format.KEY_DISTANCE, 2);
+    map.put(Format.KEY_ELEVATION, 3);
+    for (i = 0; i < m_Size; i++) {
+      result.add(CSVRecordFactory.newRecord(new String[]{
+	getTrack(i),
+	getTime(i),
+	"" + getDistance(i),
+	formatElevation(getElevation(i))}, map));
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,745 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProfileEngine.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.dem.ElevationCorrection;
+import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsaltprofile4j.io.ErrorPolicy;
+import com.github.fracpete.gpsaltprofile4j.io.NumberParser;
+import com.github.fracpete.gpsaltprofile4j.io.ParallelTraceReader;
+import com.github.fracpete.gpsaltprofile4j.io.PointHandler;
+import com.github.fracpete.gpsaltprofile4j.io.TimeParser;
+import com.github.fracpete.gpsaltprofile4j.io.TraceStreamReader;
+import com.github.fracpete.gpsaltprofile4j.storage.Allocator;
+import com.github.fracpete.gpsaltprofile4j.storage.DoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+import com.github.fracpete.gpsaltprofile4j.storage.StringColumn;
+import com.github.fracpete.gpsformats4j.core.OptionUtils;
+import com.grum.geocalc.Coordinate;
+import com.grum.geocalc.EarthCalc;
+import com.grum.geocalc.Point;
+import gnu.trove.list.array.TIntArrayList;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable and thread-safe engine for generating altitude profiles.
+ * Formats are instantiated and configured once at construction time;
+ * input formats get instantiated once per calling thread, as their
+ * thread-safety is not guaranteed.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ProfileEngine {
+
+  /** the input format class. */
+  protected final Class m_InputFormat;
+
+  /** the input options. */
+  protected final String m_InputOptions;
+
+  /** the configured input format, one per thread. */
+  protected final ThreadLocal<com.github.fracpete.gpsformats4j.formats.Format> m_InputFormats;
+
+  /** the configured output format, null if none. */
+  protected final Format m_OutputFormat;
+
+  /** the elevation correction, null if none. */
+  protected final ElevationCorrection m_Correction;
+
+  /** the parallel reader, null if reading sequentially. */
+  protected final ParallelTraceReader m_Reader;
+
+  /** the storage for the profile columns. */
+  protected final Storage m_Storage;
+
+  /** how to handle malformed records. */
+  protected final ErrorPolicy m_ErrorPolicy;
+
+  /** for stopping conversions early. */
+  protected final Cancellation m_Cancellation;
+
+  /**
+   * Initializes the engine without output format.
+   *
+   * @param inputFormat		the input format class
+   * @param inputOptions	the input options, can be null or empty
+   * @throws Exception		if the input format cannot be configured
+   */
+  public ProfileEngine(Class inputFormat, String inputOptions) throws Exception {
+    this(inputFormat, inputOptions, null, null);
+  }
+
+  /**
+   * Initializes the engine.
+   *
+   * @param inputFormat		the input format class
+   * @param inputOptions	the input options, can be null or empty
+   * @param outputFormat	the output format class, can be null
+   * @param outputOptions	the output options, can be null or empty
+   * @throws Exception		if the formats cannot be configured
+   */
+  public ProfileEngine(Class inputFormat, String inputOptions, Class outputFormat, String outputOptions) throws Exception {
+    m_InputFormat  = inputFormat;
+    m_InputOptions = (inputOptions == null) ? "" : inputOptions;
+    m_OutputFormat = (outputFormat == null) ? null : newOutputFormat(outputFormat, (outputOptions == null) ? "" : outputOptions);
+    m_Correction   = null;
+    m_Reader       = null;
+    m_Storage      = Storage.DEFAULT;
+    m_ErrorPolicy  = ErrorPolicy.FAIL;
+    m_Cancellation = Cancellation.NONE;
+    // fail early on misconfigured input
+    newInputFormat();
+    m_InputFormats = ThreadLocal.withInitial(() -> {
+      try {
+	return newInputFormat();
+      }
+      catch (Exception e) {
+	throw new IllegalStateException(e.getMessage(), e);
+      }
+    });
+  }
+
+  /**
+   * Initializes the engine with the input format of the other engine.
+   *
+   * @param source		the engine to get the input format from
+   * @param outputFormat	the configured output format, can be null
+   * @param correction		the elevation correction, can be null
+   * @param reader		the parallel reader, can be null
+   * @param storage		the storage for the profile columns
+   * @param errorPolicy		how to handle malformed records
+   * @param cancellation	for stopping conversions early
+   */
+  protected ProfileEngine(ProfileEngine source, Format outputFormat, ElevationCorrection correction, ParallelTraceReader reader, Storage storage, ErrorPolicy errorPolicy, Cancellation cancellation) {
+    m_InputFormat  = source.m_InputFormat;
+    m_InputOptions = source.m_InputOptions;
+    m_InputFormats = source.m_InputFormats;
+    m_OutputFormat = outputFormat;
+    m_Correction   = correction;
+    m_Reader       = reader;
+    m_Storage      = (storage == null) ? Storage.DEFAULT : storage;
+    m_ErrorPolicy  = (errorPolicy == null) ? ErrorPolicy.FAIL : errorPolicy;
+    m_Cancellation = (cancellation == null) ? Cancellation.NONE : cancellation;
+  }
+
+  /**
+   * Returns a copy of the engine that writes using the specified output
+   * format, sharing everything else (eg for writing the same profile in
+   * several formats).
+   *
+   * @param outputFormat	the output format class, can be null
+   * @param outputOptions	the output options, can be null or empty
+   * @return			the new engine
+   * @throws Exception		if the format cannot be configured
+   */
+  public ProfileEngine withOutputFormat(Class outputFormat, String outputOptions) throws Exception {
+    return new ProfileEngine(
+      this,
+      (outputFormat == null) ? null : newOutputFormat(outputFormat, (outputOptions == null) ? "" : outputOptions),
+      m_Correction, m_Reader, m_Storage, m_ErrorPolicy, m_Cancellation);
+  }
+
+  /**
+   * Returns a copy of the engine that applies the elevation correction.
+   *
+   * @param correction	the correction, null for none
+   * @return		the new engine
+   */
+  public ProfileEngine withCorrection(ElevationCorrection correction) {
+    return new ProfileEngine(this, m_OutputFormat, correction, m_Reader, m_Storage, m_ErrorPolicy, m_Cancellation);
+  }
+
+  /**
+   * Returns a copy of the engine that reads supported input formats in
+   * parallel, see {@link ParallelTraceReader#supports(Class)}.
+   *
+   * @param reader	the reader, null for sequential reading
+   * @return		the new engine
+   */
+  public ProfileEngine withReader(ParallelTraceReader reader) {
+    return new ProfileEngine(this, m_OutputFormat, m_Correction, reader, m_Storage, m_ErrorPolicy, m_Cancellation);
+  }
+
+  /**
+   * Returns a copy of the engine that stores the profile columns as
+   * configured.
+   *
+   * @param storage	the storage, null for the default (heap, unlimited)
+   * @return		the new engine
+   */
+  public ProfileEngine withStorage(Storage storage) {
+    return new ProfileEngine(this, m_OutputFormat, m_Correction, m_Reader, storage, m_ErrorPolicy, m_Cancellation);
+  }
+
+  /**
+   * Returns a copy of the engine that handles malformed records according
+   * to the policy.
+   *
+   * @param errorPolicy	the policy, null for the default (fail)
+   * @return		the new engine
+   */
+  public ProfileEngine withErrorPolicy(ErrorPolicy errorPolicy) {
+    return new ProfileEngine(this, m_OutputFormat, m_Correction, m_Reader, m_Storage, errorPolicy, m_Cancellation);
+  }
+
+  /**
+   * Returns a copy of the engine whose conversions stop once the token
+   * gets cancelled or its deadline passes. Use a separate copy per
+   * conversion that should be stoppable on its own.
+   *
+   * @param cancellation	the token, null for none
+   * @return			the new engine
+   */
+  public ProfileEngine withCancellation(Cancellation cancellation) {
+    return new ProfileEngine(this, m_OutputFormat, m_Correction, m_Reader, m_Storage, m_ErrorPolicy, cancellation);
+  }
+
+  /**
+   * Instantiates and configures the input format.
+   *
+   * @return		the format
+   * @throws Exception	if instantiation or configuration fails
+   */
+  protected com.github.fracpete.gpsformats4j.formats.Format newInputFormat() throws Exception {
+    com.github.fracpete.gpsformats4j.formats.Format	result;
+
+    try {
+      result = (com.github.fracpete.gpsformats4j.formats.Format) m_InputFormat.newInstance();
+    }
+    catch (Exception e) {
+      throw new Exception("Error configuring formats: " + e.toString(), e);
+    }
+
+    if (!result.canRead())
+      throw new Exception("Input format does not support reading!");
+
+    if ((result instanceof com.github.fracpete.gpsformats4j.formats.FormatWithOptionHandling) && !m_InputOptions.isEmpty()) {
+      try {
+	((com.github.fracpete.gpsformats4j.formats.FormatWithOptionHandling) result).setOptions(OptionUtils.split(m_InputOptions));
+      }
+      catch (Exception e) {
+	throw new Exception("Failed to set options for input format: " + m_InputOptions + "\n" + e, e);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Instantiates and configures the output format.
+   *
+   * @param format	the format class
+   * @param options	the options
+   * @return		the format
+   * @throws Exception	if instantiation or configuration fails
+   */
+  protected static Format newOutputFormat(Class format, String options) throws Exception {
+    Format	result;
+
+    try {
+      result = (Format) format.newInstance();
+    }
+    catch (Exception e) {
+      throw new Exception("Error configuring formats: " + e.toString(), e);
+    }
+
+    if ((result instanceof com.github.fracpete.gpsaltprofile4j.formats.FormatWithOptionHandling) && !options.isEmpty()) {
+      try {
+	((com.github.fracpete.gpsaltprofile4j.formats.FormatWithOptionHandling) result).setOptions(OptionUtils.split(options));
+      }
+      catch (Exception e) {
+	throw new Exception("Failed to set options for output format: " + options + "\n" + e, e);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the input format class.
+   *
+   * @return		the format
+   */
+  public Class getInputFormat() {
+    return m_InputFormat;
+  }
+
+  /**
+   * Returns the input options.
+   *
+   * @return		the options
+   */
+  public String getInputOptions() {
+    return m_InputOptions;
+  }
+
+  /**
+   * Returns the configured output format.
+   *
+   * @return		the format, null if none
+   */
+  public Format getOutputFormat() {
+    return m_OutputFormat;
+  }
+
+  /**
+   * Returns the elevation correction.
+   *
+   * @return		the correction, null if none
+   */
+  public ElevationCorrection getCorrection() {
+    return m_Correction;
+  }
+
+  /**
+   * Returns the parallel reader.
+   *
+   * @return		the reader, null if reading sequentially
+   */
+  public ParallelTraceReader getReader() {
+    return m_Reader;
+  }
+
+  /**
+   * Returns the storage for the profile columns.
+   *
+   * @return		the storage
+   */
+  public Storage getStorage() {
+    return m_Storage;
+  }
+
+  /**
+   * Returns how malformed records get handled.
+   *
+   * @return		the policy
+   */
+  public ErrorPolicy getErrorPolicy() {
+    return m_ErrorPolicy;
+  }
+
+  /**
+   * Returns the token for stopping conversions early.
+   *
+   * @return		the token
+   */
+  public Cancellation getCancellation() {
+    return m_Cancellation;
+  }
+
+  /**
+   * Returns whether the input gets read in parallel.
+   *
+   * @return		true if parallel
+   */
+  public boolean isParallel() {
+    return (m_Reader != null) && ParallelTraceReader.supports(m_InputFormat);
+  }
+
+  /**
+   * Reads the GPS trace from the file.
+   *
+   * @param input	the file to read
+   * @return		the trace, null if failed to read
+   */
+  public List<CSVRecord> read(File input) {
+    return m_InputFormats.get().read(input);
+  }
+
+  /**
+   * Reads the GPS trace from the file, checking for cancellation before
+   * and after, as the input formats cannot be stopped while reading.
+   *
+   * @param input	the file to read
+   * @return		the trace, null if failed to read
+   * @throws IOException	if the conversion got stopped
+   */
+  protected List<CSVRecord> readChecked(File input) throws IOException {
+    List<CSVRecord>	result;
+
+    m_Cancellation.check();
+    result = read(input);
+    m_Cancellation.check();
+
+    return result;
+  }
+
+  /**
+   * Generates the profile from the trace, applying the elevation
+   * correction if configured.
+   *
+   * @param data	the trace
+   * @return		the profile
+   * @throws IOException	if a record is malformed (depending on the policy), allocating the columns or the elevation correction fails, or the conversion got stopped
+   */
+  public Profile profile(List<CSVRecord> data) throws IOException {
+    Allocator	allocator;
+
+    allocator = m_Storage.newAllocator();
+    return correct(generate(data, allocator, m_ErrorPolicy, m_Cancellation), allocator);
+  }
+
+  /**
+   * Applies the elevation correction, if configured.
+   *
+   * @param profile	the profile to correct
+   * @param allocator	for allocating the corrected elevations
+   * @return		the (corrected) profile
+   * @throws IOException	if the elevation correction fails
+   */
+  protected Profile correct(Profile profile, Allocator allocator) throws IOException {
+    if (m_Correction == null)
+      return profile;
+    return m_Correction.correct(profile, allocator, m_Cancellation);
+  }
+
+  /**
+   * Generates the profile from the file.
+   *
+   * @param input	the file to read
+   * @return		the profile, null if failed to read
+   * @throws IOException	if parallel reading, a malformed record (depending on the policy), allocating the columns or the elevation correction fails, or the conversion got stopped
+   */
+  public Profile profile(File input) throws IOException {
+    List<CSVRecord>	data;
+    Allocator		allocator;
+
+    if (isParallel()) {
+      allocator = m_Storage.newAllocator();
+      return correct(m_Reader.read(input, m_InputFormat, allocator, m_ErrorPolicy, m_Cancellation), allocator);
+    }
+
+    data = readChecked(input);
+    if (data == null)
+      return null;
+
+    return profile(data);
+  }
+
+  /**
+   * Returns whether the input can be read from a stream without spooling
+   * it to a temporary file first, i.e., the built-in parser supports the
+   * input format (independent of any parallel reader).
+   *
+   * @return		true if streaming
+   */
+  public boolean canStream() {
+    return TraceStreamReader.supports(m_InputFormat);
+  }
+
+  /**
+   * Generates the profile from the stream. Unless streaming is supported
+   * (see {@link #canStream()}), the stream gets spooled to a temporary
+   * file first, since the input formats only read from files. The stream
+   * is not closed.
+   *
+   * @param input	the stream to read
+   * @return		the profile, null if failed to read
+   * @throws IOException	if reading or spooling the stream, a malformed record (depending on the policy), allocating the columns or the elevation correction fails, or the conversion got stopped
+   */
+  public Profile profile(InputStream input) throws IOException {
+    Allocator	allocator;
+    File	tmp;
+
+    if (canStream()) {
+      allocator = m_Storage.newAllocator();
+      return correct(new TraceStreamReader(m_ErrorPolicy, m_Cancellation).read(input, m_InputFormat, allocator), allocator);
+    }
+
+    tmp = File.createTempFile("gpsaltprofile4j-", ".tmp");
+    try {
+      Files.copy(input, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return profile(tmp);
+    }
+    finally {
+      if (!tmp.delete())
+	tmp.deleteOnExit();
+    }
+  }
+
+  /**
+   * Reads the stream and passes on the points of the profile as soon as
+   * they are available, applying the elevation correction if configured.
+   * Requires streaming support, see {@link #canStream()}. The stream is
+   * not closed.
+   *
+   * @param input	the stream to read
+   * @param handler	the handler to pass the points on to
+   * @return		the number of rejected trackpoints
+   * @throws IOException	if reading fails, the handler fails, a trackpoint is malformed (depending on the policy), the elevation correction fails or the conversion got stopped
+   */
+  public int stream(InputStream input, PointHandler handler) throws IOException {
+    if (!canStream())
+      throw new IllegalStateException("Input format cannot be streamed: " + m_InputFormat.getName());
+    if (m_Correction != null)
+      handler = m_Correction.correcting(handler);
+    return new TraceStreamReader(m_ErrorPolicy, m_Cancellation).read(input, m_InputFormat, handler);
+  }
+
+  /**
+   * Writes the profile using the configured output format.
+   *
+   * @param profile	the profile to write
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  public String write(Profile profile, File output) {
+    if (m_OutputFormat == null)
+      return "No output format configured!";
+    return m_OutputFormat.write(profile, output, m_Cancellation);
+  }
+
+  /**
+   * Writes the profile to the stream using the configured output format.
+   * The stream is not closed.
+   *
+   * @param profile	the profile to write
+   * @param output	the stream to write to
+   * @return		null if successful, otherwise error message
+   */
+  public String write(Profile profile, OutputStream output) {
+    if (m_OutputFormat == null)
+      return "No output format configured!";
+    return m_OutputFormat.write(profile, output, m_Cancellation);
+  }
+
+  /**
+   * Turns an error message that is due to the conversion getting stopped
+   * into an exception.
+   *
+   * @param msg		the error message, null if successful
+   * @return		the error message
+   * @throws IOException	if the conversion got stopped
+   */
+  protected String checked(String msg) throws IOException {
+    if (msg != null)
+      m_Cancellation.check();
+    return msg;
+  }
+
+  /**
+   * Generates the profile from the file and writes it, running on the
+   * executor. Cancelling the future stops the conversion at the next
+   * check within the reading, generating or writing loops, freeing up
+   * the thread. The future completes with a
+   * {@link java.util.concurrent.TimeoutException} if the timeout gets
+   * exceeded.
+   *
+   * @param input	the file to read
+   * @param output	the file to write
+   * @param executor	the executor to run the conversion on
+   * @param timeout	the timeout, 0 or less for none
+   * @param unit	the unit of the timeout
+   * @return		the future, null if successful, otherwise error message
+   */
+  public CompletableFuture<String> convertAsync(final File input, final File output, Executor executor, long timeout, TimeUnit unit) {
+    final Cancellation	cancellation;
+    final ProfileEngine	engine;
+
+    cancellation = new Cancellation(timeout, unit);
+    engine       = withCancellation(cancellation);
+    return cancellation.async(() -> {
+      Profile profile = engine.profile(input);
+      if (profile == null)
+	return "Failed to read data from: " + input;
+      return engine.checked(engine.write(profile, output));
+    }, executor);
+  }
+
+  /**
+   * Generates the profile from the stream and writes it to the other
+   * stream, running on the executor. See
+   * {@link #convertAsync(File, File, Executor, long, TimeUnit)} for
+   * cancellation and timeout. The streams are not closed.
+   *
+   * @param input	the stream to read
+   * @param output	the stream to write to
+   * @param executor	the executor to run the conversion on
+   * @param timeout	the timeout, 0 or less for none
+   * @param unit	the unit of the timeout
+   * @return		the future, null if successful, otherwise error message
+   */
+  public CompletableFuture<String> convertAsync(final InputStream input, final OutputStream output, Executor executor, long timeout, TimeUnit unit) {
+    final Cancellation	cancellation;
+    final ProfileEngine	engine;
+
+    cancellation = new Cancellation(timeout, unit);
+    engine       = withCancellation(cancellation);
+    return cancellation.async(() -> {
+      Profile profile = engine.profile(input);
+      if (profile == null)
+	return "Failed to read data from stream";
+      return engine.checked(engine.write(profile, output));
+    }, executor);
+  }
+
+  /**
+   * Turns the GPS trace information into altitude profile information,
+   * keeping the columns on the heap and failing on malformed records.
+   *
+   * @param data	the trace
+   * @return		the profile
+   * @throws IOException	if a record is malformed or allocating the columns fails
+   */
+  public static Profile generate(List<CSVRecord> data) throws IOException {
+    return generate(data, Storage.DEFAULT.newAllocator(), ErrorPolicy.FAIL);
+  }
+
+  /**
+   * Turns the GPS trace information into altitude profile information.
+   * Blank elevations are considered missing, not malformed.
+   *
+   * @param data	the trace
+   * @param allocator	for allocating the columns
+   * @param policy	how to handle malformed records
+   * @return		the profile
+   * @throws IOException	if a record is malformed and the policy is to fail, or allocating the columns fails
+   */
+  public static Profile generate(List<CSVRecord> data, Allocator allocator, ErrorPolicy policy) throws IOException {
+    return generate(data, allocator, policy, Cancellation.NONE);
+  }
+
+  /**
+   * Turns the GPS trace information into altitude profile information.
+   * Blank elevations are considered missing, not malformed. Distances and
+   * elapsed times get computed in the same pass.
+   *
+   * @param data		the trace
+   * @param allocator		for allocating the columns
+   * @param policy		how to handle malformed records
+   * @param cancellation	for stopping early
+   * @return			the profile
+   * @throws IOException	if a record is malformed and the policy is to fail, allocating the columns fails or the conversion got stopped
+   */
+  public static Profile generate(List<CSVRecord> data, Allocator allocator, ErrorPolicy policy, Cancellation cancellation) throws IOException {
+    StringColumn	tracks;
+    StringColumn	times;
+    DoubleColumn	lats;
+    DoubleColumn	lons;
+    DoubleColumn	dists;
+    DoubleColumn	elevs;
+    DoubleColumn	elapsed;
+    TIntArrayList	interpolate;
+    int			maxTrack;
+    int			maxTime;
+    int			n;
+    int			rejected;
+    long		row;
+    String		trackOld;
+    String		trackCur;
+    double		lat;
+    double		lon;
+    String		elevStr;
+    double		elev;
+    boolean		malformed;
+    Point 		pointOld;
+    Point 		pointCur;
+    double		distTotal;
+    double		timeStart;
+    double		timeCur;
+
+    maxTrack = 0;
+    maxTime  = 0;
+    for (CSVRecord rec: data) {
+      maxTrack = Math.max(maxTrack, Allocator.utf8Length(rec.get(Format.KEY_TRACK)));
+      maxTime  = Math.max(maxTime, Allocator.utf8Length(rec.get(Format.KEY_TIME)));
+    }
+
+    tracks      = allocator.strings(data.size(), maxTrack);
+    times       = allocator.strings(data.size(), maxTime);
+    lats        = allocator.doubles(data.size());
+    lons        = allocator.doubles(data.size());
+    dists       = allocator.doubles(data.size());
+    elevs       = allocator.doubles(data.size());
+    elapsed     = allocator.doubles(data.size());
+    interpolate = new TIntArrayList();
+    n           = 0;
+    rejected    = 0;
+    row         = 0;
+    trackCur    = null;
+    pointCur    = null;
+    distTotal   = 0.0;
+    timeStart   = Double.NaN;
+    for (CSVRecord rec: data) {
+      if ((row % Cancellation.INTERVAL) == 0)
+	cancellation.check();
+      row++;
+      lat     = NumberParser.parse(rec.get(Generate.KEY_LAT));
+      lon     = NumberParser.parse(rec.get(Generate.KEY_LON));
+      elevStr = rec.get(Format.KEY_ELEVATION);
+      elev    = NumberParser.parse(elevStr);
+      if (Double.isNaN(lat) || Double.isNaN(lon)) {
+	rejected++;
+	if (policy == ErrorPolicy.FAIL)
+	  throw new IOException("Malformed coordinates in record #" + row + ": " + rec.get(Generate.KEY_LAT) + ", " + rec.get(Generate.KEY_LON));
+	continue;
+      }
+      malformed = Double.isNaN(elev) && !NumberParser.isBlank(elevStr);
+      if (malformed) {
+	rejected++;
+	if (policy == ErrorPolicy.FAIL)
+	  throw new IOException("Malformed elevation in record #" + row + ": " + elevStr);
+	if (policy == ErrorPolicy.SKIP)
+	  continue;
+      }
+
+      trackOld = trackCur;
+      trackCur = rec.get(Format.KEY_TRACK);
+      pointOld = pointCur;
+      pointCur = Point.at(Coordinate.fromDegrees(lat), Coordinate.fromDegrees(lon));
+      if (!trackCur.equals(trackOld)) {
+	distTotal = 0.0;
+	timeStart = Double.NaN;
+      }
+      else
+	distTotal += EarthCalc.gcdDistance(pointOld, pointCur);
+      tracks.set(n, trackCur);
+      timeCur = TimeParser.parse(rec.get(Format.KEY_TIME));
+      if (Double.isNaN(timeStart))
+	timeStart = timeCur;
+      times.set(n, rec.get(Format.KEY_TIME));
+      lats.set(n, lat);
+      lons.set(n, lon);
+      dists.set(n, distTotal);
+      elevs.set(n, elev);
+      elapsed.set(n, timeCur - timeStart);
+      if (malformed)
+	interpolate.add(n);
+      n++;
+    }
+
+    if (!interpolate.isEmpty())
+      Profile.interpolateElevations(tracks, dists, elevs, n, interpolate.toArray());
+
+    return new Profile(tracks, times, lats, lons, dists, elevs, elapsed, n, rejected);
+  }
+}
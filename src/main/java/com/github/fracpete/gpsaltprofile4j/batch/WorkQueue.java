@@ -0,0 +1,446 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WorkQueue.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Work queue in a shared directory, without coordinator. Workers claim
+ * files by atomically renaming them from <code>todo</code> into
+ * <code>claimed</code>, prefixing the name with the worker ID, so only
+ * one worker succeeds per file. While
+ * processing, the claim gets renewed by touching the claimed file; claims
+ * that have not been renewed within the lease timeout (eg due to a
+ * crashed worker) get moved back into <code>todo</code> by any worker,
+ * under a new name if the original name has been taken in the meantime.
+ * Finished files end up in <code>done</code>, failed ones in
+ * <code>failed</code> along with an error file; like when moving back
+ * into <code>todo</code>, existing files never get replaced. Files starting with a dot
+ * are ignored, allowing producers to upload under a temporary name first.
+ * <br>
+ * Requires a file system with atomic renames within a directory tree
+ * (eg local disks or NFS) and reasonably synchronized clocks across the
+ * hosts, with the lease timeout well above any clock skew.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class WorkQueue {
+
+  /** the directory with the files to process. */
+  public static final String TODO = "todo";
+
+  /** the directory with the files being processed. */
+  public static final String CLAIMED = "claimed";
+
+  /** the directory with the processed files. */
+  public static final String DONE = "done";
+
+  /** the directory with the files that failed to process. */
+  public static final String FAILED = "failed";
+
+  /** the directory with the worker statistics. */
+  public static final String WORKERS = "workers";
+
+  /** the extension for error files. */
+  public static final String ERROR_EXT = ".error";
+
+  /** the maximum number of files to consider per claim. */
+  public static final int CLAIM_CANDIDATES = 64;
+
+  /** the separator between worker ID and file name of claimed files. */
+  public static final char SEPARATOR = '~';
+
+  /** the queue directory. */
+  protected final File m_Dir;
+
+  /** the ID of the worker. */
+  protected final String m_Worker;
+
+  /** the lease timeout in msec. */
+  protected final long m_LeaseTimeout;
+
+  /**
+   * Initializes the queue.
+   *
+   * @param dir			the queue directory
+   * @param worker		the ID of the worker, unique among the workers
+   * @param leaseTimeout	the time in msec after which claims that have not been renewed get re-claimed
+   */
+  public WorkQueue(File dir, String worker, long leaseTimeout) {
+    if (leaseTimeout <= 0)
+      throw new IllegalArgumentException("Lease timeout must be greater than 0, provided: " + leaseTimeout);
+    if (worker.isEmpty() || (worker.indexOf(SEPARATOR) > -1) || worker.startsWith("."))
+      throw new IllegalArgumentException("Worker ID must be non-empty, not start with '.' and not contain '" + SEPARATOR + "': " + worker);
+    m_Dir          = dir;
+    m_Worker       = worker;
+    m_LeaseTimeout = leaseTimeout;
+  }
+
+  /**
+   * Turns the text into a valid worker ID, replacing unsupported characters.
+   *
+   * @param id		the text to turn into an ID, eg host and process ID
+   * @return		the worker ID
+   */
+  public static String toWorker(String id) {
+    return id.replaceAll("[^A-Za-z0-9._@-]", "_").replaceAll("^\\.", "_");
+  }
+
+  /**
+   * Returns the queue directory.
+   *
+   * @return		the directory
+   */
+  public File getDir() {
+    return m_Dir;
+  }
+
+  /**
+   * Returns the ID of the worker.
+   *
+   * @return		the ID
+   */
+  public String getWorker() {
+    return m_Worker;
+  }
+
+  /**
+   * Returns the lease timeout.
+   *
+   * @return		the timeout in msec
+   */
+  public long getLeaseTimeout() {
+    return m_LeaseTimeout;
+  }
+
+  /**
+   * Returns the sub-directory of the queue.
+   *
+   * @param name	the name of the sub-directory, eg {@link #TODO}
+   * @return		the directory
+   */
+  public File dir(String name) {
+    return new File(m_Dir, name);
+  }
+
+  /**
+   * Creates the sub-directories, if necessary. Safe to call concurrently.
+   *
+   * @throws IOException	if creating fails
+   */
+  public void initialize() throws IOException {
+    for (String name: new String[]{TODO, CLAIMED, DONE, FAILED, WORKERS})
+      Files.createDirectories(dir(name).toPath());
+  }
+
+  /**
+   * Lists the files in the sub-directory, ignoring files starting with a
+   * dot.
+   *
+   * @param name	the name of the sub-directory
+   * @param max		the maximum number of files to return, -1 for all
+   * @return		the files
+   * @throws IOException	if listing fails
+   */
+  protected List<Path> list(String name, int max) throws IOException {
+    List<Path>	result;
+
+    result = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir(name).toPath())) {
+      for (Path path: stream) {
+	if (path.getFileName().toString().startsWith("."))
+	  continue;
+	result.add(path);
+	if (result.size() == max)
+	  break;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the original name of the claimed file.
+   *
+   * @param claimed	the claimed file
+   * @return		the name without the worker ID
+   */
+  public static String originalName(File claimed) {
+    return claimed.getName().substring(claimed.getName().indexOf(SEPARATOR) + 1);
+  }
+
+  /**
+   * Moves the file atomically into the sub-directory.
+   *
+   * @param file	the file to move
+   * @param name	the name of the sub-directory
+   * @param target	the new file name
+   * @return		the moved file, null if the file no longer exists (eg claimed by another worker)
+   * @throws IOException	if moving fails
+   */
+  protected File move(Path file, String name, String target) throws IOException {
+    Path	path;
+
+    path = dir(name).toPath().resolve(target);
+    try {
+      Files.move(file, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+
+    return path.toFile();
+  }
+
+  /**
+   * Starts the lease on the file that is about to be moved into the
+   * claimed directory. As renaming keeps the time stamp, the file has to
+   * be touched beforehand, otherwise other workers could see a stale claim.
+   *
+   * @param file	the file to touch
+   * @return		false if the file no longer exists
+   * @throws IOException	if touching fails
+   */
+  protected boolean lease(Path file) throws IOException {
+    try {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    }
+    catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Claims the next file to process. To reduce contention between workers,
+   * the file gets picked randomly among the first candidates.
+   *
+   * @return		the claimed file, null if none left
+   * @throws IOException	if listing or claiming fails
+   */
+  public File claim() throws IOException {
+    List<Path>	candidates;
+    File	result;
+
+    candidates = list(TODO, CLAIM_CANDIDATES);
+    Collections.shuffle(candidates);
+    for (Path candidate: candidates) {
+      if (!lease(candidate))
+	continue;
+      result = move(candidate, CLAIMED, m_Worker + SEPARATOR + candidate.getFileName());
+      if (result != null)
+	return result;
+    }
+
+    return null;
+  }
+
+  /**
+   * Renews the claim on the file.
+   *
+   * @param claimed	the claimed file
+   * @return		false if the claim got lost, ie re-claimed by another worker
+   */
+  public boolean renew(File claimed) {
+    try {
+      Files.setLastModifiedTime(claimed.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Marks the claimed file as processed. If a file of that name has
+   * already been processed, a numbered name gets used instead.
+   *
+   * @param claimed	the claimed file
+   * @return		false if the claim got lost in the meantime
+   * @throws IOException	if moving fails
+   */
+  public boolean complete(File claimed) throws IOException {
+    return (place(claimed.toPath(), DONE, originalName(claimed)) != null);
+  }
+
+  /**
+   * Marks the claimed file as failed, storing the error message alongside.
+   * If a file of that name has already failed, a numbered name gets used
+   * instead.
+   *
+   * @param claimed	the claimed file
+   * @param error	the error message
+   * @return		false if the claim got lost in the meantime
+   * @throws IOException	if moving or writing the error fails
+   */
+  public boolean fail(File claimed, String error) throws IOException {
+    File	failed;
+
+    failed = place(claimed.toPath(), FAILED, originalName(claimed));
+    if (failed == null)
+      return false;
+    Files.write(new File(dir(FAILED), failed.getName() + ERROR_EXT).toPath(), error.getBytes(StandardCharsets.UTF_8));
+    return true;
+  }
+
+  /**
+   * Returns the name with the number inserted before the extension.
+   *
+   * @param name	the file name
+   * @param n		the number, 0 for the name itself
+   * @return		the numbered name
+   */
+  public static String numbered(String name, int n) {
+    if (n == 0)
+      return name;
+    if (name.lastIndexOf('.') > 0)
+      return name.substring(0, name.lastIndexOf('.')) + "-" + n + name.substring(name.lastIndexOf('.'));
+    else
+      return name + "-" + n;
+  }
+
+  /**
+   * Moves the file into the sub-directory, without replacing any existing
+   * file. If the name is taken, the first free numbered name gets used
+   * instead (see {@link #numbered(String, int)}).
+   *
+   * @param file	the file to move, claimed by this worker
+   * @param name	the name of the sub-directory
+   * @param target	the name to use
+   * @return		the moved file, null if the file no longer exists (eg re-claimed by another worker)
+   * @throws IOException	if moving fails
+   */
+  protected File place(Path file, String name, String target) throws IOException {
+    Path	path;
+    int		n;
+
+    n = 0;
+    while (true) {
+      path = dir(name).toPath().resolve(numbered(target, n));
+      try {
+	// unlike renaming, linking never replaces the target
+	Files.createLink(path, file);
+      }
+      catch (FileAlreadyExistsException e) {
+	n++;
+	continue;
+      }
+      catch (NoSuchFileException e) {
+	return null;
+      }
+      catch (UnsupportedOperationException e) {
+	try {
+	  Files.move(file, path);
+	  return path.toFile();
+	}
+	catch (FileAlreadyExistsException ex) {
+	  n++;
+	  continue;
+	}
+	catch (NoSuchFileException ex) {
+	  return null;
+	}
+      }
+      try {
+	Files.delete(file);
+      }
+      catch (NoSuchFileException e) {
+	// re-claimed in the meantime, gets processed again at worst
+      }
+      return path.toFile();
+    }
+  }
+
+  /**
+   * Moves the file into the todo directory, without replacing any existing
+   * file (see {@link #place(Path, String, String)}).
+   *
+   * @param file	the file to move, claimed by this worker
+   * @param name	the name to use
+   * @return		the moved file, null if the file no longer exists
+   * @throws IOException	if moving fails
+   */
+  protected File release(Path file, String name) throws IOException {
+    return place(file, TODO, name);
+  }
+
+  /**
+   * Moves claims that have not been renewed within the lease timeout back
+   * into the todo directory. The stale claim gets taken over by this worker
+   * first, so that a crash in between does not lose the file (at worst, it
+   * gets processed twice).
+   *
+   * @return		the re-claimed files
+   * @throws IOException	if listing or moving fails
+   */
+  public List<File> reclaim() throws IOException {
+    List<File>	result;
+    File	file;
+    String	name;
+    long	stale;
+
+    result = new ArrayList<>();
+    stale  = System.currentTimeMillis() - m_LeaseTimeout;
+    for (Path claimed: list(CLAIMED, -1)) {
+      try {
+	if (Files.getLastModifiedTime(claimed).toMillis() >= stale)
+	  continue;
+      }
+      catch (NoSuchFileException e) {
+	continue;
+      }
+      name = originalName(claimed.toFile());
+      if (!lease(claimed))
+	continue;
+      file = move(claimed, CLAIMED, m_Worker + SEPARATOR + name);
+      if (file == null)
+	continue;
+      file = release(file.toPath(), name);
+      if (file != null)
+	result.add(file);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether all files have been processed, ie no files are left
+   * to claim and none are being processed.
+   *
+   * @return		true if drained
+   * @throws IOException	if listing fails
+   */
+  public boolean isDrained() throws IOException {
+    return list(TODO, 1).isEmpty() && list(CLAIMED, 1).isEmpty();
+  }
+}
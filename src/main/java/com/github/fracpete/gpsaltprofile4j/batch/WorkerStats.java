@@ -0,0 +1,349 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WorkerStats.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Throughput statistics of a batch worker, stored as properties file in
+ * the queue's workers directory so that any worker can report the
+ * aggregate. Not thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class WorkerStats {
+
+  /** the extension for statistics files. */
+  public static final String EXT = ".stats";
+
+  public static final String KEY_WORKER = "worker";
+
+  public static final String KEY_START = "start";
+
+  public static final String KEY_UPDATED = "updated";
+
+  public static final String KEY_FILES = "files";
+
+  public static final String KEY_FAILED = "failed";
+
+  public static final String KEY_BYTES = "bytes";
+
+  public static final String KEY_POINTS = "points";
+
+  public static final String KEY_BUSY = "busy";
+
+  /** the worker ID. */
+  protected String m_Worker;
+
+  /** the start time (msec since epoch). */
+  protected long m_Start;
+
+  /** the time of the last update (msec since epoch). */
+  protected long m_Updated;
+
+  /** the number of processed files. */
+  protected long m_Files;
+
+  /** the number of failed files. */
+  protected long m_Failed;
+
+  /** the number of bytes read. */
+  protected long m_Bytes;
+
+  /** the number of points generated. */
+  protected long m_Points;
+
+  /** the time spent processing files in msec. */
+  protected long m_Busy;
+
+  /**
+   * Initializes the statistics, starting now.
+   *
+   * @param worker	the worker ID
+   */
+  public WorkerStats(String worker) {
+    m_Worker  = worker;
+    m_Start   = System.currentTimeMillis();
+    m_Updated = m_Start;
+  }
+
+  /**
+   * Records a processed file.
+   *
+   * @param bytes	the size of the file
+   * @param points	the number of points in the profile
+   * @param msec	the time it took
+   */
+  public void processed(long bytes, long points, long msec) {
+    m_Files++;
+    m_Bytes  += bytes;
+    m_Points += points;
+    m_Busy   += msec;
+    m_Updated = System.currentTimeMillis();
+  }
+
+  /**
+   * Records a failed file.
+   *
+   * @param msec	the time it took
+   */
+  public void failed(long msec) {
+    m_Failed++;
+    m_Busy   += msec;
+    m_Updated = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the worker ID.
+   *
+   * @return		the ID
+   */
+  public String getWorker() {
+    return m_Worker;
+  }
+
+  /**
+   * Returns the start time.
+   *
+   * @return		the time (msec since epoch)
+   */
+  public long getStart() {
+    return m_Start;
+  }
+
+  /**
+   * Returns the time of the last update.
+   *
+   * @return		the time (msec since epoch)
+   */
+  public long getUpdated() {
+    return m_Updated;
+  }
+
+  /**
+   * Returns the number of processed files.
+   *
+   * @return		the number of files
+   */
+  public long getFiles() {
+    return m_Files;
+  }
+
+  /**
+   * Returns the number of failed files.
+   *
+   * @return		the number of files
+   */
+  public long getFailed() {
+    return m_Failed;
+  }
+
+  /**
+   * Returns the number of bytes read.
+   *
+   * @return		the bytes
+   */
+  public long getBytes() {
+    return m_Bytes;
+  }
+
+  /**
+   * Returns the number of points generated.
+   *
+   * @return		the points
+   */
+  public long getPoints() {
+    return m_Points;
+  }
+
+  /**
+   * Returns the time spent processing files.
+   *
+   * @return		the time in msec
+   */
+  public long getBusy() {
+    return m_Busy;
+  }
+
+  /**
+   * Saves the statistics, replacing the file atomically.
+   *
+   * @param file	the file to save to
+   * @throws IOException	if saving fails
+   */
+  public void save(File file) throws IOException {
+    Properties	props;
+    File	tmp;
+
+    props = new Properties();
+    props.setProperty(KEY_WORKER, m_Worker);
+    props.setProperty(KEY_START, "" + m_Start);
+    props.setProperty(KEY_UPDATED, "" + m_Updated);
+    props.setProperty(KEY_FILES, "" + m_Files);
+    props.setProperty(KEY_FAILED, "" + m_Failed);
+    props.setProperty(KEY_BYTES, "" + m_Bytes);
+    props.setProperty(KEY_POINTS, "" + m_Points);
+    props.setProperty(KEY_BUSY, "" + m_Busy);
+    tmp = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+    try (OutputStream out = new FileOutputStream(tmp)) {
+      props.store(out, null);
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Loads the statistics.
+   *
+   * @param file	the file to load from
+   * @return		the statistics
+   * @throws IOException	if loading fails
+   */
+  public static WorkerStats load(File file) throws IOException {
+    WorkerStats	result;
+    Properties	props;
+
+    props = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      props.load(in);
+    }
+    try {
+      result           = new WorkerStats(props.getProperty(KEY_WORKER, file.getName()));
+      result.m_Start   = Long.parseLong(props.getProperty(KEY_START));
+      result.m_Updated = Long.parseLong(props.getProperty(KEY_UPDATED));
+      result.m_Files   = Long.parseLong(props.getProperty(KEY_FILES));
+      result.m_Failed  = Long.parseLong(props.getProperty(KEY_FAILED));
+      result.m_Bytes   = Long.parseLong(props.getProperty(KEY_BYTES));
+      result.m_Points  = Long.parseLong(props.getProperty(KEY_POINTS));
+      result.m_Busy    = Long.parseLong(props.getProperty(KEY_BUSY));
+    }
+    catch (Exception e) {
+      throw new IOException("Malformed statistics: " + file, e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Loads the statistics of all workers in the directory, skipping
+   * unreadable ones.
+   *
+   * @param dir		the directory with the statistics files
+   * @return		the statistics
+   */
+  public static List<WorkerStats> loadAll(File dir) {
+    List<WorkerStats>	result;
+    File[]		files;
+
+    result = new ArrayList<>();
+    files  = dir.listFiles((d, name) -> !name.startsWith(".") && name.endsWith(EXT));
+    if (files == null)
+      return result;
+    for (File file: files) {
+      try {
+	result.add(load(file));
+      }
+      catch (IOException e) {
+	// being replaced or corrupt
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the rate per second.
+   *
+   * @param count	the count
+   * @param msec	the time in msec
+   * @return		the rate
+   */
+  protected static double rate(double count, long msec) {
+    return (msec <= 0) ? 0.0 : count * 1000.0 / msec;
+  }
+
+  /**
+   * Formats a line of the report.
+   *
+   * @param label	the label of the line
+   * @param files	the number of processed files
+   * @param failed	the number of failed files
+   * @param bytes	the number of bytes
+   * @param points	the number of points
+   * @param msec	the elapsed time
+   * @return		the line
+   */
+  protected static String line(String label, long files, long failed, long bytes, long points, long msec) {
+    return String.format("%-30s %8d %8d %10.1f %12d %10.1f %8.2f %8.2f %12.1f",
+      label, files, failed, bytes / 1048576.0, points, msec / 1000.0,
+      rate(files, msec), rate(bytes / 1048576.0, msec), rate(points, msec));
+  }
+
+  /**
+   * Generates the throughput report, per worker and in total. The total
+   * throughput is based on the wall-clock time from the earliest start to
+   * the latest update across the workers.
+   *
+   * @param stats	the statistics of the workers
+   * @return		the report
+   */
+  public static String report(List<WorkerStats> stats) {
+    StringBuilder	result;
+    long		files;
+    long		failed;
+    long		bytes;
+    long		points;
+    long		start;
+    long		updated;
+
+    result  = new StringBuilder();
+    result.append(String.format("%-30s %8s %8s %10s %12s %10s %8s %8s %12s\n",
+      "Worker", "Files", "Failed", "MB", "Points", "Elapsed(s)", "Files/s", "MB/s", "Points/s"));
+    files   = 0;
+    failed  = 0;
+    bytes   = 0;
+    points  = 0;
+    start   = Long.MAX_VALUE;
+    updated = Long.MIN_VALUE;
+    for (WorkerStats s: stats) {
+      result.append(line(s.getWorker(), s.getFiles(), s.getFailed(), s.getBytes(), s.getPoints(), s.getUpdated() - s.getStart())).append("\n");
+      files   += s.getFiles();
+      failed  += s.getFailed();
+      bytes   += s.getBytes();
+      points  += s.getPoints();
+      start    = Math.min(start, s.getStart());
+      updated  = Math.max(updated, s.getUpdated());
+    }
+    if (!stats.isEmpty())
+      result.append(line("Total (" + stats.size() + " workers)", files, failed, bytes, points, updated - start)).append("\n");
+
+    return result.toString();
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ElevationCorrection.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.dem;
+
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.io.PointHandler;
+import com.github.fracpete.gpsaltprofile4j.storage.Allocator;
+import com.github.fracpete.gpsaltprofile4j.storage.DoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+
+import java.io.IOException;
+
+/**
+ * Corrects the elevation of a profile using DEM tiles, interpolating
+ * bilinearly. Immutable and thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ElevationCorrection {
+
+  /**
+   * How to combine the recorded and the DEM elevation.
+   */
+  public enum Mode {
+    /** uses the DEM elevation, if available. */
+    REPLACE,
+    /** blends recorded and DEM elevation using the weight. */
+    BLEND,
+    /** uses the DEM elevation only for missing elevations (malformed ones already interpolated while reading count as recorded). */
+    FILL,
+  }
+
+  /** the default weight for the DEM elevation when blending. */
+  public static final double DEFAULT_WEIGHT = 0.5;
+
+  /** the tiles. */
+  protected final TileCache m_Tiles;
+
+  /** the mode. */
+  protected final Mode m_Mode;
+
+  /** the weight of the DEM elevation (0-1). */
+  protected final double m_Weight;
+
+  /**
+   * Initializes the correction.
+   *
+   * @param tiles	the tiles to use
+   * @param mode	how to combine the elevations
+   * @param weight	the weight of the DEM elevation when blending (0-1)
+   */
+  public ElevationCorrection(TileCache tiles, Mode mode, double weight) {
+    if ((weight < 0) || (weight > 1))
+      throw new IllegalArgumentException("Weight must be in [0,1], provided: " + weight);
+    m_Tiles  = tiles;
+    m_Mode   = mode;
+    m_Weight = weight;
+  }
+
+  /**
+   * Returns the tiles.
+   *
+   * @return		the tiles
+   */
+  public TileCache getTiles() {
+    return m_Tiles;
+  }
+
+  /**
+   * Returns the mode.
+   *
+   * @return		the mode
+   */
+  public Mode getMode() {
+    return m_Mode;
+  }
+
+  /**
+   * Returns the weight of the DEM elevation when blending.
+   *
+   * @return		the weight
+   */
+  public double getWeight() {
+    return m_Weight;
+  }
+
+  /**
+   * Combines recorded and DEM elevation.
+   *
+   * @param recorded	the recorded elevation, NaN if missing
+   * @param dem		the DEM elevation, NaN if not available
+   * @return		the combined elevation
+   */
+  protected double combine(double recorded, double dem) {
+    if (Double.isNaN(dem))
+      return recorded;
+    if (Double.isNaN(recorded))
+      return dem;
+    switch (m_Mode) {
+      case REPLACE:
+	return dem;
+      case BLEND:
+	return m_Weight * dem + (1 - m_Weight) * recorded;
+      case FILL:
+	return recorded;
+      default:
+	throw new IllegalStateException("Unhandled mode: " + m_Mode);
+    }
+  }
+
+  /**
+   * Returns the tile for the location. Consecutive points usually fall
+   * into the same tile, so the cache only gets consulted when the tile
+   * changes.
+   *
+   * @param current	the tile of the previous point, can be null
+   * @param lat		the latitude
+   * @param lon		the longitude
+   * @return		the tile
+   * @throws IOException	if loading of the tile fails
+   */
+  protected HGTTile tile(HGTTile current, double lat, double lon) throws IOException {
+    if ((current == null) || (current.getLatitude() != (int) Math.floor(lat)) || (current.getLongitude() != (int) Math.floor(lon)))
+      return m_Tiles.get(lat, lon);
+    return current;
+  }
+
+  /**
+   * Corrects the elevations of the profile, keeping the corrected
+   * elevations on the heap.
+   *
+   * @param profile	the profile to correct
+   * @return		the corrected profile
+   * @throws IOException	if loading of a tile fails
+   */
+  public Profile correct(Profile profile) throws IOException {
+    return correct(profile, Storage.DEFAULT.newAllocator());
+  }
+
+  /**
+   * Corrects the elevations of the profile.
+   *
+   * @param profile	the profile to correct
+   * @param allocator	for allocating the corrected elevations
+   * @return		the corrected profile
+   * @throws IOException	if loading of a tile or allocating the column fails
+   */
+  public Profile correct(Profile profile, Allocator allocator) throws IOException {
+    return correct(profile, allocator, Cancellation.NONE);
+  }
+
+  /**
+   * Corrects the elevations of the profile.
+   *
+   * @param profile		the profile to correct
+   * @param allocator		for allocating the corrected elevations
+   * @param cancellation	for stopping early
+   * @return			the corrected profile
+   * @throws IOException	if loading of a tile or allocating the column fails, or the correction got stopped
+   */
+  public Profile correct(Profile profile, Allocator allocator, Cancellation cancellation) throws IOException {
+    DoubleColumn	elevs;
+    HGTTile		tile;
+    double		lat;
+    double		lon;
+    int			i;
+
+    elevs = allocator.doubles(profile.size());
+    tile  = null;
+    for (i = 0; i < profile.size(); i++) {
+      if ((i % Cancellation.INTERVAL) == 0)
+	cancellation.check();
+      lat = profile.getLatitude(i);
+      lon = profile.getLongitude(i);
+      tile = tile(tile, lat, lon);
+      elevs.set(i, combine(profile.getElevation(i), tile.elevation(lat, lon)));
+    }
+
+    return profile.withElevations(elevs);
+  }
+
+  /**
+   * Wraps the handler, correcting the elevations of the points before
+   * passing them on. The returned handler is not thread-safe.
+   *
+   * @param handler	the handler to wrap
+   * @return		the correcting handler
+   */
+  public PointHandler correcting(final PointHandler handler) {
+    return new PointHandler() {
+      HGTTile current = null;
+      @Override
+      public void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation) throws IOException {
+	current = tile(current, lat, lon);
+	handler.point(track, time, elapsed, lat, lon, distance, combine(elevation, current.elevation(lat, lon)));
+      }
+    };
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * HGTTile.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.dem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped SRTM tile in HGT format, covering one degree of latitude
+ * and longitude. Samples are big-endian 16bit integers, stored row by row
+ * from north to south. Supports 1 (3601x3601) and 3 arc-second
+ * (1201x1201) tiles. Reading is thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class HGTTile {
+
+  /** the value indicating missing data. */
+  public static final short VOID = -32768;
+
+  /** the latitude of the south-western corner. */
+  protected final int m_Lat;
+
+  /** the longitude of the south-western corner. */
+  protected final int m_Lon;
+
+  /** the number of samples per row/column. */
+  protected final int m_Samples;
+
+  /** the mapped data, null if tile is not available. */
+  protected final MappedByteBuffer m_Data;
+
+  /**
+   * Initializes the tile.
+   *
+   * @param lat		the latitude of the south-western corner
+   * @param lon		the longitude of the south-western corner
+   * @param samples	the number of samples per row/column
+   * @param data	the mapped data, null if not available
+   */
+  protected HGTTile(int lat, int lon, int samples, MappedByteBuffer data) {
+    m_Lat     = lat;
+    m_Lon     = lon;
+    m_Samples = samples;
+    m_Data    = data;
+  }
+
+  /**
+   * Returns the latitude of the south-western corner.
+   *
+   * @return		the latitude
+   */
+  public int getLatitude() {
+    return m_Lat;
+  }
+
+  /**
+   * Returns the longitude of the south-western corner.
+   *
+   * @return		the longitude
+   */
+  public int getLongitude() {
+    return m_Lon;
+  }
+
+  /**
+   * Returns whether data is available for this tile.
+   *
+   * @return		true if available
+   */
+  public boolean isAvailable() {
+    return (m_Data != null);
+  }
+
+  /**
+   * Returns the raw sample.
+   *
+   * @param row		the row (0 is northern edge)
+   * @param col		the column (0 is western edge)
+   * @return		the sample
+   */
+  protected short sample(int row, int col) {
+    return m_Data.getShort((row * m_Samples + col) << 1);
+  }
+
+  /**
+   * Returns the bilinearly interpolated elevation for the location.
+   *
+   * @param lat		the latitude, must fall within the tile
+   * @param lon		the longitude, must fall within the tile
+   * @return		the elevation in meters, NaN if not available
+   */
+  public double elevation(double lat, double lon) {
+    double	x;
+    double	y;
+    int		row;
+    int		col;
+    double	dx;
+    double	dy;
+    short	nw;
+    short	ne;
+    short	sw;
+    short	se;
+
+    if (m_Data == null)
+      return Double.NaN;
+
+    y   = (m_Lat + 1 - lat) * (m_Samples - 1);
+    x   = (lon - m_Lon) * (m_Samples - 1);
+    row = Math.max(0, Math.min(m_Samples - 2, (int) y));
+    col = Math.max(0, Math.min(m_Samples - 2, (int) x));
+    dy  = y - row;
+    dx  = x - col;
+
+    nw = sample(row, col);
+    ne = sample(row, col + 1);
+    sw = sample(row + 1, col);
+    se = sample(row + 1, col + 1);
+    if ((nw == VOID) || (ne == VOID) || (sw == VOID) || (se == VOID))
+      return Double.NaN;
+
+    return (nw * (1 - dx) + ne * dx) * (1 - dy)
+      + (sw * (1 - dx) + se * dx) * dy;
+  }
+
+  /**
+   * Generates the file name of the tile, e.g., "N47W123.hgt".
+   *
+   * @param lat		the latitude of the south-western corner
+   * @param lon		the longitude of the south-western corner
+   * @return		the file name
+   */
+  public static String filename(int lat, int lon) {
+    return String.format("%s%02d%s%03d.hgt",
+      (lat < 0) ? "S" : "N", Math.abs(lat),
+      (lon < 0) ? "W" : "E", Math.abs(lon));
+  }
+
+  /**
+   * Maps the tile from the directory. Returns an unavailable tile if
+   * there is no file for this tile.
+   *
+   * @param dir		the directory with the HGT files
+   * @param lat		the latitude of the south-western corner
+   * @param lon		the longitude of the south-western corner
+   * @return		the tile
+   * @throws IOException	if mapping fails or the file size is invalid
+   */
+  public static HGTTile load(File dir, int lat, int lon) throws IOException {
+    File		file;
+    FileChannel		channel;
+    MappedByteBuffer	data;
+    long		size;
+    int			samples;
+
+    file = new File(dir, filename(lat, lon));
+    if (!file.isFile())
+      return new HGTTile(lat, lon, 0, null);
+
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      size    = channel.size();
+      samples = (int) Math.round(Math.sqrt(size / 2.0));
+      if ((samples < 2) || ((long) samples * samples * 2 != size))
+	throw new IOException("Invalid HGT file size (" + size + "): " + file);
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      data.order(ByteOrder.BIG_ENDIAN);
+    }
+    finally {
+      channel.close();
+    }
+
+    return new HGTTile(lat, lon, samples, data);
+  }
+}
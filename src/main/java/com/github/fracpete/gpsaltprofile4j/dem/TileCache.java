@@ -0,0 +1,131 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TileCache.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.dem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of memory-mapped HGT tiles from a directory.
+ * Thread-safe. Missing tiles are cached as well, to avoid repeated
+ * file system lookups.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class TileCache {
+
+  /** the default number of tiles to keep. */
+  public static final int DEFAULT_SIZE = 16;
+
+  /** the directory with the HGT files. */
+  protected final File m_Directory;
+
+  /** the maximum number of tiles to keep. */
+  protected final int m_Size;
+
+  /** the cached tiles. */
+  protected final Map<Integer,HGTTile> m_Tiles;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param dir		the directory with the HGT files
+   * @param size	the maximum number of tiles to keep mapped
+   */
+  public TileCache(File dir, int size) {
+    if (size < 1)
+      throw new IllegalArgumentException("Cache size must be at least 1, provided: " + size);
+    m_Directory = dir;
+    m_Size      = size;
+    m_Tiles     = new LinkedHashMap<Integer,HGTTile>(size * 2, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer,HGTTile> eldest) {
+	return size() > m_Size;
+      }
+    };
+  }
+
+  /**
+   * Returns the directory with the HGT files.
+   *
+   * @return		the directory
+   */
+  public File getDirectory() {
+    return m_Directory;
+  }
+
+  /**
+   * Returns the maximum number of tiles to keep.
+   *
+   * @return		the size
+   */
+  public int getSize() {
+    return m_Size;
+  }
+
+  /**
+   * Generates the key for the tile.
+   *
+   * @param lat		the latitude of the south-western corner
+   * @param lon		the longitude of the south-western corner
+   * @return		the key
+   */
+  public static int key(int lat, int lon) {
+    return (lat + 90) * 360 + (lon + 180);
+  }
+
+  /**
+   * Returns the tile containing the location, loading it if necessary.
+   *
+   * @param lat		the latitude
+   * @param lon		the longitude
+   * @return		the tile
+   * @throws IOException	if loading of the tile fails
+   */
+  public HGTTile get(double lat, double lon) throws IOException {
+    return get((int) Math.floor(lat), (int) Math.floor(lon));
+  }
+
+  /**
+   * Returns the tile, loading it if necessary.
+   *
+   * @param lat		the latitude of the south-western corner
+   * @param lon		the longitude of the south-western corner
+   * @return		the tile
+   * @throws IOException	if loading of the tile fails
+   */
+  public synchronized HGTTile get(int lat, int lon) throws IOException {
+    HGTTile	result;
+    Integer	key;
+
+    key    = key(lat, lon);
+    result = m_Tiles.get(key);
+    if (result == null) {
+      result = HGTTile.load(m_Directory, lat, lon);
+      m_Tiles.put(key, result);
+    }
+
+    return result;
+  }
+}
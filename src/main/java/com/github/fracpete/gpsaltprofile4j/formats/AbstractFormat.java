@@ -15,14 +15,18 @@
 
 /*
  * AbstractFormat.java
- * Copyright (C) 2018 FracPete
+ * Copyright (C) 2018-2026 FracPete
  */
 package com.github.fracpete.gpsaltprofile4j.formats;
 
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
 import com.github.fracpete.gpsformats4j.core.BaseObject;
 import org.apache.commons.csv.CSVRecord;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.List;
 
 /**
@@ -42,4 +46,81 @@ public abstract class AbstractFormat
    * @return		null if successful, otherwise error message
    */
   public abstract String write(List<CSVRecord> data, File output);
+
+  /**
+   * Writes the profile to a file.
+   *
+   * @param profile	the profile to write
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  public String write(Profile profile, File output) {
+    return write(profile, output, Cancellation.NONE);
+  }
+
+  /**
+   * Writes the profile to a file. Default implementation turns the
+   * profile into records, checking for cancellation only beforehand.
+   *
+   * @param profile		the profile to write
+   * @param output		the output file
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  public String write(Profile profile, File output, Cancellation cancellation) {
+    try {
+      cancellation.check();
+    }
+    catch (Exception e) {
+      return "Failed to write: " + output + "\n" + e;
+    }
+    return write(profile.toRecords(), output);
+  }
+
+  /**
+   * Writes the profile to the stream. The stream is not closed.
+   *
+   * @param profile	the profile to write
+   * @param output	the stream to write to
+   * @return		null if successful, otherwise error message
+   */
+  public String write(Profile profile, OutputStream output) {
+    return write(profile, output, Cancellation.NONE);
+  }
+
+  /**
+   * Writes the profile to the stream. Default implementation writes to a
+   * temporary file first and then copies it to the stream. The stream is
+   * not closed.
+   *
+   * @param profile		the profile to write
+   * @param output		the stream to write to
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  public String write(Profile profile, OutputStream output, Cancellation cancellation) {
+    String	result;
+    File	tmp;
+
+    tmp = null;
+    try {
+      tmp    = File.createTempFile("gpsaltprofile4j-", ".tmp");
+      result = write(profile, tmp, cancellation);
+      if (result == null) {
+	cancellation.check();
+	Files.copy(tmp.toPath(), output);
+	output.flush();
+      }
+    }
+    catch (Exception e) {
+      m_Logger.error("Failed to write to stream", e);
+      result = "Failed to write to stream\n" + e;
+    }
+    finally {
+      if ((tmp != null) && !tmp.delete())
+	tmp.deleteOnExit();
+    }
+
+    return result;
+  }
 }
@@ -20,6 +20,14 @@
 
 package com.github.fracpete.gpsaltprofile4j.formats;
 
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.io.PointHandler;
+import com.github.fracpete.gpsformats4j.core.OptionUtils;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.helper.HelpScreenException;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
@@ -28,6 +36,9 @@ import org.apache.commons.io.IOUtils;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,14 +52,236 @@ import java.util.Map;
  *   <li>distance</li>
  *   <li>elevation</li>
  * </ol>
+ * Profiles can be written with additional columns (elapsed time, speed,
+ * grade), see {@link Metric}.
  *
  * @author FracPete (fracpete at gmail dot com)
  */
 public class CSV
-  extends AbstractFormat {
+  extends AbstractFormat
+  implements FormatWithOptionHandling {
 
   /**
-   * Writes to a file.
+   * Writes points as rows, as they arrive. The header gets written with
+   * the first point. Speed and grade get derived from the previous point of
+   * the same track, like {@link Profile#getSpeed(int)} and
+   * {@link Profile#getGrade(int)}.
+   */
+  public static class PointWriter
+    implements PointHandler {
+
+    /** the printer to use. */
+    protected final CSVPrinter m_Printer;
+
+    /** the additional columns. */
+    protected final Metric[] m_Columns;
+
+    /** the row to fill, reused. */
+    protected final String[] m_Row;
+
+    /** whether the header has been written. */
+    protected boolean m_Header;
+
+    /** the track of the previous point, null if none yet. */
+    protected String m_LastTrack;
+
+    /** the distance of the previous point. */
+    protected double m_LastDistance;
+
+    /** the elevation of the previous point. */
+    protected double m_LastElevation;
+
+    /** the elapsed time of the previous point. */
+    protected double m_LastElapsed;
+
+    /**
+     * Initializes the writer without additional columns.
+     *
+     * @param writer	the writer to print to
+     * @throws IOException	if initializing the printer fails
+     */
+    public PointWriter(Appendable writer) throws IOException {
+      this(writer, new Metric[0]);
+    }
+
+    /**
+     * Initializes the writer.
+     *
+     * @param writer	the writer to print to
+     * @param columns	the additional columns
+     * @throws IOException	if initializing the printer fails
+     */
+    public PointWriter(Appendable writer, Metric[] columns) throws IOException {
+      m_Printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
+      m_Columns = columns.clone();
+      m_Row     = new String[4 + m_Columns.length];
+      m_Header  = false;
+    }
+
+    /**
+     * Turns the value into a cell, leaving NaN blank.
+     *
+     * @param value	the value
+     * @return		the cell
+     */
+    protected static String cell(double value) {
+      return Double.isNaN(value) ? "" : "" + value;
+    }
+
+    /**
+     * Writes the point as row.
+     *
+     * @param track	the track
+     * @param time	the time, can be null
+     * @param elapsed	the seconds since the first point of the track with a time, NaN if no time
+     * @param lat	the latitude
+     * @param lon	the longitude
+     * @param distance	the cumulative distance within the track
+     * @param elevation	the elevation, NaN if missing
+     * @throws IOException	if writing fails
+     */
+    @Override
+    public void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation) throws IOException {
+      double	value;
+      boolean	start;
+      int	i;
+
+      if (!m_Header) {
+	m_Row[0] = KEY_TRACK;
+	m_Row[1] = KEY_TIME;
+	m_Row[2] = KEY_DISTANCE;
+	m_Row[3] = KEY_ELEVATION;
+	for (i = 0; i < m_Columns.length; i++)
+	  m_Row[4 + i] = m_Columns[i].getKey();
+	m_Printer.printRecord((Object[]) m_Row);
+	m_Header = true;
+      }
+      m_Row[0] = track;
+      m_Row[1] = time;
+      m_Row[2] = "" + distance;
+      m_Row[3] = Profile.formatElevation(elevation);
+      start    = (m_LastTrack == null) || !m_LastTrack.equals(track);
+      for (i = 0; i < m_Columns.length; i++) {
+	switch (m_Columns[i]) {
+	  case DISTANCE:
+	    value = distance;
+	    break;
+	  case ELEVATION:
+	    value = elevation;
+	    break;
+	  case ELAPSED:
+	    value = elapsed;
+	    break;
+	  case SPEED:
+	    value = start ? Double.NaN : Profile.speed(distance - m_LastDistance, elapsed - m_LastElapsed);
+	    break;
+	  case GRADE:
+	    value = start ? Double.NaN : Profile.grade(distance - m_LastDistance, elevation - m_LastElevation);
+	    break;
+	  default:
+	    throw new IllegalStateException("Unhandled metric: " + m_Columns[i]);
+	}
+	m_Row[4 + i] = cell(value);
+      }
+      m_Printer.printRecord((Object[]) m_Row);
+      m_LastTrack     = track;
+      m_LastDistance  = distance;
+      m_LastElevation = elevation;
+      m_LastElapsed   = elapsed;
+    }
+
+    /**
+     * Flushes the printer.
+     *
+     * @throws IOException	if flushing fails
+     */
+    public void flush() throws IOException {
+      m_Printer.flush();
+    }
+  }
+
+  /** the argument parser. */
+  protected ArgumentParser m_Parser;
+
+  /** the additional columns when writing profiles. */
+  protected Metric[] m_Columns;
+
+  /**
+   * Initializes the members.
+   */
+  @Override
+  protected void initialize() {
+    super.initialize();
+
+    m_Columns = new Metric[0];
+
+    m_Parser = ArgumentParsers.newFor(getClass().getSimpleName()).build();
+
+    m_Parser.description("Options for the CSV format.");
+    m_Parser.defaultHelp(true);
+
+    m_Parser.addArgument("--columns")
+      .metavar("<list>")
+      .dest("columns")
+      .required(false)
+      .type(String.class)
+      .setDefault("")
+      .help("The additional columns to output, comma-separated list of: " + Metric.ELAPSED + ", " + Metric.SPEED + ", " + Metric.GRADE + ".");
+  }
+
+  /**
+   * Sets the additional columns to output when writing profiles.
+   *
+   * @param value	the columns
+   */
+  public void setColumns(Metric[] value) {
+    m_Columns = value.clone();
+  }
+
+  /**
+   * Returns the additional columns to output when writing profiles.
+   *
+   * @return		the columns
+   */
+  public Metric[] getColumns() {
+    return m_Columns.clone();
+  }
+
+  /**
+   * For setting options.
+   *
+   * @param options	the options
+   */
+  public void setOptions(String[] options) throws Exception {
+    Namespace ns;
+
+    try {
+      ns = m_Parser.parseArgs(options);
+    }
+    catch (HelpScreenException e) {
+      // ignored
+      return;
+    }
+    catch (Exception e) {
+      throw new Exception("Failed to parse options: " + OptionUtils.flatten(options), e);
+    }
+
+    setColumns(Metric.parseList(ns.getString("columns")));
+  }
+
+  /**
+   * Returns the help string.
+   *
+   * @return		the help
+   */
+  public String toHelp() {
+    return "Supported options:\n"
+      + "  columns: additional columns to output (comma-separated list of " + Metric.ELAPSED + ", " + Metric.SPEED + ", " + Metric.GRADE + "), default: none\n";
+  }
+
+  /**
+   * Writes to a file. The records get written as is, without additional
+   * columns.
    *
    * @param data	the data to write
    * @param output	the output file
@@ -102,4 +335,79 @@ public class CSV
 
     return null;
   }
+
+  /**
+   * Writes the profile's rows straight from its columns.
+   *
+   * @param profile		the profile to write
+   * @param writer		the writer to use
+   * @param cancellation	for stopping early
+   * @throws IOException	if writing fails or got stopped
+   */
+  protected void write(Profile profile, PointWriter writer, Cancellation cancellation) throws IOException {
+    int		i;
+
+    for (i = 0; i < profile.size(); i++) {
+      if ((i % Cancellation.INTERVAL) == 0)
+	cancellation.check();
+      writer.point(profile.getTrack(i), profile.getTime(i), profile.getElapsed(i), profile.getLatitude(i), profile.getLongitude(i), profile.getDistance(i), profile.getElevation(i));
+    }
+    writer.flush();
+  }
+
+  /**
+   * Writes the profile to a file, row by row straight from its columns.
+   *
+   * @param profile		the profile to write
+   * @param output		the output file
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  @Override
+  public String write(Profile profile, File output, Cancellation cancellation) {
+    FileWriter		writer;
+
+    writer = null;
+    try {
+      m_Logger.info("Writing: " + output);
+      writer = new FileWriter(output);
+      write(profile, new PointWriter(writer, m_Columns), cancellation);
+      writer.close();
+    }
+    catch (Exception e) {
+      m_Logger.error("Failed to write: " + output, e);
+      return "Failed to write: " + output + "\n" + e;
+    }
+    finally {
+      IOUtils.closeQuietly(writer);
+    }
+
+    return null;
+  }
+
+  /**
+   * Writes the profile to the stream, row by row straight from its
+   * columns. The stream is not closed.
+   *
+   * @param profile		the profile to write
+   * @param output		the stream to write to
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  @Override
+  public String write(Profile profile, OutputStream output, Cancellation cancellation) {
+    OutputStreamWriter	writer;
+
+    try {
+      writer = new OutputStreamWriter(output);
+      write(profile, new PointWriter(writer, m_Columns), cancellation);
+      writer.flush();
+    }
+    catch (Exception e) {
+      m_Logger.error("Failed to write to stream", e);
+      return "Failed to write to stream\n" + e;
+    }
+
+    return null;
+  }
 }
@@ -15,13 +15,17 @@
 
 /*
  * Format.java
- * Copyright (C) 2018 FracPete
+ * Copyright (C) 2018-2026 FracPete
  */
 package com.github.fracpete.gpsaltprofile4j.formats;
 
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
 import org.apache.commons.csv.CSVRecord;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.List;
 
 /**
@@ -43,6 +47,15 @@ public interface Format {
   /** the key for the elevation. */
   public final static String KEY_ELEVATION = "Elevation";
 
+  /** the key for the elapsed time. */
+  public final static String KEY_ELAPSED = "Elapsed";
+
+  /** the key for the speed. */
+  public final static String KEY_SPEED = "Speed";
+
+  /** the key for the grade. */
+  public final static String KEY_GRADE = "Grade";
+
   /**
    * Writes to a file.
    *
@@ -51,4 +64,81 @@ public interface Format {
    * @return		null if successful, otherwise error message
    */
   public String write(List<CSVRecord> data, File output);
+
+  /**
+   * Writes the profile to a file.
+   *
+   * @param profile	the profile to write
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  public default String write(Profile profile, File output) {
+    return write(profile, output, Cancellation.NONE);
+  }
+
+  /**
+   * Writes the profile to a file, stopping early if requested. Default
+   * implementation turns the profile into records, checking for
+   * cancellation only beforehand.
+   *
+   * @param profile		the profile to write
+   * @param output		the output file
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  public default String write(Profile profile, File output, Cancellation cancellation) {
+    try {
+      cancellation.check();
+    }
+    catch (Exception e) {
+      return "Failed to write: " + output + "\n" + e;
+    }
+    return write(profile.toRecords(), output);
+  }
+
+  /**
+   * Writes the profile to the stream. The stream is not closed.
+   *
+   * @param profile	the profile to write
+   * @param output	the stream to write to
+   * @return		null if successful, otherwise error message
+   */
+  public default String write(Profile profile, OutputStream output) {
+    return write(profile, output, Cancellation.NONE);
+  }
+
+  /**
+   * Writes the profile to the stream, stopping early if requested. Default
+   * implementation writes to a temporary file first and then copies it to
+   * the stream. The stream is not closed.
+   *
+   * @param profile		the profile to write
+   * @param output		the stream to write to
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  public default String write(Profile profile, OutputStream output, Cancellation cancellation) {
+    String	result;
+    File	tmp;
+
+    tmp = null;
+    try {
+      tmp    = File.createTempFile("gpsaltprofile4j-", ".tmp");
+      result = write(profile, tmp, cancellation);
+      if (result == null) {
+	cancellation.check();
+	Files.copy(tmp.toPath(), output);
+	output.flush();
+      }
+    }
+    catch (Exception e) {
+      result = "Failed to write to stream\n" + e;
+    }
+    finally {
+      if ((tmp != null) && !tmp.delete())
+	tmp.deleteOnExit();
+    }
+
+    return result;
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ImagePool.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.formats;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of ARGB images, keyed by size, to avoid allocating a new raster for
+ * every chart that gets rendered. Only a limited number of idle images is
+ * kept per size, and only for the most recently used sizes. Thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ImagePool {
+
+  /** the default maximum number of idle images per size. */
+  public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+  /** the default maximum number of sizes to keep images for. */
+  public static final int DEFAULT_MAX_SIZES = 8;
+
+  /** the pool shared by the PNG formats. */
+  public static final ImagePool SHARED = new ImagePool(DEFAULT_MAX_IDLE, DEFAULT_MAX_SIZES);
+
+  /** the maximum number of idle images per size. */
+  protected final int m_MaxIdle;
+
+  /** the idle images per size, least recently used size first. */
+  protected final Map<Long,Deque<BufferedImage>> m_Idle;
+
+  /** the number of images created. */
+  protected long m_Created;
+
+  /** the number of images reused. */
+  protected long m_Reused;
+
+  /**
+   * Initializes the pool.
+   *
+   * @param maxIdle	the maximum number of idle images per size
+   * @param maxSizes	the maximum number of sizes to keep images for
+   */
+  public ImagePool(int maxIdle, final int maxSizes) {
+    if (maxIdle < 1)
+      throw new IllegalArgumentException("Maximum number of idle images must be at least 1, provided: " + maxIdle);
+    if (maxSizes < 1)
+      throw new IllegalArgumentException("Maximum number of sizes must be at least 1, provided: " + maxSizes);
+    m_MaxIdle = maxIdle;
+    m_Idle    = new LinkedHashMap<Long,Deque<BufferedImage>>(16, 0.75f, true) {
+      private static final long serialVersionUID = -4015286930164271875L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long,Deque<BufferedImage>> eldest) {
+	return size() > maxSizes;
+      }
+    };
+  }
+
+  /**
+   * Generates the key for the size.
+   *
+   * @param width	the width
+   * @param height	the height
+   * @return		the key
+   */
+  protected static Long key(int width, int height) {
+    return ((long) width << 32) | (height & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns an image of the specified size, either from the pool or newly
+   * created. The content of a pooled image is undefined. Return the image
+   * with {@link #release(BufferedImage)} once no longer needed.
+   *
+   * @param width	the width
+   * @param height	the height
+   * @return		the image
+   */
+  public BufferedImage acquire(int width, int height) {
+    Deque<BufferedImage>	idle;
+
+    synchronized(this) {
+      idle = m_Idle.get(key(width, height));
+      if ((idle != null) && !idle.isEmpty()) {
+	m_Reused++;
+	return idle.pop();
+      }
+      m_Created++;
+    }
+
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+  }
+
+  /**
+   * Returns the image to the pool. The image must not be used afterwards.
+   *
+   * @param image	the image to return
+   */
+  public synchronized void release(BufferedImage image) {
+    Deque<BufferedImage>	idle;
+    Long			key;
+
+    key  = key(image.getWidth(), image.getHeight());
+    idle = m_Idle.get(key);
+    if (idle == null) {
+      idle = new ArrayDeque<>();
+      m_Idle.put(key, idle);
+    }
+    if (idle.size() < m_MaxIdle)
+      idle.push(image);
+  }
+
+  /**
+   * Returns the number of images created so far.
+   *
+   * @return		the number of images
+   */
+  public synchronized long getCreated() {
+    return m_Created;
+  }
+
+  /**
+   * Returns the number of times an image got reused so far.
+   *
+   * @return		the number of reuses
+   */
+  public synchronized long getReused() {
+    return m_Reused;
+  }
+
+  /**
+   * Removes all idle images.
+   */
+  public synchronized void clear() {
+    m_Idle.clear();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Metric.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.formats;
+
+import com.github.fracpete.gpsaltprofile4j.Profile;
+
+/**
+ * The metrics of a profile that can be output as columns or plotted.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public enum Metric {
+  /** the cumulative distance within the track in m. */
+  DISTANCE(Format.KEY_DISTANCE, "m"),
+  /** the elevation in m. */
+  ELEVATION(Format.KEY_ELEVATION, "m"),
+  /** the seconds since the start of the track. */
+  ELAPSED(Format.KEY_ELAPSED, "s"),
+  /** the speed in m/s. */
+  SPEED(Format.KEY_SPEED, "m/s"),
+  /** the grade in percent. */
+  GRADE(Format.KEY_GRADE, "%");
+
+  /** the column name. */
+  private final String m_Key;
+
+  /** the unit. */
+  private final String m_Unit;
+
+  /**
+   * Initializes the metric.
+   *
+   * @param key		the column name
+   * @param unit	the unit
+   */
+  private Metric(String key, String unit) {
+    m_Key  = key;
+    m_Unit = unit;
+  }
+
+  /**
+   * Returns the column name.
+   *
+   * @return		the name
+   */
+  public String getKey() {
+    return m_Key;
+  }
+
+  /**
+   * Returns the unit.
+   *
+   * @return		the unit
+   */
+  public String getUnit() {
+    return m_Unit;
+  }
+
+  /**
+   * Returns the label for axes, including the unit.
+   *
+   * @return		the label
+   */
+  public String toLabel() {
+    return m_Key + " [" + m_Unit + "]";
+  }
+
+  /**
+   * Returns the value of the metric for the specified row.
+   *
+   * @param profile	the profile to get the value from
+   * @param index	the row
+   * @return		the value, NaN if not available
+   */
+  public double get(Profile profile, int index) {
+    switch (this) {
+      case DISTANCE:
+	return profile.getDistance(index);
+      case ELEVATION:
+	return profile.getElevation(index);
+      case ELAPSED:
+	return profile.getElapsed(index);
+      case SPEED:
+	return profile.getSpeed(index);
+      case GRADE:
+	return profile.getGrade(index);
+      default:
+	throw new IllegalStateException("Unhandled metric: " + this);
+    }
+  }
+
+  /**
+   * Parses the comma-separated list of metric names (case-insensitive).
+   *
+   * @param list	the list to parse, can be empty
+   * @return		the metrics
+   * @throws IllegalArgumentException	if a name is unknown
+   */
+  public static Metric[] parseList(String list) {
+    String[]	names;
+    Metric[]	result;
+    int		i;
+
+    if (list.trim().isEmpty())
+      return new Metric[0];
+    names  = list.split(",");
+    result = new Metric[names.length];
+    for (i = 0; i < names.length; i++)
+      result[i] = valueOf(names[i].trim().toUpperCase());
+
+    return result;
+  }
+
+  /**
+   * Returns the names of all metrics, eg for choices.
+   *
+   * @return		the names
+   */
+  public static String[] names() {
+    String[]	result;
+    int		i;
+
+    result = new String[values().length];
+    for (i = 0; i < result.length; i++)
+      result[i] = values()[i].name();
+
+    return result;
+  }
+}
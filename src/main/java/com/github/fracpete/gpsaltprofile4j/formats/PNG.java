@@ -15,11 +15,14 @@
 
 /*
  * PNG.java
- * Copyright (C) 2018-2025 FracPete
+ * Copyright (C) 2018-2026 FracPete
  */
 
 package com.github.fracpete.gpsaltprofile4j.formats;
 
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.io.NumberParser;
 import com.github.fracpete.gpsformats4j.core.OptionUtils;
 import gnu.trove.list.TDoubleList;
 import gnu.trove.list.array.TDoubleArrayList;
@@ -33,18 +36,29 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.data.xy.DefaultXYDataset;
+import org.jfree.data.xy.XYDataset;
 
 import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
- * PNG format. Additional options:
+ * PNG format. The chart gets set up once per thread and reused, with the
+ * images coming from {@link ImagePool#SHARED}. Additional options:
  * <ol>
  *   <li>width</li>
  *   <li>height</li>
+ *   <li>x: the metric for the horizontal axis</li>
+ *   <li>y: the metric for the vertical axis</li>
  * </ol>
  *
  * @author FracPete (fracpete at gmail dot com)
@@ -66,6 +80,15 @@ public class PNG
   /** the height. */
   protected int m_Height;
 
+  /** the metric for the horizontal axis. */
+  protected Metric m_X;
+
+  /** the metric for the vertical axis. */
+  protected Metric m_Y;
+
+  /** the chart template, one per thread. */
+  protected transient ThreadLocal<JFreeChart> m_Charts;
+
   /**
    * Initializes the members.
    */
@@ -75,6 +98,9 @@ public class PNG
 
     m_Width  = DEFAULT_WIDTH;
     m_Height = DEFAULT_HEIGHT;
+    m_X      = Metric.DISTANCE;
+    m_Y      = Metric.ELEVATION;
+    m_Charts = ThreadLocal.withInitial(PNG::newChart);
     
     m_Parser = ArgumentParsers.newFor(getClass().getSimpleName()).build();
 
@@ -95,6 +121,20 @@ public class PNG
       .type(Integer.class)
       .setDefault(DEFAULT_HEIGHT)
       .help("The height of the image.");
+    m_Parser.addArgument("--x")
+      .dest("x")
+      .required(false)
+      .type(String.class)
+      .choices(Metric.names())
+      .setDefault(Metric.DISTANCE.name())
+      .help("The metric for the horizontal axis.");
+    m_Parser.addArgument("--y")
+      .dest("y")
+      .required(false)
+      .type(String.class)
+      .choices(Metric.names())
+      .setDefault(Metric.ELEVATION.name())
+      .help("The metric for the vertical axis.");
   }
 
   /**
@@ -135,6 +175,42 @@ public class PNG
     return m_Height;
   }
 
+  /**
+   * Sets the metric for the horizontal axis.
+   *
+   * @param value	the metric
+   */
+  public void setX(Metric value) {
+    m_X = value;
+  }
+
+  /**
+   * Returns the metric for the horizontal axis.
+   *
+   * @return		the metric
+   */
+  public Metric getX() {
+    return m_X;
+  }
+
+  /**
+   * Sets the metric for the vertical axis.
+   *
+   * @param value	the metric
+   */
+  public void setY(Metric value) {
+    m_Y = value;
+  }
+
+  /**
+   * Returns the metric for the vertical axis.
+   *
+   * @return		the metric
+   */
+  public Metric getY() {
+    return m_Y;
+  }
+
   /**
    * For setting options.
    *
@@ -156,6 +232,8 @@ public class PNG
 
     setWidth(ns.getInt("width"));
     setHeight(ns.getInt("height"));
+    setX(Metric.valueOf(ns.getString("x")));
+    setY(Metric.valueOf(ns.getString("y")));
   }
 
   /**
@@ -166,11 +244,15 @@ public class PNG
   public String toHelp() {
     return "Supported options:\n"
       + "  width: width in pixels for the output, default: " + DEFAULT_WIDTH + "\n"
-      + "  height: height in pixels for the output, default: " + DEFAULT_HEIGHT + "\n";
+      + "  height: height in pixels for the output, default: " + DEFAULT_HEIGHT + "\n"
+      + "  x: metric for the horizontal axis, default: " + Metric.DISTANCE + "\n"
+      + "  y: metric for the vertical axis, default: " + Metric.ELEVATION + "\n";
   }
 
   /**
-   * Writes to a file.
+   * Writes to a file, using the columns of the selected metrics. Records
+   * with a malformed value for the horizontal axis get skipped, malformed
+   * values for the vertical axis are treated as missing.
    *
    * @param data	the data to write
    * @param output	the output file
@@ -178,37 +260,223 @@ public class PNG
    */
   @Override
   public String write(List<CSVRecord> data, File output) {
+    TDoubleList 	x;
+    TDoubleList 	y;
+    double		d;
+
+    x = new TDoubleArrayList();
+    y = new TDoubleArrayList();
+    for (CSVRecord rec: data) {
+      if (!rec.isMapped(m_X.getKey()) || !rec.isMapped(m_Y.getKey()))
+	return "Failed to write generated chart to: " + output + "\nColumns not available: " + m_X.getKey() + ", " + m_Y.getKey();
+      d = NumberParser.parse(rec.get(m_X.getKey()));
+      if (Double.isNaN(d))
+	continue;
+      x.add(d);
+      y.add(NumberParser.parse(rec.get(m_Y.getKey())));
+    }
+
+    return write(x.toArray(), y.toArray(), output);
+  }
+
+  /**
+   * Plots the values and writes the chart to a file.
+   *
+   * @param x		the values for the horizontal axis
+   * @param y		the values for the vertical axis
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  protected String write(double[] x, double[] y, File output) {
     DefaultXYDataset	dataset;
-    TDoubleList 	dist;
-    TDoubleList 	elev;
-    JFreeChart		jfreechart;
-    XYPlot		plot;
-    BufferedImage	image;
 
     dataset = new DefaultXYDataset();
-    dist = new TDoubleArrayList();
-    elev = new TDoubleArrayList();
-    for (CSVRecord rec: data) {
-      dist.add(Double.parseDouble(rec.get(KEY_DISTANCE)));
-      elev.add(Double.parseDouble(rec.get(KEY_ELEVATION)));
+    dataset.addSeries(m_Y.getKey(), new double[][]{y, x});
+
+    return write(dataset, output);
+  }
+
+  /**
+   * Writes the profile to a file, plotting the columns without copying.
+   * Rendering itself cannot be stopped, cancellation only gets checked
+   * beforehand.
+   *
+   * @param profile		the profile to write
+   * @param output		the output file
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  @Override
+  public String write(Profile profile, File output, Cancellation cancellation) {
+    try {
+      cancellation.check();
+    }
+    catch (Exception e) {
+      return "Failed to write generated chart to: " + output + "\n" + e;
     }
-    dataset.addSeries("Elevation", new double[][]{elev.toArray(), dist.toArray()});
+    return write(new ProfileDataset(profile, m_X, m_Y), output);
+  }
 
-    jfreechart = ChartFactory.createXYLineChart(
-      "", "Elevation", "Distance", dataset, PlotOrientation.HORIZONTAL, false, false, false);
-    plot = (XYPlot) jfreechart.getPlot();
+  /**
+   * Writes the profile to the stream, plotting the columns without
+   * copying. The stream is not closed. Rendering itself cannot be
+   * stopped, cancellation only gets checked beforehand.
+   *
+   * @param profile		the profile to write
+   * @param output		the stream to write to
+   * @param cancellation	for stopping early
+   * @return			null if successful, otherwise error message
+   */
+  @Override
+  public String write(Profile profile, OutputStream output, Cancellation cancellation) {
+    try {
+      cancellation.check();
+    }
+    catch (Exception e) {
+      return "Failed to write generated chart to stream\n" + e;
+    }
+    return write(new ProfileDataset(profile, m_X, m_Y), output);
+  }
+
+  /**
+   * Creates the chart template, without dataset.
+   *
+   * @return		the chart
+   */
+  protected static JFreeChart newChart() {
+    JFreeChart		result;
+    XYPlot		plot;
+
+    result = ChartFactory.createXYLineChart(
+      "", "Elevation", "Distance", null, PlotOrientation.HORIZONTAL, false, false, false);
+    plot = (XYPlot) result.getPlot();
     plot.setBackgroundPaint(Color.WHITE);
     plot.setDomainGridlinesVisible(true);
     plot.setDomainGridlinePaint(Color.GRAY);
     plot.setRangeGridlinesVisible(true);
     plot.setRangeGridlinePaint(Color.GRAY);
-    image = jfreechart.createBufferedImage(m_Width, m_Height);
+
+    return result;
+  }
+
+  /**
+   * Renders the chart into a pooled image and writes it to the stream.
+   * The stream is not closed.
+   *
+   * @param chart	the chart to render
+   * @param width	the width of the image
+   * @param height	the height of the image
+   * @param output	the stream to write to
+   * @throws IOException	if writing fails
+   */
+  public static void render(JFreeChart chart, int width, int height, OutputStream output) throws IOException {
+    BufferedImage	image;
+    Graphics2D		g2;
+
+    image = ImagePool.SHARED.acquire(width, height);
     try {
-      ImageIO.write(image, "png", output.getAbsoluteFile());
+      g2 = image.createGraphics();
+      try {
+	// pooled images still hold the previous chart
+	g2.setComposite(AlphaComposite.Clear);
+	g2.fillRect(0, 0, width, height);
+	g2.setComposite(AlphaComposite.SrcOver);
+	chart.draw(g2, new Rectangle2D.Double(0, 0, width, height));
+      }
+      finally {
+	g2.dispose();
+      }
+      if (!ImageIO.write(image, "png", output))
+	throw new IOException("No PNG writer available!");
+      output.flush();
+    }
+    finally {
+      ImagePool.SHARED.release(image);
+    }
+  }
+
+  /**
+   * Renders the chart into a pooled image and writes it to a file.
+   *
+   * @param chart	the chart to render
+   * @param width	the width of the image
+   * @param height	the height of the image
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  public static String render(JFreeChart chart, int width, int height, File output) {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output.getAbsoluteFile()))) {
+      render(chart, width, height, out);
     }
     catch (Exception e) {
       return "Failed to write generated chart to: " + output + "\n" + e;
     }
+
+    return null;
+  }
+
+  /**
+   * Prepares the plot of the chart template for the dataset.
+   *
+   * @param plot	the plot to update
+   * @param dataset	the dataset to plot
+   */
+  protected void prepare(XYPlot plot, XYDataset dataset) {
+    plot.getDomainAxis().setLabel(m_Y.toLabel());
+    plot.getRangeAxis().setLabel(m_X.toLabel());
+    plot.setDataset(dataset);
+  }
+
+  /**
+   * Plots the dataset (x: vertical axis, y: horizontal axis) and writes
+   * the chart to a file.
+   *
+   * @param dataset	the dataset to plot
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  protected String write(XYDataset dataset, File output) {
+    JFreeChart		jfreechart;
+    XYPlot		plot;
+
+    jfreechart = m_Charts.get();
+    plot       = (XYPlot) jfreechart.getPlot();
+    prepare(plot, dataset);
+    try {
+      return render(jfreechart, m_Width, m_Height, output);
+    }
+    finally {
+      // don't hold on to the data
+      plot.setDataset(null);
+    }
+  }
+
+  /**
+   * Plots the dataset (x: vertical axis, y: horizontal axis) and writes
+   * the chart to the stream. The stream is not closed.
+   *
+   * @param dataset	the dataset to plot
+   * @param output	the stream to write to
+   * @return		null if successful, otherwise error message
+   */
+  protected String write(XYDataset dataset, OutputStream output) {
+    JFreeChart		jfreechart;
+    XYPlot		plot;
+
+    jfreechart = m_Charts.get();
+    plot       = (XYPlot) jfreechart.getPlot();
+    prepare(plot, dataset);
+    try {
+      render(jfreechart, m_Width, m_Height, output);
+    }
+    catch (Exception e) {
+      return "Failed to write generated chart to stream\n" + e;
+    }
+    finally {
+      // don't hold on to the data
+      plot.setDataset(null);
+    }
+
     return null;
   }
 }
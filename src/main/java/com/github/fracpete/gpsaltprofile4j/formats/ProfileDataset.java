@@ -0,0 +1,149 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProfileDataset.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.formats;
+
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import org.jfree.data.xy.AbstractXYDataset;
+
+/**
+ * Dataset that plots straight from the columns of a profile, without
+ * copying them. Meant for horizontal charts, hence the metric for the
+ * vertical axis gets returned as x and the one for the horizontal axis
+ * as y (default: elevation against distance).
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ProfileDataset
+  extends AbstractXYDataset {
+
+  private static final long serialVersionUID = 3512907415648812379L;
+
+  /** the profile. */
+  protected final transient Profile m_Profile;
+
+  /** the metric for the horizontal axis. */
+  protected final Metric m_Horizontal;
+
+  /** the metric for the vertical axis. */
+  protected final Metric m_Vertical;
+
+  /**
+   * Initializes the dataset, plotting elevation against distance.
+   *
+   * @param profile	the profile to plot
+   */
+  public ProfileDataset(Profile profile) {
+    this(profile, Metric.DISTANCE, Metric.ELEVATION);
+  }
+
+  /**
+   * Initializes the dataset.
+   *
+   * @param profile	the profile to plot
+   * @param horizontal	the metric for the horizontal axis
+   * @param vertical	the metric for the vertical axis
+   */
+  public ProfileDataset(Profile profile, Metric horizontal, Metric vertical) {
+    m_Profile    = profile;
+    m_Horizontal = horizontal;
+    m_Vertical   = vertical;
+  }
+
+  /**
+   * Returns the number of series.
+   *
+   * @return		always 1
+   */
+  @Override
+  public int getSeriesCount() {
+    return 1;
+  }
+
+  /**
+   * Returns the key of the series.
+   *
+   * @param series	the series index
+   * @return		the key
+   */
+  @Override
+  public Comparable getSeriesKey(int series) {
+    return m_Vertical.getKey();
+  }
+
+  /**
+   * Returns the number of items in the series.
+   *
+   * @param series	the series index
+   * @return		the number of items
+   */
+  @Override
+  public int getItemCount(int series) {
+    return m_Profile.size();
+  }
+
+  /**
+   * Returns the value for the vertical axis.
+   *
+   * @param series	the series index
+   * @param item	the item index
+   * @return		the value
+   */
+  @Override
+  public double getXValue(int series, int item) {
+    return m_Vertical.get(m_Profile, item);
+  }
+
+  /**
+   * Returns the value for the horizontal axis.
+   *
+   * @param series	the series index
+   * @param item	the item index
+   * @return		the value
+   */
+  @Override
+  public double getYValue(int series, int item) {
+    return m_Horizontal.get(m_Profile, item);
+  }
+
+  /**
+   * Returns the value for the vertical axis.
+   *
+   * @param series	the series index
+   * @param item	the item index
+   * @return		the elevation
+   */
+  @Override
+  public Number getX(int series, int item) {
+    return getXValue(series, item);
+  }
+
+  /**
+   * Returns the value for the horizontal axis.
+   *
+   * @param series	the series index
+   * @param item	the item index
+   * @return		the value
+   */
+  @Override
+  public Number getY(int series, int item) {
+    return getYValue(series, item);
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ErrorPolicy.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+/**
+ * How to handle records with malformed numbers. Blank elevations are not
+ * considered malformed, but missing. Records without coordinates (eg TCX
+ * trackpoints without position while paused) count as malformed.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public enum ErrorPolicy {
+  /** drops the record. */
+  SKIP,
+  /** interpolates a malformed elevation between the neighbouring points of the same track; records with malformed or missing coordinates get dropped. */
+  INTERPOLATE,
+  /** fails on the first malformed record. */
+  FAIL,
+}
@@ -0,0 +1,186 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * NumberParser.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+/**
+ * Validating parser for decimal numbers that signals malformed input with
+ * NaN rather than with an exception. Accepts an optional sign, digits with
+ * an optional decimal point and an optional exponent, surrounded by
+ * whitespace. Numbers with up to 18 significant digits and a small
+ * exponent get converted exactly without {@link Double#parseDouble(String)},
+ * all others get handed to it after validation.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class NumberParser {
+
+  /** the powers of 10 that are exactly representable as double. */
+  protected static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+  };
+
+  /** the maximum number of significant digits for the fast path. */
+  protected static final int MAX_DIGITS = 18;
+
+  /** the largest mantissa that is exactly representable as double. */
+  protected static final long MAX_MANTISSA = 1L << 53;
+
+  /**
+   * Checks whether the string is null or only consists of whitespace.
+   *
+   * @param s		the string to check
+   * @return		true if blank
+   */
+  public static boolean isBlank(CharSequence s) {
+    int		i;
+
+    if (s == null)
+      return true;
+    for (i = 0; i < s.length(); i++) {
+      if (s.charAt(i) > ' ')
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks whether the character is a digit.
+   *
+   * @param c		the character to check
+   * @return		true if a digit
+   */
+  protected static boolean isDigit(char c) {
+    return (c >= '0') && (c <= '9');
+  }
+
+  /**
+   * Parses the number.
+   *
+   * @param s		the string to parse, can be null
+   * @return		the number, NaN if blank or malformed
+   */
+  public static double parse(CharSequence s) {
+    int		start;
+    int		end;
+    int		i;
+    boolean	negative;
+    long	mantissa;
+    int		digits;
+    int		exp10;
+    boolean	anyDigit;
+    boolean	expNegative;
+    int		exp;
+    char	c;
+    double	result;
+
+    if (s == null)
+      return Double.NaN;
+
+    start = 0;
+    end   = s.length();
+    while ((start < end) && (s.charAt(start) <= ' '))
+      start++;
+    while ((end > start) && (s.charAt(end - 1) <= ' '))
+      end--;
+    if (start == end)
+      return Double.NaN;
+
+    i        = start;
+    negative = false;
+    c        = s.charAt(i);
+    if ((c == '-') || (c == '+')) {
+      negative = (c == '-');
+      i++;
+    }
+
+    mantissa = 0;
+    digits   = 0;
+    exp10    = 0;
+    anyDigit = false;
+    while ((i < end) && isDigit(c = s.charAt(i))) {
+      anyDigit = true;
+      if ((mantissa > 0) || (c != '0')) {
+	if (digits < MAX_DIGITS)
+	  mantissa = mantissa * 10 + (c - '0');
+	else
+	  exp10++;
+	digits++;
+      }
+      i++;
+    }
+    if ((i < end) && (s.charAt(i) == '.')) {
+      i++;
+      while ((i < end) && isDigit(c = s.charAt(i))) {
+	anyDigit = true;
+	if ((mantissa > 0) || (c != '0')) {
+	  if (digits < MAX_DIGITS) {
+	    mantissa = mantissa * 10 + (c - '0');
+	    exp10--;
+	  }
+	  digits++;
+	}
+	else {
+	  exp10--;
+	}
+	i++;
+      }
+    }
+    if (!anyDigit)
+      return Double.NaN;
+
+    if ((i < end) && ((s.charAt(i) == 'e') || (s.charAt(i) == 'E'))) {
+      i++;
+      expNegative = false;
+      if ((i < end) && ((s.charAt(i) == '-') || (s.charAt(i) == '+'))) {
+	expNegative = (s.charAt(i) == '-');
+	i++;
+      }
+      if ((i == end) || !isDigit(s.charAt(i)))
+	return Double.NaN;
+      exp = 0;
+      while ((i < end) && isDigit(c = s.charAt(i))) {
+	if (exp < 100000)
+	  exp = exp * 10 + (c - '0');
+	i++;
+      }
+      exp10 += expNegative ? -exp : exp;
+    }
+    if (i != end)
+      return Double.NaN;
+
+    if (mantissa == 0)
+      return negative ? -0.0 : 0.0;
+
+    // exact if mantissa and power of 10 are both representable
+    if ((digits <= MAX_DIGITS) && (mantissa <= MAX_MANTISSA) && (exp10 >= -22) && (exp10 <= 22)) {
+      if (exp10 < 0)
+	result = mantissa / POW10[-exp10];
+      else
+	result = mantissa * POW10[exp10];
+      return negative ? -result : result;
+    }
+
+    // validated, cannot fail
+    return Double.parseDouble(s.subSequence(start, end).toString());
+  }
+}
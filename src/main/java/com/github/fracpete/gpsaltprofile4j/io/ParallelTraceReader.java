@@ -0,0 +1,453 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelTraceReader.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.storage.Allocator;
+import com.github.fracpete.gpsaltprofile4j.storage.ChunkedDoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.ChunkedStringColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.DoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+import com.github.fracpete.gpsaltprofile4j.storage.StringColumn;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads large GPX and TCX files in parallel. The memory-mapped file gets
+ * split into chunks at the start of trackpoints, which are then parsed
+ * concurrently, including the segment lengths. The parsed chunks get
+ * stitched together in order (cumulative distances, carried over tracks),
+ * resulting in exactly the same distances as a sequential pass, and copied
+ * into their own columns straight away. A chunk that ends within a
+ * comment or CDATA section (ie the split was at a commented out trackpoint)
+ * gets parsed again together with the following chunk. Only a few
+ * chunks per thread get parsed ahead, so the heap only ever holds a
+ * bounded number of chunks, regardless of the size of the file.
+ * <br>
+ * Tracks are formed by GPX <code>trk</code> and TCX <code>Activity</code>
+ * elements, using their name/id (empty if unnamed). Segments and laps
+ * within a track, as well as consecutive tracks with the same name,
+ * continue the distance. Tags may have a namespace prefix.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ParallelTraceReader {
+
+  /** the minimum chunk size in bytes. */
+  public static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+  /** the maximum chunk size in bytes, bounding the heap used per chunk. */
+  public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  /** the number of chunks per thread, for balancing the load. */
+  public static final int CHUNKS_PER_THREAD = 4;
+
+  /** the number of chunks per thread that get parsed ahead of stitching. */
+  public static final int AHEAD_PER_THREAD = 1;
+
+  /** the size of the window when searching for chunk boundaries. */
+  protected static final int SEARCH_WINDOW = 64 * 1024;
+
+  /** the overlap of the search windows, allowing for namespace prefixes. */
+  protected static final int SEARCH_OVERLAP = 256;
+
+  /** the number of threads to use. */
+  protected final int m_Threads;
+
+  /** the executor to use, null to create one per read. */
+  protected final ExecutorService m_Executor;
+
+  /**
+   * Initializes the reader, creating a thread pool for each read.
+   *
+   * @param threads	the number of threads, 0 for number of available cores
+   */
+  public ParallelTraceReader(int threads) {
+    this(null, threads);
+  }
+
+  /**
+   * Initializes the reader.
+   *
+   * @param executor	the executor to run the chunks on, null to create one per read
+   * @param threads	the number of threads, 0 for number of available cores
+   */
+  public ParallelTraceReader(ExecutorService executor, int threads) {
+    if (threads < 0)
+      throw new IllegalArgumentException("Number of threads must be at least 0, provided: " + threads);
+    m_Executor = executor;
+    m_Threads  = (threads == 0) ? Runtime.getRuntime().availableProcessors() : threads;
+  }
+
+  /**
+   * Returns the number of threads in use.
+   *
+   * @return		the number of threads
+   */
+  public int getThreads() {
+    return m_Threads;
+  }
+
+  /**
+   * Returns the tag names for the input format.
+   *
+   * @param format	the input format class
+   * @return		the tag names, null if not supported
+   */
+  protected static TraceChunk.Dialect dialect(Class format) {
+    if (format == null)
+      return null;
+    switch (format.getSimpleName()) {
+      case "GPX":
+	return TraceChunk.GPX;
+      case "TCX":
+	return TraceChunk.TCX;
+      default:
+	return null;
+    }
+  }
+
+  /**
+   * Returns whether the input format can be read in parallel.
+   *
+   * @param format	the input format class
+   * @return		true if supported
+   */
+  public static boolean supports(Class format) {
+    return (dialect(format) != null);
+  }
+
+  /**
+   * Locates the start of the next trackpoint, with or without namespace
+   * prefix.
+   *
+   * @param channel	the file to search
+   * @param from	the position to start searching from
+   * @param size	the size of the file
+   * @param dialect	the tag names
+   * @return		the position, the file size if none found
+   * @throws IOException	if mapping of the file fails
+   */
+  protected long nextBoundary(FileChannel channel, long from, long size, TraceChunk.Dialect dialect) throws IOException {
+    MappedByteBuffer	buf;
+    long		pos;
+    int			len;
+    int			i;
+
+    pos = from;
+    while (pos < size) {
+      len = (int) Math.min(SEARCH_WINDOW, size - pos);
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+      for (i = 0; i < len; i++) {
+	if (TraceChunk.isStartTag(buf, i, len, dialect.point))
+	  return pos + i;
+      }
+      if (pos + len >= size)
+	break;
+      pos += len - SEARCH_OVERLAP;
+    }
+
+    return size;
+  }
+
+  /**
+   * Determines the chunk boundaries, always starting at a trackpoint.
+   *
+   * @param channel	the file to split
+   * @param dialect	the tag names
+   * @return		the boundaries, including 0 and the file size
+   * @throws IOException	if mapping of the file fails
+   */
+  protected List<Long> boundaries(FileChannel channel, TraceChunk.Dialect dialect) throws IOException {
+    List<Long>	result;
+    long	size;
+    long	chunkSize;
+    long	pos;
+    long	boundary;
+
+    size      = channel.size();
+    chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / ((long) m_Threads * CHUNKS_PER_THREAD) + 1));
+    result    = new ArrayList<>();
+    result.add(0L);
+    pos = chunkSize;
+    while (pos < size) {
+      boundary = nextBoundary(channel, pos, size, dialect);
+      if (boundary >= size)
+	break;
+      if (boundary - result.get(result.size() - 1) > Integer.MAX_VALUE)
+	throw new IOException("No trackpoints found for more than " + Integer.MAX_VALUE + " bytes, cannot split file!");
+      result.add(boundary);
+      pos = boundary + chunkSize;
+    }
+    if (size - result.get(result.size() - 1) > Integer.MAX_VALUE)
+      throw new IOException("No trackpoints found for more than " + Integer.MAX_VALUE + " bytes, cannot split file!");
+    result.add(size);
+
+    return result;
+  }
+
+  /**
+   * Copies the stitched chunk into newly allocated columns, which get
+   * appended to the profile columns. The chunk gets cleared afterwards,
+   * freeing up the heap.
+   *
+   * @param chunk	the chunk to copy
+   * @param allocator	for allocating the columns of the chunk
+   * @param tracks	the track column
+   * @param times	the time column
+   * @param lats	the latitude column
+   * @param lons	the longitude column
+   * @param dists	the distance column
+   * @param elevs	the elevation column
+   * @param elapsed	the elapsed time column
+   * @throws IOException	if allocating fails
+   */
+  protected static void copy(TraceChunk chunk, Allocator allocator, ChunkedStringColumn tracks, ChunkedStringColumn times, ChunkedDoubleColumn lats, ChunkedDoubleColumn lons, ChunkedDoubleColumn dists, ChunkedDoubleColumn elevs, ChunkedDoubleColumn elapsed) throws IOException {
+    int		maxTrack;
+    int		size;
+
+    size     = chunk.size();
+    maxTrack = Allocator.utf8Length(chunk.carriedTrack);
+    for (String name: chunk.trackNames)
+      maxTrack = Math.max(maxTrack, Allocator.utf8Length(name));
+    copy(
+      chunk,
+      allocator.strings(size, maxTrack),
+      allocator.strings(size, chunk.maxTime),
+      allocator.doubles(size),
+      allocator.doubles(size),
+      allocator.doubles(size),
+      allocator.doubles(size),
+      allocator.doubles(size),
+      tracks, times, lats, lons, dists, elevs, elapsed);
+  }
+
+  /**
+   * Copies the stitched chunk into the columns of the chunk, which then get
+   * appended to the profile columns. The chunk gets cleared afterwards.
+   *
+   * @param chunk	the chunk to copy
+   * @param tracks	the track column of the chunk
+   * @param times	the time column of the chunk
+   * @param lats	the latitude column of the chunk
+   * @param lons	the longitude column of the chunk
+   * @param dists	the distance column of the chunk
+   * @param elevs	the elevation column of the chunk
+   * @param elapsed	the elapsed time column of the chunk
+   * @param allTracks	the track column
+   * @param allTimes	the time column
+   * @param allLats	the latitude column
+   * @param allLons	the longitude column
+   * @param allDists	the distance column
+   * @param allElevs	the elevation column
+   * @param allElapsed	the elapsed time column
+   * @throws IOException	never
+   */
+  protected static void copy(TraceChunk chunk, final StringColumn tracks, final StringColumn times, final DoubleColumn lats, final DoubleColumn lons, final DoubleColumn dists, final DoubleColumn elevs, final DoubleColumn elapsed,
+			     ChunkedStringColumn allTracks, ChunkedStringColumn allTimes, ChunkedDoubleColumn allLats, ChunkedDoubleColumn allLons, ChunkedDoubleColumn allDists, ChunkedDoubleColumn allElevs, ChunkedDoubleColumn allElapsed) throws IOException {
+    chunk.emit(new PointHandler() {
+      int row = 0;
+      @Override
+      public void point(String track, String time, double secs, double lat, double lon, double distance, double elevation) {
+	tracks.set(row, track);
+	times.set(row, time);
+	elapsed.set(row, secs);
+	lats.set(row, lat);
+	lons.set(row, lon);
+	dists.set(row, distance);
+	elevs.set(row, elevation);
+	row++;
+      }
+    });
+    chunk.clear();
+    allTracks.add(tracks);
+    allTimes.add(times);
+    allLats.add(lats);
+    allLons.add(lons);
+    allDists.add(dists);
+    allElevs.add(elevs);
+    allElapsed.add(elapsed);
+  }
+
+  /**
+   * Waits for the task to finish.
+   *
+   * @param future	the task
+   * @param input	the file being read, for error messages
+   * @return		the result
+   * @throws IOException	if the task failed or got interrupted
+   */
+  protected static <T> T await(Future<T> future, File input) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading: " + input);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+	throw (IOException) e.getCause();
+      throw new IOException("Failed to parse: " + input, e.getCause());
+    }
+  }
+
+  /**
+   * Reads the file and generates the profile, keeping the columns on the
+   * heap and failing on malformed trackpoints.
+   *
+   * @param input	the file to read
+   * @param format	the input format class, see {@link #supports(Class)}
+   * @return		the profile
+   * @throws IOException	if reading or parsing fails
+   */
+  public Profile read(File input, Class format) throws IOException {
+    return read(input, format, Storage.DEFAULT.newAllocator(), ErrorPolicy.FAIL);
+  }
+
+  /**
+   * Reads the file and generates the profile.
+   *
+   * @param input	the file to read
+   * @param format	the input format class, see {@link #supports(Class)}
+   * @param allocator	for allocating the profile columns
+   * @param policy	how to handle malformed trackpoints
+   * @return		the profile
+   * @throws IOException	if reading, parsing or allocating fails, or a trackpoint is malformed and the policy is to fail
+   */
+  public Profile read(File input, Class format, Allocator allocator, ErrorPolicy policy) throws IOException {
+    return read(input, format, allocator, policy, Cancellation.NONE);
+  }
+
+  /**
+   * Reads the file and generates the profile.
+   *
+   * @param input		the file to read
+   * @param format		the input format class, see {@link #supports(Class)}
+   * @param allocator		for allocating the profile columns
+   * @param policy		how to handle malformed trackpoints
+   * @param cancellation	for stopping early
+   * @return			the profile
+   * @throws IOException	if reading, parsing or allocating fails, a trackpoint is malformed and the policy is to fail, or reading got stopped
+   */
+  public Profile read(File input, Class format, Allocator allocator, final ErrorPolicy policy, final Cancellation cancellation) throws IOException {
+    final TraceChunk.Dialect	dialect;
+    final FileChannel		channel;
+    ExecutorService		executor;
+    List<Long>			boundaries;
+    List<Future<TraceChunk>>	parsing;
+    Stitcher			stitcher;
+    TraceChunk			chunk;
+    ChunkedStringColumn		tracks;
+    ChunkedStringColumn		times;
+    ChunkedDoubleColumn		lats;
+    ChunkedDoubleColumn		lons;
+    ChunkedDoubleColumn		dists;
+    ChunkedDoubleColumn		elevs;
+    ChunkedDoubleColumn		elapsed;
+    TIntArrayList		interpolate;
+    int				rejected;
+    int				ahead;
+    int				i;
+    int				next;
+    int				n;
+
+    dialect = dialect(format);
+    if (dialect == null)
+      throw new IllegalArgumentException("Format not supported: " + format.getName());
+
+    tracks      = new ChunkedStringColumn();
+    times       = new ChunkedStringColumn();
+    lats        = new ChunkedDoubleColumn();
+    lons        = new ChunkedDoubleColumn();
+    dists       = new ChunkedDoubleColumn();
+    elevs       = new ChunkedDoubleColumn();
+    elapsed     = new ChunkedDoubleColumn();
+    interpolate = new TIntArrayList();
+    rejected    = 0;
+    stitcher    = new Stitcher();
+    ahead       = m_Threads * AHEAD_PER_THREAD;
+    parsing     = new ArrayList<>();
+    channel     = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+    executor    = (m_Executor == null) ? Executors.newFixedThreadPool(m_Threads) : m_Executor;
+    try {
+      boundaries = boundaries(channel, dialect);
+      for (i = 0; i < boundaries.size() - 1; i = next) {
+	// keep parsing the following chunks, but only a few ahead
+	while ((parsing.size() < boundaries.size() - 1) && (parsing.size() <= i + ahead)) {
+	  final long start = boundaries.get(parsing.size());
+	  final long end   = boundaries.get(parsing.size() + 1);
+	  parsing.add(executor.submit(() -> TraceChunk.parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), dialect, policy, cancellation)));
+	}
+	chunk = await(parsing.get(i), input);
+	parsing.set(i, null);
+	next = i + 1;
+	// split within a comment or CDATA section, parse again together with the following chunk
+	while ((chunk.open != TraceChunk.OPEN_NONE) && (next < boundaries.size() - 1)) {
+	  if (parsing.size() == next)
+	    parsing.add(null);
+	  else if (parsing.get(next) != null)
+	    parsing.set(next, null).cancel(true);
+	  next++;
+	  if (boundaries.get(next) - boundaries.get(i) > Integer.MAX_VALUE)
+	    throw new IOException("Comment or CDATA section spanning more than " + Integer.MAX_VALUE + " bytes, cannot split file!");
+	  chunk = TraceChunk.parse(channel.map(FileChannel.MapMode.READ_ONLY, boundaries.get(i), boundaries.get(next) - boundaries.get(i)), dialect, policy, cancellation);
+	}
+	cancellation.check();
+	if (chunk.error != null)
+	  throw new IOException(chunk.error + " in: " + input);
+
+	stitcher.stitch(chunk);
+	rejected += chunk.rejected;
+	for (n = 0; n < chunk.interpolate.size(); n++)
+	  interpolate.add(chunk.offset + chunk.interpolate.get(n));
+	copy(chunk, allocator, tracks, times, lats, lons, dists, elevs, elapsed);
+      }
+
+      if (!interpolate.isEmpty())
+	Profile.interpolateElevations(tracks, dists, elevs, stitcher.points, interpolate.toArray());
+    }
+    finally {
+      for (Future<TraceChunk> future: parsing) {
+	if (future != null)
+	  future.cancel(true);
+      }
+      if (m_Executor == null)
+	executor.shutdownNow();
+      channel.close();
+    }
+
+    return new Profile(tracks, times, lats, lons, dists, elevs, elapsed, stitcher.points, rejected);
+  }
+}
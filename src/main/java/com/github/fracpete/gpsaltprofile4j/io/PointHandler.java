@@ -0,0 +1,45 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PointHandler.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import java.io.IOException;
+
+/**
+ * Receives the points of a profile one by one, in order.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public interface PointHandler {
+
+  /**
+   * Processes the point.
+   *
+   * @param track	the track
+   * @param time	the time, can be null
+   * @param elapsed	the seconds since the first point of the track with a time, NaN if no time
+   * @param lat		the latitude
+   * @param lon		the longitude
+   * @param distance	the cumulative distance within the track
+   * @param elevation	the elevation, NaN if missing
+   * @throws IOException	if processing fails
+   */
+  public void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation) throws IOException;
+}
@@ -0,0 +1,117 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Stitcher.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.grum.geocalc.Coordinate;
+import com.grum.geocalc.EarthCalc;
+import com.grum.geocalc.Point;
+
+/**
+ * Stitches consecutive chunks together, determining their offsets,
+ * cumulative distances, start times and carried over tracks, which depend
+ * on the preceding chunks. Distances get summed up point by point, in the
+ * same order as a sequential pass, so they are exactly the same. A first
+ * track with the same name as the current one continues it.
+ * Chunks must be stitched in order.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+class Stitcher {
+
+  /** the number of points stitched so far. */
+  int points;
+
+  /** the current track. */
+  String track;
+
+  /** whether the current track has a last point. */
+  boolean hasLast;
+
+  /** the distance of the last point. */
+  double lastDist;
+
+  /** the last point. */
+  Point last;
+
+  /** the start time (seconds) of the current track, NaN if none yet. */
+  double start;
+
+  /**
+   * Initializes the stitcher.
+   */
+  Stitcher() {
+    points   = 0;
+    track    = "";
+    hasLast  = false;
+    lastDist = 0.0;
+    last     = null;
+    start    = Double.NaN;
+  }
+
+  /**
+   * Stitches the next chunk.
+   *
+   * @param chunk	the chunk to stitch
+   */
+  void stitch(TraceChunk chunk) {
+    Point	first;
+    int		size;
+    int		from;
+    int		i;
+
+    if (!chunk.trackStarts.isEmpty() && chunk.trackNames.get(0).equals(track)) {
+      chunk.continueTrack(0);
+      chunk.trackStarts.removeAt(0);
+      chunk.trackNames.remove(0);
+    }
+
+    chunk.offset = points;
+    size         = chunk.size();
+    points      += size;
+
+    if (chunk.carriedOver() > 0) {
+      chunk.carriedTrack = track;
+      chunk.carriedStart = start;
+      if (hasLast) {
+	first = Point.at(Coordinate.fromDegrees(chunk.lats.get(0)), Coordinate.fromDegrees(chunk.lons.get(0)));
+	chunk.dists.set(0, EarthCalc.gcdDistance(last, first));
+      }
+    }
+    chunk.accumulate(hasLast ? lastDist : 0.0);
+
+    from = 0;
+    if (!chunk.trackStarts.isEmpty()) {
+      from    = chunk.trackStarts.get(chunk.trackStarts.size() - 1);
+      start   = Double.NaN;
+      track   = chunk.trackNames.get(chunk.trackNames.size() - 1);
+      hasLast = (chunk.trackStarts.get(chunk.trackStarts.size() - 1) < size);
+    }
+    else if (size > 0) {
+      hasLast = true;
+    }
+    if (hasLast && (size > 0)) {
+      lastDist = chunk.dists.get(size - 1);
+      last     = Point.at(Coordinate.fromDegrees(chunk.lats.get(size - 1)), Coordinate.fromDegrees(chunk.lons.get(size - 1)));
+    }
+    for (i = from; (i < size) && Double.isNaN(start); i++)
+      start = chunk.seconds.get(i);
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TimeParser.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+/**
+ * Validating parser for ISO-8601 timestamps as used by GPX and TCX, that
+ * signals malformed input with NaN rather than with an exception and does
+ * not allocate any objects. Accepts "yyyy-MM-ddTHH:mm:ss" with optional
+ * fraction of seconds and an optional zone ("Z", "+HH:mm", "+HHmm" or
+ * "+HH"), surrounded by whitespace. Timestamps without zone are taken as
+ * UTC.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class TimeParser {
+
+  /** the number of days per month (non-leap year). */
+  protected static final int[] DAYS = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+  /**
+   * Parses the fixed number of digits.
+   *
+   * @param s		the string to parse
+   * @param start	the position of the first digit
+   * @param count	the number of digits
+   * @return		the number, -1 if not all digits
+   */
+  protected static int digits(CharSequence s, int start, int count) {
+    int		result;
+    int		i;
+    char	c;
+
+    result = 0;
+    for (i = start; i < start + count; i++) {
+      c = s.charAt(i);
+      if ((c < '0') || (c > '9'))
+	return -1;
+      result = result * 10 + (c - '0');
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of days since 1970-01-01 for the date of the
+   * proleptic Gregorian calendar.
+   *
+   * @param year	the year
+   * @param month	the month (1-12)
+   * @param day		the day of the month (1-31)
+   * @return		the number of days
+   */
+  protected static long epochDay(int year, int month, int day) {
+    long	era;
+    long	yoe;
+    long	doy;
+    long	doe;
+
+    // shift the year to start in March, so the leap day comes last
+    if (month <= 2)
+      year--;
+    era = (year >= 0 ? year : year - 399) / 400;
+    yoe = year - era * 400;
+    doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+
+    return era * 146097 + doe - 719468;
+  }
+
+  /**
+   * Checks whether the year is a leap year.
+   *
+   * @param year	the year to check
+   * @return		true if leap year
+   */
+  protected static boolean isLeapYear(int year) {
+    return ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+  }
+
+  /**
+   * Parses the timestamp.
+   *
+   * @param s		the string to parse, can be null
+   * @return		the seconds since 1970-01-01T00:00:00Z, NaN if blank or malformed
+   */
+  public static double parse(CharSequence s) {
+    int		start;
+    int		end;
+    int		i;
+    int		year;
+    int		month;
+    int		day;
+    int		hour;
+    int		minute;
+    int		second;
+    int		offHour;
+    int		offMinute;
+    int		offset;
+    double	fraction;
+    double	scale;
+    char	c;
+
+    if (s == null)
+      return Double.NaN;
+
+    start = 0;
+    end   = s.length();
+    while ((start < end) && (s.charAt(start) <= ' '))
+      start++;
+    while ((end > start) && (s.charAt(end - 1) <= ' '))
+      end--;
+    // yyyy-MM-ddTHH:mm:ss
+    if (end - start < 19)
+      return Double.NaN;
+
+    i      = start;
+    year   = digits(s, i, 4);
+    month  = digits(s, i + 5, 2);
+    day    = digits(s, i + 8, 2);
+    hour   = digits(s, i + 11, 2);
+    minute = digits(s, i + 14, 2);
+    second = digits(s, i + 17, 2);
+    if ((s.charAt(i + 4) != '-') || (s.charAt(i + 7) != '-') || ((s.charAt(i + 10) != 'T') && (s.charAt(i + 10) != 't') && (s.charAt(i + 10) != ' '))
+      || (s.charAt(i + 13) != ':') || (s.charAt(i + 16) != ':'))
+      return Double.NaN;
+    if ((year < 0) || (month < 1) || (month > 12) || (day < 1) || (hour < 0) || (hour > 23) || (minute < 0) || (minute > 59) || (second < 0) || (second > 60))
+      return Double.NaN;
+    if (day > DAYS[month - 1] + (((month == 2) && isLeapYear(year)) ? 1 : 0))
+      return Double.NaN;
+    i += 19;
+
+    fraction = 0.0;
+    if ((i < end) && ((s.charAt(i) == '.') || (s.charAt(i) == ','))) {
+      i++;
+      if ((i == end) || (digits(s, i, 1) == -1))
+	return Double.NaN;
+      scale = 0.1;
+      while ((i < end) && ((c = s.charAt(i)) >= '0') && (c <= '9')) {
+	fraction += (c - '0') * scale;
+	scale    /= 10;
+	i++;
+      }
+    }
+
+    offset = 0;
+    if (i < end) {
+      c = s.charAt(i);
+      if (((c == 'Z') || (c == 'z')) && (i + 1 == end)) {
+	i++;
+      }
+      else if ((c == '+') || (c == '-')) {
+	offMinute = 0;
+	if (end - i == 3) {
+	  offHour = digits(s, i + 1, 2);
+	}
+	else if (end - i == 5) {
+	  offHour   = digits(s, i + 1, 2);
+	  offMinute = digits(s, i + 3, 2);
+	}
+	else if ((end - i == 6) && (s.charAt(i + 3) == ':')) {
+	  offHour   = digits(s, i + 1, 2);
+	  offMinute = digits(s, i + 4, 2);
+	}
+	else {
+	  return Double.NaN;
+	}
+	if ((offHour < 0) || (offHour > 18) || (offMinute < 0) || (offMinute > 59))
+	  return Double.NaN;
+	offset = (offHour * 60 + offMinute) * 60;
+	if (c == '-')
+	  offset = -offset;
+	i = end;
+      }
+    }
+    if (i != end)
+      return Double.NaN;
+
+    return epochDay(year, month, day) * 86400.0 + hour * 3600 + minute * 60 + second - offset + fraction;
+  }
+}
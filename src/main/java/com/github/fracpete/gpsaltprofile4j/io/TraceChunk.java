@@ -0,0 +1,824 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TraceChunk.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.storage.Allocator;
+import com.grum.geocalc.Coordinate;
+import com.grum.geocalc.EarthCalc;
+import com.grum.geocalc.Point;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the trackpoints of a chunk of a GPX or TCX file. Distances are
+ * parsed as the lengths of the segments from the previous point of the
+ * track (0 for the first point of the chunk or track) and get accumulated
+ * in order when stitching, summing up exactly like a sequential pass.
+ * Times get parsed into seconds, elapsed times are determined when
+ * emitting, once the start of the track is known. Points before the first
+ * track start belong to the track carried over from the previous chunk.
+ * Unnamed tracks have an empty name and consecutive tracks with the same
+ * name form a single track, like for records read via gpsformats4j.
+ * Malformed numbers and trackpoints without location get handled
+ * according to the {@link ErrorPolicy}. Comments and CDATA sections get
+ * skipped.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+class TraceChunk {
+
+  /**
+   * The tag names of a trace format.
+   */
+  static class Dialect {
+
+    /** the tag of a track, starting a new distance. */
+    final byte[] track;
+
+    /** the tag with the name of a track. */
+    final byte[] trackName;
+
+    /** the tag of a trackpoint. */
+    final byte[] point;
+
+    /** the latitude attribute/tag. */
+    final byte[] lat;
+
+    /** the longitude attribute/tag. */
+    final byte[] lon;
+
+    /** whether latitude/longitude are attributes of the trackpoint. */
+    final boolean attributes;
+
+    /** the elevation tag. */
+    final byte[] elevation;
+
+    /** the time tag. */
+    final byte[] time;
+
+    /**
+     * Initializes the dialect.
+     *
+     * @param track		the track tag
+     * @param trackName		the track name tag
+     * @param point		the trackpoint tag
+     * @param lat		the latitude attribute/tag
+     * @param lon		the longitude attribute/tag
+     * @param attributes	whether latitude/longitude are attributes
+     * @param elevation		the elevation tag
+     * @param time		the time tag
+     */
+    Dialect(String track, String trackName, String point, String lat, String lon, boolean attributes, String elevation, String time) {
+      this.track      = track.getBytes(StandardCharsets.US_ASCII);
+      this.trackName  = trackName.getBytes(StandardCharsets.US_ASCII);
+      this.point      = point.getBytes(StandardCharsets.US_ASCII);
+      this.lat        = lat.getBytes(StandardCharsets.US_ASCII);
+      this.lon        = lon.getBytes(StandardCharsets.US_ASCII);
+      this.attributes = attributes;
+      this.elevation  = elevation.getBytes(StandardCharsets.US_ASCII);
+      this.time       = time.getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  /** GPX: trk/trkseg/trkpt. */
+  static final Dialect GPX = new Dialect("trk", "name", "trkpt", "lat", "lon", true, "ele", "time");
+
+  /** TCX: Activity/Lap/Track/Trackpoint. */
+  static final Dialect TCX = new Dialect("Activity", "Id", "Trackpoint", "LatitudeDegrees", "LongitudeDegrees", false, "AltitudeMeters", "Time");
+
+  /** not within a comment or CDATA section. */
+  static final int OPEN_NONE = 0;
+
+  /** within a comment. */
+  static final int OPEN_COMMENT = 1;
+
+  /** within a CDATA section. */
+  static final int OPEN_CDATA = 2;
+
+  /** the start of a comment. */
+  static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.US_ASCII);
+
+  /** the end of a comment. */
+  static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.US_ASCII);
+
+  /** the start of a CDATA section. */
+  static final byte[] CDATA_START = "<![CDATA[".getBytes(StandardCharsets.US_ASCII);
+
+  /** the end of a CDATA section. */
+  static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.US_ASCII);
+
+  /** the times. */
+  final List<String> times;
+
+  /** the times in seconds since 1970, NaN if missing. */
+  final TDoubleArrayList seconds;
+
+  /** the latitudes. */
+  final TDoubleArrayList lats;
+
+  /** the longitudes. */
+  final TDoubleArrayList lons;
+
+  /** the distances to the previous point of the track, cumulative once stitched. */
+  final TDoubleArrayList dists;
+
+  /** the elevations. */
+  final TDoubleArrayList elevs;
+
+  /** the point index at which a new track starts. */
+  final TIntArrayList trackStarts;
+
+  /** the names of the tracks, empty if unnamed. */
+  final List<String> trackNames;
+
+  /** the position of the first row in the final profile. */
+  int offset;
+
+  /** the track of the points carried over from the previous chunk. */
+  String carriedTrack;
+
+  /** the start time (seconds) of the track carried over from the previous chunk, NaN if none yet. */
+  double carriedStart;
+
+  /** the maximum number of UTF-8 bytes of the times. */
+  int maxTime;
+
+  /** the number of rejected trackpoints. */
+  int rejected;
+
+  /** the points with malformed elevation to interpolate. */
+  final TIntArrayList interpolate;
+
+  /** the error if the policy is to fail, null if none. */
+  String error;
+
+  /** whether the chunk ends within a comment or CDATA section, see {@link #OPEN_NONE}. */
+  int open;
+
+  /** the position of the last trackpoint start tag (outside comments and CDATA sections). */
+  int lastPoint;
+
+  /**
+   * Initializes the chunk.
+   *
+   * @param capacity	the expected number of points
+   */
+  TraceChunk(int capacity) {
+    times       = new ArrayList<>(capacity);
+    seconds     = new TDoubleArrayList(capacity);
+    lats        = new TDoubleArrayList(capacity);
+    lons        = new TDoubleArrayList(capacity);
+    dists       = new TDoubleArrayList(capacity);
+    elevs       = new TDoubleArrayList(capacity);
+    trackStarts = new TIntArrayList();
+    trackNames  = new ArrayList<>();
+    interpolate = new TIntArrayList();
+    carriedStart = Double.NaN;
+  }
+
+  /**
+   * Returns the number of points.
+   *
+   * @return		the number of points
+   */
+  int size() {
+    return lats.size();
+  }
+
+  /**
+   * Returns the number of points before the first track start.
+   *
+   * @return		the number of points
+   */
+  int carriedOver() {
+    return trackStarts.isEmpty() ? size() : trackStarts.get(0);
+  }
+
+  /**
+   * Removes all points, once copied.
+   */
+  void clear() {
+    times.clear();
+    seconds.clear(0);
+    lats.clear(0);
+    lons.clear(0);
+    dists.clear(0);
+    elevs.clear(0);
+  }
+
+  /**
+   * Passes the points of the stitched chunk on to the handler, with track
+   * names and distances adjusted and elapsed times determined.
+   *
+   * @param handler	the handler to pass the points to
+   * @throws IOException	if the handler fails
+   */
+  void emit(PointHandler handler) throws IOException {
+    int		carried;
+    int		next;
+    int		track;
+    String	name;
+    double	start;
+    int		i;
+
+    carried = carriedOver();
+    track   = -1;
+    next    = carried;
+    name    = carriedTrack;
+    start   = carriedStart;
+    for (i = 0; i < size(); i++) {
+      while (i == next) {
+	track++;
+	name  = trackNames.get(track);
+	next  = (track + 1 < trackStarts.size()) ? trackStarts.get(track + 1) : Integer.MAX_VALUE;
+	start = Double.NaN;
+      }
+      if (Double.isNaN(start))
+	start = seconds.get(i);
+      handler.point(
+	name,
+	times.get(i),
+	seconds.get(i) - start,
+	lats.get(i),
+	lons.get(i),
+	dists.get(i),
+	elevs.get(i));
+    }
+  }
+
+  /**
+   * Continues the track from the last point of the preceding track (or the
+   * carried over points), by setting the length of the segment in between.
+   *
+   * @param track	the index of the track start
+   */
+  void continueTrack(int track) {
+    int		prev;
+    int		from;
+    int		to;
+
+    prev = (track > 0) ? trackStarts.get(track - 1) : 0;
+    from = trackStarts.get(track);
+    to   = (track + 1 < trackStarts.size()) ? trackStarts.get(track + 1) : size();
+    if ((from == prev) || (from == to))
+      return;
+    dists.set(from, EarthCalc.gcdDistance(
+      Point.at(Coordinate.fromDegrees(lats.get(from - 1)), Coordinate.fromDegrees(lons.get(from - 1))),
+      Point.at(Coordinate.fromDegrees(lats.get(from)), Coordinate.fromDegrees(lons.get(from)))));
+  }
+
+  /**
+   * Turns the segment lengths into cumulative distances, in the same order
+   * as a sequential pass, restarting at each track start.
+   *
+   * @param last	the distance of the last point of the carried over track
+   */
+  void accumulate(double last) {
+    double	total;
+    int		track;
+    int		next;
+    int		i;
+
+    total = last;
+    track = 0;
+    next  = trackStarts.isEmpty() ? Integer.MAX_VALUE : trackStarts.get(0);
+    for (i = 0; i < size(); i++) {
+      if (i == next) {
+	total = 0.0;
+	while ((track < trackStarts.size()) && (trackStarts.get(track) == i))
+	  track++;
+	next = (track < trackStarts.size()) ? trackStarts.get(track) : Integer.MAX_VALUE;
+      }
+      else {
+	total += dists.get(i);
+      }
+      dists.set(i, total);
+    }
+  }
+
+  /**
+   * Merges tracks with the same name as the preceding track into it.
+   */
+  void merge() {
+    int		i;
+
+    i = 1;
+    while (i < trackStarts.size()) {
+      if (trackNames.get(i).equals(trackNames.get(i - 1))) {
+	continueTrack(i);
+	trackStarts.removeAt(i);
+	trackNames.remove(i);
+      }
+      else {
+	i++;
+      }
+    }
+  }
+
+  /**
+   * Checks whether the byte is a tag name delimiter.
+   *
+   * @param b		the byte to check
+   * @return		true if delimiter
+   */
+  static boolean isDelimiter(byte b) {
+    return (b == '>') || (b == '/') || (b == ' ') || (b == '\t') || (b == '\r') || (b == '\n');
+  }
+
+  /**
+   * Finds the next occurrence of the byte.
+   *
+   * @param buf		the buffer to search
+   * @param b		the byte to look for
+   * @param from	the start position
+   * @param to		the end position (excl)
+   * @return		the position, -1 if not found
+   */
+  static int indexOf(ByteBuffer buf, byte b, int from, int to) {
+    int		i;
+
+    for (i = from; i < to; i++) {
+      if (buf.get(i) == b)
+	return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Checks whether the bytes at the position start with the sequence.
+   *
+   * @param buf		the buffer
+   * @param pos		the position
+   * @param to		the end of the data (excl)
+   * @param seq		the sequence to match
+   * @return		true if a match
+   */
+  static boolean startsWith(ByteBuffer buf, int pos, int to, byte[] seq) {
+    return (pos + seq.length <= to) && matches(buf, pos, pos + seq.length, seq);
+  }
+
+  /**
+   * Finds the next occurrence of the sequence.
+   *
+   * @param buf		the buffer to search
+   * @param seq		the sequence to look for
+   * @param from	the start position
+   * @param to		the end position (excl)
+   * @return		the position, -1 if not found
+   */
+  static int indexOf(ByteBuffer buf, byte[] seq, int from, int to) {
+    int		i;
+
+    for (i = indexOf(buf, seq[0], from, to); (i > -1) && (i + seq.length <= to); i = indexOf(buf, seq[0], i + 1, to)) {
+      if (matches(buf, i, i + seq.length, seq))
+	return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the position after the end of the comment or CDATA section.
+   *
+   * @param buf		the buffer
+   * @param from	the position within the comment or CDATA section
+   * @param to		the end of the data (excl)
+   * @param open	what is open, {@link #OPEN_COMMENT} or {@link #OPEN_CDATA}
+   * @return		the position after the end, -1 if it does not end within the data
+   */
+  static int skip(ByteBuffer buf, int from, int to, int open) {
+    byte[]	end;
+    int		pos;
+
+    end = (open == OPEN_COMMENT) ? COMMENT_END : CDATA_END;
+    pos = indexOf(buf, end, from, to);
+
+    return (pos == -1) ? -1 : pos + end.length;
+  }
+
+  /**
+   * Checks whether the bytes match the name.
+   *
+   * @param buf		the buffer
+   * @param from	the start of the bytes
+   * @param to		the end of the bytes (excl)
+   * @param name	the name to match
+   * @return		true if a match
+   */
+  static boolean matches(ByteBuffer buf, int from, int to, byte[] name) {
+    int		i;
+
+    if (to - from != name.length)
+      return false;
+    for (i = 0; i < name.length; i++) {
+      if (buf.get(from + i) != name[i])
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks whether a start tag with the name begins at the position,
+   * ignoring any namespace prefix.
+   *
+   * @param buf		the buffer
+   * @param pos		the position of the '&lt;'
+   * @param to		the end of the data (excl)
+   * @param name	the tag name to match
+   * @return		true if a match
+   */
+  static boolean isStartTag(ByteBuffer buf, int pos, int to, byte[] name) {
+    int		start;
+    int		i;
+
+    if (buf.get(pos) != '<')
+      return false;
+    start = pos + 1;
+    for (i = start; (i < to) && !isDelimiter(buf.get(i)); i++) {
+      if (buf.get(i) == ':')
+	start = i + 1;
+    }
+
+    return (start + name.length < to) && matches(buf, start, start + name.length, name) && isDelimiter(buf.get(start + name.length));
+  }
+
+  /**
+   * Replaces the predefined XML entities and character references.
+   * Unknown entities are kept as is.
+   *
+   * @param s		the text to unescape
+   * @return		the unescaped text
+   */
+  static String unescape(String s) {
+    StringBuilder	result;
+    String		entity;
+    int			pos;
+    int			end;
+    int			code;
+
+    pos = s.indexOf('&');
+    if (pos == -1)
+      return s;
+
+    result = new StringBuilder(s.length());
+    result.append(s, 0, pos);
+    while (pos < s.length()) {
+      end = (s.charAt(pos) == '&') ? s.indexOf(';', pos) : -1;
+      if (end == -1) {
+	result.append(s.charAt(pos++));
+	continue;
+      }
+      entity = s.substring(pos + 1, end);
+      code   = -1;
+      switch (entity) {
+	case "amp":
+	  code = '&';
+	  break;
+	case "lt":
+	  code = '<';
+	  break;
+	case "gt":
+	  code = '>';
+	  break;
+	case "quot":
+	  code = '"';
+	  break;
+	case "apos":
+	  code = '\'';
+	  break;
+	default:
+	  try {
+	    if (entity.startsWith("#x") || entity.startsWith("#X"))
+	      code = Integer.parseInt(entity.substring(2), 16);
+	    else if (entity.startsWith("#"))
+	      code = Integer.parseInt(entity.substring(1));
+	  }
+	  catch (NumberFormatException e) {
+	    code = -1;
+	  }
+      }
+      if ((code < 0) || !Character.isValidCodePoint(code)) {
+	result.append('&');
+	pos++;
+      }
+      else {
+	result.appendCodePoint(code);
+	pos = end + 1;
+      }
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the trimmed text between the two positions, as is.
+   *
+   * @param buf		the buffer
+   * @param from	the start position
+   * @param to		the end position (excl)
+   * @return		the text
+   */
+  static String raw(ByteBuffer buf, int from, int to) {
+    byte[]	bytes;
+    int		i;
+
+    while ((from < to) && ((buf.get(from) & 0xFF) <= ' '))
+      from++;
+    while ((to > from) && ((buf.get(to - 1) & 0xFF) <= ' '))
+      to--;
+    bytes = new byte[to - from];
+    for (i = 0; i < bytes.length; i++)
+      bytes[i] = buf.get(from + i);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the trimmed and unescaped text between the two positions.
+   *
+   * @param buf		the buffer
+   * @param from	the start position
+   * @param to		the end position (excl)
+   * @return		the text
+   */
+  static String text(ByteBuffer buf, int from, int to) {
+    return unescape(raw(buf, from, to));
+  }
+
+  /**
+   * Returns the text content of the element, either up to the next tag or
+   * of a CDATA section.
+   *
+   * @param buf		the buffer
+   * @param from	the position after the start tag
+   * @param to		the end of the data (excl)
+   * @return		the text
+   */
+  static String content(ByteBuffer buf, int from, int to) {
+    int		pos;
+    int		end;
+
+    pos = from;
+    while ((pos < to) && ((buf.get(pos) & 0xFF) <= ' '))
+      pos++;
+    if (startsWith(buf, pos, to, CDATA_START)) {
+      end = indexOf(buf, CDATA_END, pos + CDATA_START.length, to);
+      if (end > -1)
+	return raw(buf, pos + CDATA_START.length, end);
+    }
+    end = indexOf(buf, (byte) '<', from, to);
+
+    return text(buf, from, (end == -1) ? to : end);
+  }
+
+  /**
+   * Returns the attribute value from the tag.
+   *
+   * @param buf		the buffer
+   * @param from	the start of the attributes
+   * @param to		the end of the attributes (excl)
+   * @param name	the attribute name
+   * @return		the trimmed value, null if not present
+   */
+  static String attribute(ByteBuffer buf, int from, int to, byte[] name) {
+    int		i;
+    int		end;
+    byte	quote;
+
+    for (i = from; i + name.length + 2 < to; i++) {
+      if (((buf.get(i) & 0xFF) > ' ') || !matches(buf, i + 1, i + 1 + name.length, name) || (buf.get(i + 1 + name.length) != '='))
+	continue;
+      quote = buf.get(i + name.length + 2);
+      if ((quote != '"') && (quote != '\''))
+	continue;
+      end = indexOf(buf, quote, i + name.length + 3, to);
+      if (end == -1)
+	return null;
+      return text(buf, i + name.length + 3, end);
+    }
+
+    return null;
+  }
+
+  /**
+   * Checks whether the value is present but not a number.
+   *
+   * @param s		the value, null if not present
+   * @param value	the parsed value
+   * @return		true if malformed
+   */
+  static boolean isMalformed(String s, double value) {
+    return Double.isNaN(value) && !NumberParser.isBlank(s);
+  }
+
+  /**
+   * Adds the point, if it has a location and is well-formed (depending on
+   * the policy). Points without location (eg TCX pauses) get rejected like
+   * points with malformed coordinates.
+   *
+   * @param time	the time
+   * @param latStr	the latitude, null if missing
+   * @param lonStr	the longitude, null if missing
+   * @param elevStr	the elevation, null if missing
+   * @param prev	the previous point in the same track, null if first
+   * @param policy	how to handle malformed numbers
+   * @return		the point, the previous one if not added
+   */
+  Point add(String time, String latStr, String lonStr, String elevStr, Point prev, ErrorPolicy policy) {
+    Point	result;
+    double	lat;
+    double	lon;
+    double	elev;
+    boolean	malformedLoc;
+    boolean	malformedElev;
+
+    lat           = NumberParser.parse(latStr);
+    lon           = NumberParser.parse(lonStr);
+    elev          = NumberParser.parse(elevStr);
+    malformedLoc  = Double.isNaN(lat) || Double.isNaN(lon);
+    malformedElev = isMalformed(elevStr, elev);
+    if (malformedLoc || malformedElev) {
+      rejected++;
+      if (policy == ErrorPolicy.FAIL) {
+	error = "Malformed trackpoint (time=" + time + ", lat=" + latStr + ", lon=" + lonStr + ", elevation=" + elevStr + ")";
+	return prev;
+      }
+      if (malformedLoc || (policy == ErrorPolicy.SKIP))
+	return prev;
+    }
+
+    result = Point.at(Coordinate.fromDegrees(lat), Coordinate.fromDegrees(lon));
+    times.add(time);
+    seconds.add(TimeParser.parse(time));
+    maxTime = Math.max(maxTime, Allocator.utf8Length(time));
+    lats.add(lat);
+    lons.add(lon);
+    elevs.add(elev);
+    dists.add((prev == null) ? 0.0 : EarthCalc.gcdDistance(prev, result));
+    if (malformedElev)
+      interpolate.add(size() - 1);
+
+    return result;
+  }
+
+  /**
+   * Parses the chunk. If the chunk ends within a comment or CDATA section
+   * (see {@link #open}), it was not split at a trackpoint and needs parsing
+   * again together with the following data.
+   *
+   * @param buf		the chunk data
+   * @param dialect	the tag names to use
+   * @param policy	how to handle malformed numbers
+   * @param cancellation	for stopping early, the chunk is then incomplete
+   * @return		the parsed chunk, with the error set if failed
+   */
+  static TraceChunk parse(ByteBuffer buf, Dialect dialect, ErrorPolicy policy, Cancellation cancellation) {
+    TraceChunk	result;
+    int		len;
+    int		pos;
+    int		start;
+    int		end;
+    int		gt;
+    int		open;
+    boolean	closing;
+    boolean	inPoint;
+    boolean	pendingName;
+    Point	prev;
+    String	time;
+    String	lat;
+    String	lon;
+    String	elev;
+    int		tags;
+    int		i;
+
+    len         = buf.limit();
+    result      = new TraceChunk(len / 200);
+    pos         = 0;
+    tags        = 0;
+    open        = OPEN_NONE;
+    inPoint     = false;
+    pendingName = false;
+    prev        = null;
+    time        = null;
+    lat         = null;
+    lon         = null;
+    elev        = null;
+    while ((pos < len) && (result.error == null)) {
+      if ((++tags % Cancellation.INTERVAL == 0) && cancellation.isStopped())
+	break;
+      if (open != OPEN_NONE) {
+	pos = skip(buf, pos, len, open);
+	if (pos == -1)
+	  break;
+	open = OPEN_NONE;
+      }
+      pos = indexOf(buf, (byte) '<', pos, len);
+      if ((pos == -1) || (pos + 1 >= len))
+	break;
+      start = pos + 1;
+      if (startsWith(buf, pos, len, COMMENT_START)) {
+	open = OPEN_COMMENT;
+	pos += COMMENT_START.length;
+	continue;
+      }
+      if (startsWith(buf, pos, len, CDATA_START)) {
+	open = OPEN_CDATA;
+	pos += CDATA_START.length;
+	continue;
+      }
+      if ((buf.get(start) == '?') || (buf.get(start) == '!')) {
+	pos = start;
+	continue;
+      }
+      closing = (buf.get(start) == '/');
+      if (closing)
+	start++;
+      end = start;
+      while ((end < len) && !isDelimiter(buf.get(end)))
+	end++;
+      // ignore namespace prefix
+      for (i = start; i < end; i++) {
+	if (buf.get(i) == ':')
+	  start = i + 1;
+      }
+      gt = indexOf(buf, (byte) '>', end, len);
+      if (gt == -1)
+	break;
+
+      if (matches(buf, start, end, dialect.point)) {
+	if (!closing) {
+	  result.lastPoint = pos;
+	  inPoint     = true;
+	  pendingName = false;
+	  time    = null;
+	  elev    = null;
+	  if (dialect.attributes) {
+	    lat = attribute(buf, end, gt, dialect.lat);
+	    lon = attribute(buf, end, gt, dialect.lon);
+	  }
+	  else {
+	    lat = null;
+	    lon = null;
+	  }
+	}
+	if (closing || (buf.get(gt - 1) == '/')) {
+	  prev    = result.add(time, lat, lon, elev, prev, policy);
+	  inPoint = false;
+	}
+      }
+      else if (!closing && inPoint) {
+	if (matches(buf, start, end, dialect.elevation))
+	  elev = content(buf, gt + 1, len);
+	else if (matches(buf, start, end, dialect.time))
+	  time = content(buf, gt + 1, len);
+	else if (!dialect.attributes && matches(buf, start, end, dialect.lat))
+	  lat = content(buf, gt + 1, len);
+	else if (!dialect.attributes && matches(buf, start, end, dialect.lon))
+	  lon = content(buf, gt + 1, len);
+      }
+      else if (!closing && matches(buf, start, end, dialect.track)) {
+	result.trackStarts.add(result.size());
+	result.trackNames.add("");
+	pendingName = true;
+	prev        = null;
+      }
+      else if (!closing && pendingName && matches(buf, start, end, dialect.trackName)) {
+	result.trackNames.set(result.trackNames.size() - 1, content(buf, gt + 1, len));
+	pendingName = false;
+      }
+
+      pos = gt + 1;
+    }
+    result.open = open;
+    result.merge();
+
+    return result;
+  }
+}
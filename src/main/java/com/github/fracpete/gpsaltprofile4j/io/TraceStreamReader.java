@@ -0,0 +1,549 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TraceStreamReader.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.storage.Allocator;
+import com.github.fracpete.gpsaltprofile4j.storage.ChunkedDoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.ChunkedStringColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.DoubleColumn;
+import com.github.fracpete.gpsaltprofile4j.storage.StringColumn;
+import gnu.trove.list.array.TDoubleArrayList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads GPX and TCX from a stream, passing on the points as soon as they
+ * are complete, without buffering the whole input. The data read so far
+ * gets parsed up to the start of the last trackpoint, the remainder is
+ * kept until more data arrives. Malformed elevations that are to be
+ * interpolated get held back until the next point with an elevation in
+ * the same track arrives. Produces the same points as
+ * {@link ParallelTraceReader}.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class TraceStreamReader {
+
+  /** the initial size of the buffer in bytes. */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  /** the number of points to collect on the heap before allocating their columns. */
+  public static final int BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * A point that is held back.
+   */
+  protected static class Pending {
+
+    /** the track. */
+    final String track;
+
+    /** the time. */
+    final String time;
+
+    /** the elapsed time. */
+    final double elapsed;
+
+    /** the latitude. */
+    final double lat;
+
+    /** the longitude. */
+    final double lon;
+
+    /** the distance. */
+    final double distance;
+
+    /** whether the elevation is to be interpolated (otherwise missing). */
+    final boolean malformed;
+
+    /**
+     * Initializes the point.
+     *
+     * @param track	the track
+     * @param time	the time
+     * @param elapsed	the elapsed time
+     * @param lat	the latitude
+     * @param lon	the longitude
+     * @param distance	the distance
+     * @param malformed	whether to interpolate the elevation
+     */
+    Pending(String track, String time, double elapsed, double lat, double lon, double distance, boolean malformed) {
+      this.track     = track;
+      this.time      = time;
+      this.elapsed   = elapsed;
+      this.lat       = lat;
+      this.lon       = lon;
+      this.distance  = distance;
+      this.malformed = malformed;
+    }
+  }
+
+  /**
+   * Passes on the points, interpolating malformed elevations.
+   */
+  protected static class Interpolator {
+
+    /** the handler to pass the points on to. */
+    protected final PointHandler m_Handler;
+
+    /** the points held back. */
+    protected final List<Pending> m_Pending;
+
+    /** the track of the last point with elevation, null if none. */
+    protected String m_LastTrack;
+
+    /** the distance of the last point with elevation. */
+    protected double m_LastDistance;
+
+    /** the last elevation. */
+    protected double m_LastElevation;
+
+    /**
+     * Initializes the interpolator.
+     *
+     * @param handler	the handler to pass the points on to
+     */
+    protected Interpolator(PointHandler handler) {
+      m_Handler = handler;
+      m_Pending = new ArrayList<>();
+    }
+
+    /**
+     * Passes on the points held back.
+     *
+     * @param distance	the distance of the next point with elevation
+     * @param elevation	the next elevation, NaN to pass on malformed elevations as missing
+     * @throws IOException	if the handler fails
+     */
+    protected void flush(double distance, double elevation) throws IOException {
+      double	elev;
+      double	dist;
+
+      for (Pending p: m_Pending) {
+	elev = Double.NaN;
+	if (p.malformed && !Double.isNaN(elevation)) {
+	  dist = distance - m_LastDistance;
+	  if (dist <= 0)
+	    elev = m_LastElevation;
+	  else
+	    elev = m_LastElevation + (elevation - m_LastElevation) * (p.distance - m_LastDistance) / dist;
+	}
+	m_Handler.point(p.track, p.time, p.elapsed, p.lat, p.lon, p.distance, elev);
+      }
+      m_Pending.clear();
+    }
+
+    /**
+     * Processes the point.
+     *
+     * @param track	the track
+     * @param time	the time
+     * @param elapsed	the elapsed time
+     * @param lat	the latitude
+     * @param lon	the longitude
+     * @param distance	the distance
+     * @param elevation	the elevation
+     * @param malformed	whether the elevation is to be interpolated
+     * @throws IOException	if the handler fails
+     */
+    protected void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation, boolean malformed) throws IOException {
+      if (!m_Pending.isEmpty()) {
+	if (!track.equals(m_Pending.get(0).track)) {
+	  flush(Double.NaN, Double.NaN);
+	}
+	else if (Double.isNaN(elevation)) {
+	  m_Pending.add(new Pending(track, time, elapsed, lat, lon, distance, malformed));
+	  return;
+	}
+	else {
+	  flush(distance, elevation);
+	}
+      }
+      if (malformed && track.equals(m_LastTrack)) {
+	m_Pending.add(new Pending(track, time, elapsed, lat, lon, distance, true));
+	return;
+      }
+      m_Handler.point(track, time, elapsed, lat, lon, distance, elevation);
+      if (!Double.isNaN(elevation)) {
+	m_LastTrack     = track;
+	m_LastDistance  = distance;
+	m_LastElevation = elevation;
+      }
+    }
+  }
+
+  /**
+   * Collects the points in blocks, copying each full block into newly
+   * allocated columns.
+   */
+  protected static class Collector
+    implements PointHandler {
+
+    /** for allocating the columns. */
+    protected final Allocator m_Allocator;
+
+    /** the tracks of the current block. */
+    protected final List<String> m_TrackList;
+
+    /** the times of the current block. */
+    protected final List<String> m_TimeList;
+
+    /** the latitudes of the current block. */
+    protected final TDoubleArrayList m_LatList;
+
+    /** the longitudes of the current block. */
+    protected final TDoubleArrayList m_LonList;
+
+    /** the distances of the current block. */
+    protected final TDoubleArrayList m_DistList;
+
+    /** the elevations of the current block. */
+    protected final TDoubleArrayList m_ElevList;
+
+    /** the elapsed times of the current block. */
+    protected final TDoubleArrayList m_ElapsedList;
+
+    /** the maximum number of UTF-8 bytes of the tracks in the current block. */
+    protected int m_MaxTrack;
+
+    /** the maximum number of UTF-8 bytes of the times in the current block. */
+    protected int m_MaxTime;
+
+    /** the track column. */
+    protected final ChunkedStringColumn m_Tracks;
+
+    /** the time column. */
+    protected final ChunkedStringColumn m_Times;
+
+    /** the latitude column. */
+    protected final ChunkedDoubleColumn m_Lats;
+
+    /** the longitude column. */
+    protected final ChunkedDoubleColumn m_Lons;
+
+    /** the distance column. */
+    protected final ChunkedDoubleColumn m_Dists;
+
+    /** the elevation column. */
+    protected final ChunkedDoubleColumn m_Elevs;
+
+    /** the elapsed time column. */
+    protected final ChunkedDoubleColumn m_Elapsed;
+
+    /**
+     * Initializes the collector.
+     *
+     * @param allocator	for allocating the columns
+     */
+    protected Collector(Allocator allocator) {
+      m_Allocator   = allocator;
+      m_TrackList   = new ArrayList<>();
+      m_TimeList    = new ArrayList<>();
+      m_LatList     = new TDoubleArrayList();
+      m_LonList     = new TDoubleArrayList();
+      m_DistList    = new TDoubleArrayList();
+      m_ElevList    = new TDoubleArrayList();
+      m_ElapsedList = new TDoubleArrayList();
+      m_Tracks      = new ChunkedStringColumn();
+      m_Times       = new ChunkedStringColumn();
+      m_Lats        = new ChunkedDoubleColumn();
+      m_Lons        = new ChunkedDoubleColumn();
+      m_Dists       = new ChunkedDoubleColumn();
+      m_Elevs       = new ChunkedDoubleColumn();
+      m_Elapsed     = new ChunkedDoubleColumn();
+    }
+
+    /**
+     * Collects the point.
+     *
+     * @param track	the track
+     * @param time	the time
+     * @param elapsed	the elapsed time
+     * @param lat	the latitude
+     * @param lon	the longitude
+     * @param distance	the distance
+     * @param elevation	the elevation
+     * @throws IOException	if allocating the columns fails
+     */
+    @Override
+    public void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation) throws IOException {
+      m_TrackList.add(track);
+      m_TimeList.add(time);
+      m_ElapsedList.add(elapsed);
+      m_LatList.add(lat);
+      m_LonList.add(lon);
+      m_DistList.add(distance);
+      m_ElevList.add(elevation);
+      m_MaxTrack = Math.max(m_MaxTrack, Allocator.utf8Length(track));
+      m_MaxTime  = Math.max(m_MaxTime, Allocator.utf8Length(time));
+      if (m_LatList.size() == BLOCK_SIZE)
+	flush();
+    }
+
+    /**
+     * Copies the current block into newly allocated columns.
+     *
+     * @throws IOException	if allocating the columns fails
+     */
+    protected void flush() throws IOException {
+      StringColumn	tracks;
+      StringColumn	times;
+      DoubleColumn	lats;
+      DoubleColumn	lons;
+      DoubleColumn	dists;
+      DoubleColumn	elevs;
+      DoubleColumn	elapsed;
+      int		size;
+      int		i;
+
+      size    = m_LatList.size();
+      tracks  = m_Allocator.strings(size, m_MaxTrack);
+      times   = m_Allocator.strings(size, m_MaxTime);
+      lats    = m_Allocator.doubles(size);
+      lons    = m_Allocator.doubles(size);
+      dists   = m_Allocator.doubles(size);
+      elevs   = m_Allocator.doubles(size);
+      elapsed = m_Allocator.doubles(size);
+      for (i = 0; i < size; i++) {
+	tracks.set(i, m_TrackList.get(i));
+	times.set(i, m_TimeList.get(i));
+	lats.set(i, m_LatList.get(i));
+	lons.set(i, m_LonList.get(i));
+	dists.set(i, m_DistList.get(i));
+	elevs.set(i, m_ElevList.get(i));
+	elapsed.set(i, m_ElapsedList.get(i));
+      }
+      m_Tracks.add(tracks);
+      m_Times.add(times);
+      m_Lats.add(lats);
+      m_Lons.add(lons);
+      m_Dists.add(dists);
+      m_Elevs.add(elevs);
+      m_Elapsed.add(elapsed);
+
+      m_TrackList.clear();
+      m_TimeList.clear();
+      m_LatList.clear(0);
+      m_LonList.clear(0);
+      m_DistList.clear(0);
+      m_ElevList.clear(0);
+      m_ElapsedList.clear(0);
+      m_MaxTrack = 0;
+      m_MaxTime  = 0;
+    }
+
+    /**
+     * Returns the profile, after copying the remaining points.
+     *
+     * @param rejected	the number of rejected trackpoints
+     * @return		the profile
+     * @throws IOException	if allocating the columns fails
+     */
+    protected Profile toProfile(int rejected) throws IOException {
+      flush();
+      return new Profile(m_Tracks, m_Times, m_Lats, m_Lons, m_Dists, m_Elevs, m_Elapsed, m_Lats.size(), rejected);
+    }
+  }
+
+  /** how to handle malformed trackpoints. */
+  protected final ErrorPolicy m_Policy;
+
+  /** for stopping early. */
+  protected final Cancellation m_Cancellation;
+
+  /**
+   * Initializes the reader.
+   *
+   * @param policy	how to handle malformed trackpoints
+   */
+  public TraceStreamReader(ErrorPolicy policy) {
+    this(policy, Cancellation.NONE);
+  }
+
+  /**
+   * Initializes the reader.
+   *
+   * @param policy		how to handle malformed trackpoints
+   * @param cancellation	for stopping early, checked for every block read
+   */
+  public TraceStreamReader(ErrorPolicy policy, Cancellation cancellation) {
+    m_Policy       = (policy == null) ? ErrorPolicy.FAIL : policy;
+    m_Cancellation = (cancellation == null) ? Cancellation.NONE : cancellation;
+  }
+
+  /**
+   * Returns how malformed trackpoints get handled.
+   *
+   * @return		the policy
+   */
+  public ErrorPolicy getPolicy() {
+    return m_Policy;
+  }
+
+  /**
+   * Returns whether the input format can be read from a stream.
+   *
+   * @param format	the input format class
+   * @return		true if supported
+   */
+  public static boolean supports(Class format) {
+    return ParallelTraceReader.supports(format);
+  }
+
+  /**
+   * Finds the start of the last trackpoint, with or without namespace prefix.
+   *
+   * @param buf		the data
+   * @param len		the number of bytes in use
+   * @param tag		the trackpoint tag
+   * @return		the position, 0 if none
+   */
+  protected static int lastBoundary(ByteBuffer buf, int len, byte[] tag) {
+    int		i;
+
+    for (i = len - tag.length - 2; i > 0; i--) {
+      if (TraceChunk.isStartTag(buf, i, len, tag))
+	return i;
+    }
+
+    return 0;
+  }
+
+  /**
+   * Reads the stream and passes the points on to the handler. The stream
+   * is not closed.
+   *
+   * @param input	the stream to read
+   * @param format	the input format class, see {@link #supports(Class)}
+   * @param handler	the handler to pass the points on to
+   * @return		the number of rejected trackpoints
+   * @throws IOException	if reading fails, the handler fails, a trackpoint is malformed and the policy is to fail, or reading got stopped
+   */
+  public int read(InputStream input, Class format, PointHandler handler) throws IOException {
+    final TraceChunk.Dialect	dialect;
+    final Interpolator		interpolator;
+    final TraceChunk		current[];
+    Stitcher			stitcher;
+    TraceChunk			chunk;
+    byte[]			data;
+    byte[]			larger;
+    ByteBuffer			buf;
+    int				len;
+    int				read;
+    int				split;
+    boolean			eof;
+    int				result;
+
+    dialect = ParallelTraceReader.dialect(format);
+    if (dialect == null)
+      throw new IllegalArgumentException("Format not supported: " + format.getName());
+
+    interpolator = new Interpolator(handler);
+    current      = new TraceChunk[1];
+    stitcher     = new Stitcher();
+    data         = new byte[BUFFER_SIZE];
+    buf          = ByteBuffer.wrap(data);
+    len          = 0;
+    result       = 0;
+    eof          = false;
+    while (!eof) {
+      m_Cancellation.check();
+      read = input.read(data, len, data.length - len);
+      eof  = (read == -1);
+      if (!eof)
+	len += read;
+
+      split = eof ? len : lastBoundary(buf, len, dialect.point);
+      chunk = null;
+      if (split > 0) {
+	buf.limit(split);
+	chunk = TraceChunk.parse(buf, dialect, m_Policy, m_Cancellation);
+	// split within a comment or CDATA section, split at the last trackpoint before it instead
+	if (!eof && (chunk.open != TraceChunk.OPEN_NONE)) {
+	  split = chunk.lastPoint;
+	  buf.limit(split);
+	  chunk = (split > 0) ? TraceChunk.parse(buf, dialect, m_Policy, m_Cancellation) : null;
+	}
+	buf.limit(data.length);
+      }
+      if (chunk != null) {
+	m_Cancellation.check();
+	if (chunk.error != null)
+	  throw new IOException(chunk.error);
+	result += chunk.rejected;
+	stitcher.stitch(chunk);
+	current[0] = chunk;
+	chunk.emit(new PointHandler() {
+	  int row = 0;
+	  int next = 0;
+	  @Override
+	  public void point(String track, String time, double elapsed, double lat, double lon, double distance, double elevation) throws IOException {
+	    boolean malformed = (next < current[0].interpolate.size()) && (current[0].interpolate.get(next) == row);
+	    if (malformed)
+	      next++;
+	    row++;
+	    interpolator.point(track, time, elapsed, lat, lon, distance, elevation, malformed);
+	  }
+	});
+	System.arraycopy(data, split, data, 0, len - split);
+	len -= split;
+      }
+
+      if (len == data.length) {
+	larger = new byte[data.length * 2];
+	System.arraycopy(data, 0, larger, 0, len);
+	data = larger;
+	buf  = ByteBuffer.wrap(data);
+      }
+    }
+    interpolator.flush(Double.NaN, Double.NaN);
+
+    return result;
+  }
+
+  /**
+   * Reads the stream and generates the profile. The points get collected
+   * in blocks of {@link #BLOCK_SIZE}, which get copied into their own
+   * columns, i.e., only a single block is kept on the heap. The stream is
+   * not closed.
+   *
+   * @param input	the stream to read
+   * @param format	the input format class, see {@link #supports(Class)}
+   * @param allocator	for allocating the profile columns
+   * @return		the profile
+   * @throws IOException	if reading or allocating fails, a trackpoint is malformed and the policy is to fail, or reading got stopped
+   */
+  public Profile read(InputStream input, Class format, Allocator allocator) throws IOException {
+    Collector	collector;
+    int		rejected;
+
+    collector = new Collector(allocator);
+    rejected  = read(input, format, collector);
+
+    return collector.toProfile(rejected);
+  }
+}
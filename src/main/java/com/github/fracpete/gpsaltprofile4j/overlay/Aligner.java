@@ -0,0 +1,302 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Aligner.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.overlay;
+
+import com.github.fracpete.gpsaltprofile4j.Profile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Aligns profiles onto a shared distance grid, using linear interpolation,
+ * and computes median and percentiles per grid point. Tracks within a
+ * profile are concatenated. Alignment and aggregation get distributed
+ * across the threads of the executor. Thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class Aligner {
+
+  /** the default grid spacing in meters. */
+  public static final double DEFAULT_STEP = 10.0;
+
+  /** the default lower percentile. */
+  public static final double DEFAULT_LOWER = 10.0;
+
+  /** the default upper percentile. */
+  public static final double DEFAULT_UPPER = 90.0;
+
+  /** the grid spacing in meters. */
+  protected final double m_Step;
+
+  /** the lower percentile (0-100). */
+  protected final double m_Lower;
+
+  /** the upper percentile (0-100). */
+  protected final double m_Upper;
+
+  /**
+   * Initializes the aligner.
+   *
+   * @param step	the grid spacing in meters
+   * @param lower	the lower percentile (0-100)
+   * @param upper	the upper percentile (0-100)
+   */
+  public Aligner(double step, double lower, double upper) {
+    if (step <= 0)
+      throw new IllegalArgumentException("Step must be greater than 0, provided: " + step);
+    if ((lower < 0) || (upper > 100) || (lower > upper))
+      throw new IllegalArgumentException("Percentiles must satisfy 0 <= lower <= upper <= 100, provided: " + lower + ", " + upper);
+    m_Step  = step;
+    m_Lower = lower;
+    m_Upper = upper;
+  }
+
+  /**
+   * Returns the grid spacing.
+   *
+   * @return		the spacing in meters
+   */
+  public double getStep() {
+    return m_Step;
+  }
+
+  /**
+   * Returns the lower percentile.
+   *
+   * @return		the percentile (0-100)
+   */
+  public double getLower() {
+    return m_Lower;
+  }
+
+  /**
+   * Returns the upper percentile.
+   *
+   * @return		the percentile (0-100)
+   */
+  public double getUpper() {
+    return m_Upper;
+  }
+
+  /**
+   * Returns the distances of the profile, with tracks concatenated.
+   *
+   * @param profile	the profile
+   * @return		the continuous distances
+   */
+  public static double[] continuousDistances(Profile profile) {
+    double[]	result;
+    double	offset;
+    int		i;
+
+    result = new double[profile.size()];
+    offset = 0.0;
+    for (i = 0; i < result.length; i++) {
+      if ((i > 0) && !profile.getTrack(i).equals(profile.getTrack(i - 1)))
+	offset = result[i - 1];
+      result[i] = profile.getDistance(i) + offset;
+    }
+
+    return result;
+  }
+
+  /**
+   * Interpolates the elevations of the profile at the grid points. Points
+   * without elevation are skipped.
+   *
+   * @param profile	the profile to align
+   * @param step	the grid spacing
+   * @param aligned	for storing the elevations, NaN beyond the profile
+   */
+  public static void interpolate(Profile profile, double step, double[] aligned) {
+    double[]	dists;
+    double	x;
+    int		prev;
+    int		next;
+    int		g;
+
+    Arrays.fill(aligned, Double.NaN);
+    dists = continuousDistances(profile);
+    prev  = -1;
+    next  = 0;
+    for (g = 0; g < aligned.length; g++) {
+      x = g * step;
+      // last point with elevation at or before x
+      while ((next < dists.length) && (dists[next] <= x)) {
+	if (!Double.isNaN(profile.getElevation(next)))
+	  prev = next;
+	next++;
+      }
+      // first point with elevation after x
+      while ((next < dists.length) && Double.isNaN(profile.getElevation(next)))
+	next++;
+      if (prev == -1)
+	continue;
+      if (dists[prev] == x)
+	aligned[g] = profile.getElevation(prev);
+      else if (next < dists.length)
+	aligned[g] = profile.getElevation(prev)
+	  + (profile.getElevation(next) - profile.getElevation(prev)) * (x - dists[prev]) / (dists[next] - dists[prev]);
+      else
+	break;
+    }
+  }
+
+  /**
+   * Computes the percentile from the sorted values, using linear
+   * interpolation between the closest ranks.
+   *
+   * @param sorted	the sorted values
+   * @param n		the number of values to use
+   * @param percentile	the percentile (0-100)
+   * @return		the value, NaN if no values
+   */
+  public static double percentile(double[] sorted, int n, double percentile) {
+    double	pos;
+    int		lower;
+
+    if (n == 0)
+      return Double.NaN;
+    pos   = percentile / 100.0 * (n - 1);
+    lower = (int) Math.floor(pos);
+    if (lower >= n - 1)
+      return sorted[n - 1];
+
+    return sorted[lower] + (sorted[lower + 1] - sorted[lower]) * (pos - lower);
+  }
+
+  /**
+   * Computes median and percentiles for a range of grid points.
+   *
+   * @param elevs	the aligned elevations, per trace
+   * @param from	the first grid point
+   * @param to		the last grid point (excl)
+   * @param median	for storing the median
+   * @param lower	for storing the lower percentile
+   * @param upper	for storing the upper percentile
+   */
+  protected void aggregate(double[][] elevs, int from, int to, double[] median, double[] lower, double[] upper) {
+    double[]	values;
+    int		n;
+    int		g;
+    int		t;
+
+    values = new double[elevs.length];
+    for (g = from; g < to; g++) {
+      n = 0;
+      for (t = 0; t < elevs.length; t++) {
+	if (!Double.isNaN(elevs[t][g]))
+	  values[n++] = elevs[t][g];
+      }
+      Arrays.sort(values, 0, n);
+      median[g] = percentile(values, n, 50.0);
+      lower[g]  = percentile(values, n, m_Lower);
+      upper[g]  = percentile(values, n, m_Upper);
+    }
+  }
+
+  /**
+   * Waits for the tasks to finish.
+   *
+   * @param futures	the tasks
+   * @throws Exception	if a task failed or got interrupted
+   */
+  protected static void await(List<Future<?>> futures) throws Exception {
+    try {
+      for (Future<?> future: futures)
+	future.get();
+    }
+    catch (InterruptedException | ExecutionException e) {
+      for (Future<?> future: futures)
+	future.cancel(true);
+      if (e instanceof InterruptedException)
+	Thread.currentThread().interrupt();
+      if ((e instanceof ExecutionException) && (e.getCause() instanceof Exception))
+	throw (Exception) e.getCause();
+      throw e;
+    }
+  }
+
+  /**
+   * Aligns the profiles.
+   *
+   * @param names	the names of the profiles
+   * @param profiles	the profiles to align
+   * @param executor	the executor to use
+   * @param threads	the number of tasks to split the aggregation into
+   * @return		the overlay
+   * @throws Exception	if a task failed or got interrupted
+   */
+  public Overlay align(String[] names, Profile[] profiles, ExecutorService executor, int threads) throws Exception {
+    final double[][]	elevs;
+    final double[]	grid;
+    final double[]	median;
+    final double[]	lower;
+    final double[]	upper;
+    List<Future<?>>	futures;
+    double		max;
+    int			size;
+    int			chunk;
+    int			i;
+
+    if (names.length != profiles.length)
+      throw new IllegalArgumentException("Number of names and profiles differ: " + names.length + " != " + profiles.length);
+
+    max = 0.0;
+    for (Profile profile: profiles) {
+      if (profile.size() > 0)
+	max = Math.max(max, continuousDistances(profile)[profile.size() - 1]);
+    }
+    size = (int) Math.floor(max / m_Step) + 1;
+    grid = new double[size];
+    for (i = 0; i < size; i++)
+      grid[i] = i * m_Step;
+
+    // align
+    elevs   = new double[profiles.length][size];
+    futures = new ArrayList<>();
+    for (i = 0; i < profiles.length; i++) {
+      final int index = i;
+      futures.add(executor.submit(() -> interpolate(profiles[index], m_Step, elevs[index])));
+    }
+    await(futures);
+
+    // aggregate
+    median  = new double[size];
+    lower   = new double[size];
+    upper   = new double[size];
+    futures = new ArrayList<>();
+    chunk   = Math.max(1, (size + threads - 1) / Math.max(1, threads));
+    for (i = 0; i < size; i += chunk) {
+      final int from = i;
+      final int to   = Math.min(size, i + chunk);
+      futures.add(executor.submit(() -> aggregate(elevs, from, to, median, lower, upper)));
+    }
+    await(futures);
+
+    return new Overlay(names, grid, elevs, median, m_Lower, lower, m_Upper, upper);
+  }
+}
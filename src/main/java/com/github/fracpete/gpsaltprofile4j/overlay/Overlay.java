@@ -0,0 +1,176 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Overlay.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.overlay;
+
+/**
+ * Multiple traces aligned onto a shared distance grid, with median and
+ * percentile band. Elevations are NaN where a trace does not cover the
+ * distance.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class Overlay {
+
+  /** the names of the traces. */
+  protected final String[] m_Names;
+
+  /** the distance grid. */
+  protected final double[] m_Distances;
+
+  /** the aligned elevations, per trace. */
+  protected final double[][] m_Elevations;
+
+  /** the median elevation. */
+  protected final double[] m_Median;
+
+  /** the lower percentile. */
+  protected final double m_LowerPercentile;
+
+  /** the elevation at the lower percentile. */
+  protected final double[] m_Lower;
+
+  /** the upper percentile. */
+  protected final double m_UpperPercentile;
+
+  /** the elevation at the upper percentile. */
+  protected final double[] m_Upper;
+
+  /**
+   * Initializes the overlay. The arrays get used as is and must not be
+   * modified afterwards.
+   *
+   * @param names		the names of the traces
+   * @param distances		the distance grid
+   * @param elevations		the aligned elevations, per trace
+   * @param median		the median elevations
+   * @param lowerPercentile	the lower percentile
+   * @param lower		the elevations at the lower percentile
+   * @param upperPercentile	the upper percentile
+   * @param upper		the elevations at the upper percentile
+   */
+  public Overlay(String[] names, double[] distances, double[][] elevations, double[] median, double lowerPercentile, double[] lower, double upperPercentile, double[] upper) {
+    m_Names           = names;
+    m_Distances       = distances;
+    m_Elevations      = elevations;
+    m_Median          = median;
+    m_LowerPercentile = lowerPercentile;
+    m_Lower           = lower;
+    m_UpperPercentile = upperPercentile;
+    m_Upper           = upper;
+  }
+
+  /**
+   * Returns the number of traces.
+   *
+   * @return		the number of traces
+   */
+  public int numTraces() {
+    return m_Names.length;
+  }
+
+  /**
+   * Returns the number of grid points.
+   *
+   * @return		the number of grid points
+   */
+  public int size() {
+    return m_Distances.length;
+  }
+
+  /**
+   * Returns the name of the trace.
+   *
+   * @param trace	the trace index
+   * @return		the name
+   */
+  public String getName(int trace) {
+    return m_Names[trace];
+  }
+
+  /**
+   * Returns the distance of the grid point.
+   *
+   * @param index	the grid point
+   * @return		the distance
+   */
+  public double getDistance(int index) {
+    return m_Distances[index];
+  }
+
+  /**
+   * Returns the aligned elevation of the trace at the grid point.
+   *
+   * @param trace	the trace index
+   * @param index	the grid point
+   * @return		the elevation, NaN if not covered
+   */
+  public double getElevation(int trace, int index) {
+    return m_Elevations[trace][index];
+  }
+
+  /**
+   * Returns the median elevation at the grid point.
+   *
+   * @param index	the grid point
+   * @return		the median, NaN if no trace covers it
+   */
+  public double getMedian(int index) {
+    return m_Median[index];
+  }
+
+  /**
+   * Returns the lower percentile.
+   *
+   * @return		the percentile (0-100)
+   */
+  public double getLowerPercentile() {
+    return m_LowerPercentile;
+  }
+
+  /**
+   * Returns the elevation at the lower percentile at the grid point.
+   *
+   * @param index	the grid point
+   * @return		the elevation, NaN if no trace covers it
+   */
+  public double getLower(int index) {
+    return m_Lower[index];
+  }
+
+  /**
+   * Returns the upper percentile.
+   *
+   * @return		the percentile (0-100)
+   */
+  public double getUpperPercentile() {
+    return m_UpperPercentile;
+  }
+
+  /**
+   * Returns the elevation at the upper percentile at the grid point.
+   *
+   * @param index	the grid point
+   * @return		the elevation, NaN if no trace covers it
+   */
+  public double getUpper(int index) {
+    return m_Upper[index];
+  }
+}
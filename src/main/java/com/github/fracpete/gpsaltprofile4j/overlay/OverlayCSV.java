@@ -0,0 +1,113 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OverlayCSV.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.overlay;
+
+import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsformats4j.core.BaseObject;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+
+/**
+ * Writes the overlay as CSV, one row per grid point, with the following
+ * columns:
+ * <ol>
+ *   <li>distance</li>
+ *   <li>median</li>
+ *   <li>lower percentile</li>
+ *   <li>upper percentile</li>
+ *   <li>one elevation column per trace</li>
+ * </ol>
+ * Distances not covered by a trace are left empty.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class OverlayCSV
+  extends BaseObject
+  implements OverlayFormat {
+
+  /**
+   * Turns the number into a string.
+   *
+   * @param value	the value
+   * @return		the string, empty if NaN
+   */
+  protected static String toString(double value) {
+    return Double.isNaN(value) ? "" : "" + value;
+  }
+
+  /**
+   * Writes the overlay to a file.
+   *
+   * @param overlay	the overlay to write
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  @Override
+  public String write(Overlay overlay, File output) {
+    CSVPrinter	printer;
+    FileWriter	writer;
+    Object[]	values;
+    int		i;
+    int		t;
+
+    writer  = null;
+    printer = null;
+    try {
+      m_Logger.info("Writing: " + output);
+      writer  = new FileWriter(output);
+      printer = new CSVPrinter(new BufferedWriter(writer), CSVFormat.DEFAULT);
+      values  = new Object[overlay.numTraces() + 4];
+      values[0] = Format.KEY_DISTANCE;
+      values[1] = "Median";
+      values[2] = "P" + overlay.getLowerPercentile();
+      values[3] = "P" + overlay.getUpperPercentile();
+      for (t = 0; t < overlay.numTraces(); t++)
+	values[t + 4] = overlay.getName(t);
+      printer.printRecord(values);
+      for (i = 0; i < overlay.size(); i++) {
+	values[0] = toString(overlay.getDistance(i));
+	values[1] = toString(overlay.getMedian(i));
+	values[2] = toString(overlay.getLower(i));
+	values[3] = toString(overlay.getUpper(i));
+	for (t = 0; t < overlay.numTraces(); t++)
+	  values[t + 4] = toString(overlay.getElevation(t, i));
+	printer.printRecord(values);
+      }
+      printer.flush();
+      printer.close();
+    }
+    catch (Exception e) {
+      m_Logger.error("Failed to write: " + output, e);
+      return "Failed to write: " + output + "\n" + e;
+    }
+    finally {
+      IOUtils.closeQuietly(writer);
+      IOUtils.closeQuietly(printer);
+    }
+
+    return null;
+  }
+}
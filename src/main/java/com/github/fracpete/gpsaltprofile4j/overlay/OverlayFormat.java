@@ -0,0 +1,40 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OverlayFormat.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.overlay;
+
+import java.io.File;
+
+/**
+ * Interface for overlay formats.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public interface OverlayFormat {
+
+  /**
+   * Writes the overlay to a file.
+   *
+   * @param overlay	the overlay to write
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  public String write(Overlay overlay, File output);
+}
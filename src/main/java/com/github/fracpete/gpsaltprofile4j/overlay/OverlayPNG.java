@@ -0,0 +1,251 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OverlayPNG.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.overlay;
+
+import com.github.fracpete.gpsaltprofile4j.formats.PNG;
+import com.github.fracpete.gpsformats4j.core.BaseObject;
+import com.github.fracpete.gpsformats4j.core.OptionHandler;
+import com.github.fracpete.gpsformats4j.core.OptionUtils;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.helper.HelpScreenException;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.DeviationRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.data.xy.DefaultXYDataset;
+import org.jfree.data.xy.YIntervalSeries;
+import org.jfree.data.xy.YIntervalSeriesCollection;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.io.File;
+
+/**
+ * Plots the overlay as PNG: all traces in light gray, with the median
+ * and the percentile band on top. Images come from
+ * {@link com.github.fracpete.gpsaltprofile4j.formats.ImagePool#SHARED}.
+ * Additional options:
+ * <ol>
+ *   <li>width</li>
+ *   <li>height</li>
+ * </ol>
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class OverlayPNG
+  extends BaseObject
+  implements OverlayFormat, OptionHandler {
+
+  /** the color for the traces. */
+  public static final Color COLOR_TRACE = new Color(200, 200, 200);
+
+  /** the color for the median. */
+  public static final Color COLOR_MEDIAN = new Color(0, 0, 160);
+
+  /** the color for the percentile band. */
+  public static final Color COLOR_BAND = new Color(100, 150, 255);
+
+  /** the argument parser. */
+  protected ArgumentParser m_Parser;
+
+  /** the width. */
+  protected int m_Width;
+
+  /** the height. */
+  protected int m_Height;
+
+  /**
+   * Initializes the members.
+   */
+  @Override
+  protected void initialize() {
+    super.initialize();
+
+    m_Width  = PNG.DEFAULT_WIDTH;
+    m_Height = PNG.DEFAULT_HEIGHT;
+
+    m_Parser = ArgumentParsers.newFor(getClass().getSimpleName()).build();
+
+    m_Parser.description("Options for the overlay PNG format.");
+    m_Parser.defaultHelp(true);
+
+    m_Parser.addArgument("--width")
+      .metavar("<pixels>")
+      .dest("width")
+      .required(false)
+      .type(Integer.class)
+      .setDefault(PNG.DEFAULT_WIDTH)
+      .help("The width of the image.");
+    m_Parser.addArgument("--height")
+      .metavar("<pixels>")
+      .dest("height")
+      .required(false)
+      .type(Integer.class)
+      .setDefault(PNG.DEFAULT_HEIGHT)
+      .help("The height of the image.");
+  }
+
+  /**
+   * Sets the width.
+   *
+   * @param value	the width
+   */
+  public void setWidth(int value) {
+    if (value > 0)
+      m_Width = value;
+  }
+
+  /**
+   * Returns the width.
+   *
+   * @return		the width
+   */
+  public int getWidth() {
+    return m_Width;
+  }
+
+  /**
+   * Sets the height.
+   *
+   * @param value	the height
+   */
+  public void setHeight(int value) {
+    if (value > 0)
+      m_Height = value;
+  }
+
+  /**
+   * Returns the height.
+   *
+   * @return		the height
+   */
+  public int getHeight() {
+    return m_Height;
+  }
+
+  /**
+   * For setting options.
+   *
+   * @param options	the options
+   */
+  public void setOptions(String[] options) throws Exception {
+    Namespace ns;
+
+    try {
+      ns = m_Parser.parseArgs(options);
+    }
+    catch (HelpScreenException e) {
+      // ignored
+      return;
+    }
+    catch (Exception e) {
+      throw new Exception("Failed to parse options: " + OptionUtils.flatten(options), e);
+    }
+
+    setWidth(ns.getInt("width"));
+    setHeight(ns.getInt("height"));
+  }
+
+  /**
+   * Returns the help string.
+   *
+   * @return		the help
+   */
+  public String toHelp() {
+    return "Supported options:\n"
+      + "  width: width in pixels for the output, default: " + PNG.DEFAULT_WIDTH + "\n"
+      + "  height: height in pixels for the output, default: " + PNG.DEFAULT_HEIGHT + "\n";
+  }
+
+  /**
+   * Writes the overlay to a file.
+   *
+   * @param overlay	the overlay to write
+   * @param output	the output file
+   * @return		null if successful, otherwise error message
+   */
+  @Override
+  public String write(Overlay overlay, File output) {
+    YIntervalSeriesCollection	band;
+    YIntervalSeries		median;
+    DefaultXYDataset		traces;
+    double[]			dists;
+    double[]			elevs;
+    XYLineAndShapeRenderer	traceRenderer;
+    DeviationRenderer		bandRenderer;
+    JFreeChart			jfreechart;
+    XYPlot			plot;
+    int				i;
+    int				t;
+
+    // median and band
+    median = new YIntervalSeries("Median", false, false);
+    for (i = 0; i < overlay.size(); i++) {
+      if (!Double.isNaN(overlay.getMedian(i)))
+	median.add(overlay.getDistance(i), overlay.getMedian(i), overlay.getLower(i), overlay.getUpper(i));
+    }
+    band = new YIntervalSeriesCollection();
+    band.addSeries(median);
+
+    // traces
+    dists = new double[overlay.size()];
+    for (i = 0; i < dists.length; i++)
+      dists[i] = overlay.getDistance(i);
+    traces = new DefaultXYDataset();
+    for (t = 0; t < overlay.numTraces(); t++) {
+      elevs = new double[overlay.size()];
+      for (i = 0; i < elevs.length; i++)
+	elevs[i] = overlay.getElevation(t, i);
+      traces.addSeries(t + ": " + overlay.getName(t), new double[][]{dists, elevs});
+    }
+
+    jfreechart = ChartFactory.createXYLineChart(
+      "", "Distance", "Elevation", band, PlotOrientation.VERTICAL, false, false, false);
+    plot = (XYPlot) jfreechart.getPlot();
+    plot.setBackgroundPaint(Color.WHITE);
+    plot.setDomainGridlinesVisible(true);
+    plot.setDomainGridlinePaint(Color.GRAY);
+    plot.setRangeGridlinesVisible(true);
+    plot.setRangeGridlinePaint(Color.GRAY);
+
+    // datasets with lower index get drawn on top
+    bandRenderer = new DeviationRenderer(true, false);
+    bandRenderer.setSeriesPaint(0, COLOR_MEDIAN);
+    bandRenderer.setSeriesFillPaint(0, COLOR_BAND);
+    bandRenderer.setSeriesStroke(0, new BasicStroke(2.0f));
+    bandRenderer.setAlpha(0.4f);
+    plot.setRenderer(0, bandRenderer);
+
+    traceRenderer = new XYLineAndShapeRenderer(true, false);
+    traceRenderer.setAutoPopulateSeriesPaint(false);
+    traceRenderer.setAutoPopulateSeriesStroke(false);
+    traceRenderer.setBasePaint(COLOR_TRACE);
+    traceRenderer.setBaseStroke(new BasicStroke(0.5f));
+    plot.setDataset(1, traces);
+    plot.setRenderer(1, traceRenderer);
+
+    return PNG.render(jfreechart, m_Width, m_Height, output);
+  }
+}
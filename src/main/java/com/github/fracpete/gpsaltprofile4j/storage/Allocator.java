@@ -0,0 +1,225 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Allocator.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates the columns of a single profile according to the storage
+ * configuration, keeping track of the memory used. Columns that no longer
+ * fit into the budget get backed by memory-mapped temporary files, which
+ * are deleted right away (or on exit, if the platform does not allow
+ * deleting mapped files). Thread-safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class Allocator {
+
+  /** the storage configuration. */
+  protected final Storage m_Storage;
+
+  /** the memory used so far in bytes. */
+  protected final AtomicLong m_Used;
+
+  /** the bytes spilled to disk so far. */
+  protected final AtomicLong m_Spilled;
+
+  /**
+   * Initializes the allocator.
+   *
+   * @param storage	the storage configuration
+   */
+  public Allocator(Storage storage) {
+    m_Storage = storage;
+    m_Used    = new AtomicLong();
+    m_Spilled = new AtomicLong();
+  }
+
+  /**
+   * Returns the storage configuration.
+   *
+   * @return		the configuration
+   */
+  public Storage getStorage() {
+    return m_Storage;
+  }
+
+  /**
+   * Returns the memory used so far.
+   *
+   * @return		the bytes
+   */
+  public long getUsed() {
+    return m_Used.get();
+  }
+
+  /**
+   * Returns the bytes spilled to disk so far.
+   *
+   * @return		the bytes
+   */
+  public long getSpilled() {
+    return m_Spilled.get();
+  }
+
+  /**
+   * Reserves the bytes from the budget.
+   *
+   * @param bytes	the bytes to reserve
+   * @return		true if within budget, false if the column needs spilling
+   */
+  protected boolean reserve(long bytes) {
+    long	used;
+
+    if (m_Storage.getBudget() == Storage.UNLIMITED) {
+      m_Used.addAndGet(bytes);
+      return true;
+    }
+
+    do {
+      used = m_Used.get();
+      if (used + bytes > m_Storage.getBudget())
+	return false;
+    }
+    while (!m_Used.compareAndSet(used, used + bytes));
+
+    return true;
+  }
+
+  /**
+   * Maps a temporary file of the specified size into memory.
+   *
+   * @param bytes	the size of the file
+   * @return		the mapped buffer
+   * @throws IOException	if creating or mapping the file fails
+   */
+  protected ByteBuffer spill(long bytes) throws IOException {
+    ByteBuffer		result;
+    File		tmp;
+    RandomAccessFile	raf;
+
+    tmp = File.createTempFile("gpsaltprofile4j-", ".col", m_Storage.getTmpDir());
+    raf = null;
+    try {
+      raf = new RandomAccessFile(tmp, "rw");
+      raf.setLength(bytes);
+      result = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+    }
+    finally {
+      if (raf != null)
+	raf.close();
+      // the mapping stays valid after closing/deleting
+      if (!tmp.delete())
+	tmp.deleteOnExit();
+    }
+    m_Spilled.addAndGet(bytes);
+
+    return result;
+  }
+
+  /**
+   * Returns a buffer of the specified size, either direct or spilled to disk.
+   *
+   * @param bytes	the size in bytes
+   * @return		the buffer
+   * @throws IOException	if spilling fails
+   */
+  protected ByteBuffer buffer(long bytes) throws IOException {
+    if (bytes > Integer.MAX_VALUE)
+      throw new IOException("Column too large (" + bytes + " bytes), maximum: " + Integer.MAX_VALUE);
+    if (reserve(bytes)) {
+      if (m_Storage.getMode() == Storage.Mode.OFFHEAP)
+	return ByteBuffer.allocateDirect((int) bytes);
+      return null;
+    }
+    return spill(bytes);
+  }
+
+  /**
+   * Allocates a column of doubles.
+   *
+   * @param size	the number of values
+   * @return		the column
+   * @throws IOException	if spilling the column fails
+   */
+  public DoubleColumn doubles(int size) throws IOException {
+    ByteBuffer	buffer;
+
+    buffer = buffer((long) size * BufferDoubleColumn.BYTES);
+    if (buffer == null)
+      return new ArrayDoubleColumn(size);
+    return new BufferDoubleColumn(buffer, size);
+  }
+
+  /**
+   * Allocates a column of strings. Heap columns get charged with the
+   * maximum size as well.
+   *
+   * @param size	the number of strings
+   * @param maxBytes	the maximum number of UTF-8 bytes per string
+   * @return		the column
+   * @throws IOException	if spilling the column fails
+   */
+  public StringColumn strings(int size, int maxBytes) throws IOException {
+    ByteBuffer	buffer;
+
+    buffer = buffer(BufferStringColumn.bytesRequired(size, maxBytes));
+    if (buffer == null)
+      return new ArrayStringColumn(size);
+    return new BufferStringColumn(buffer, size, maxBytes);
+  }
+
+  /**
+   * Returns the number of UTF-8 bytes of the string.
+   *
+   * @param s		the string, can be null
+   * @return		the number of bytes
+   */
+  public static int utf8Length(String s) {
+    int		result;
+    int		i;
+    char	c;
+
+    if (s == null)
+      return 0;
+    result = 0;
+    for (i = 0; i < s.length(); i++) {
+      c = s.charAt(i);
+      if (c < 0x80)
+	result += 1;
+      else if (c < 0x800)
+	result += 2;
+      else if (Character.isHighSurrogate(c)) {
+	result += 4;
+	i++;
+      }
+      else
+	result += 3;
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ArrayDoubleColumn.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+/**
+ * Column of doubles on the heap.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ArrayDoubleColumn
+  implements DoubleColumn {
+
+  /** the values. */
+  protected final double[] m_Values;
+
+  /** the number of values in use. */
+  protected final int m_Size;
+
+  /**
+   * Initializes the column with the specified size.
+   *
+   * @param size	the number of values
+   */
+  public ArrayDoubleColumn(int size) {
+    this(new double[size], size);
+  }
+
+  /**
+   * Initializes the column with the values, which get used as is.
+   *
+   * @param values	the values
+   * @param size	the number of values in use
+   */
+  public ArrayDoubleColumn(double[] values, int size) {
+    m_Values = values;
+    m_Size   = size;
+  }
+
+  /**
+   * Returns the number of values.
+   *
+   * @return		the number of values
+   */
+  @Override
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the value.
+   *
+   * @param index	the index
+   * @return		the value
+   */
+  @Override
+  public double get(int index) {
+    return m_Values[index];
+  }
+
+  /**
+   * Sets the value.
+   *
+   * @param index	the index
+   * @param value	the value
+   */
+  @Override
+  public void set(int index, double value) {
+    m_Values[index] = value;
+  }
+}
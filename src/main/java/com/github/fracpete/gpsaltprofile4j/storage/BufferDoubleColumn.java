@@ -0,0 +1,85 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BufferDoubleColumn.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * Column of doubles stored in a direct or memory-mapped buffer.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class BufferDoubleColumn
+  implements DoubleColumn {
+
+  /** the number of bytes per value. */
+  public static final int BYTES = 8;
+
+  /** the values. */
+  protected final DoubleBuffer m_Values;
+
+  /** the number of values. */
+  protected final int m_Size;
+
+  /**
+   * Initializes the column.
+   *
+   * @param buffer	the buffer to use, needs to hold at least size * 8 bytes
+   * @param size	the number of values
+   */
+  public BufferDoubleColumn(ByteBuffer buffer, int size) {
+    m_Values = buffer.asDoubleBuffer();
+    m_Size   = size;
+  }
+
+  /**
+   * Returns the number of values.
+   *
+   * @return		the number of values
+   */
+  @Override
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the value.
+   *
+   * @param index	the index
+   * @return		the value
+   */
+  @Override
+  public double get(int index) {
+    return m_Values.get(index);
+  }
+
+  /**
+   * Sets the value.
+   *
+   * @param index	the index
+   * @param value	the value
+   */
+  @Override
+  public void set(int index, double value) {
+    m_Values.put(index, value);
+  }
+}
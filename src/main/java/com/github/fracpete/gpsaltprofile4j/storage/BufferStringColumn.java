@@ -0,0 +1,134 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BufferStringColumn.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Column of strings stored in a direct or memory-mapped buffer, using
+ * fixed-width slots of UTF-8 bytes, each prefixed by its length.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class BufferStringColumn
+  implements StringColumn {
+
+  /** the number of bytes for storing the length. */
+  public static final int LENGTH_BYTES = 2;
+
+  /** the length marking a null value. */
+  protected static final int NULL = 0xFFFF;
+
+  /** the data. */
+  protected final ByteBuffer m_Data;
+
+  /** the number of values. */
+  protected final int m_Size;
+
+  /** the width of a slot in bytes, including the length. */
+  protected final int m_Width;
+
+  /**
+   * Returns the number of bytes required for storing the strings.
+   *
+   * @param size	the number of strings
+   * @param maxBytes	the maximum number of UTF-8 bytes per string
+   * @return		the number of bytes
+   */
+  public static long bytesRequired(int size, int maxBytes) {
+    return (long) size * (maxBytes + LENGTH_BYTES);
+  }
+
+  /**
+   * Initializes the column.
+   *
+   * @param buffer	the buffer to use, see {@link #bytesRequired(int, int)}
+   * @param size	the number of strings
+   * @param maxBytes	the maximum number of UTF-8 bytes per string
+   */
+  public BufferStringColumn(ByteBuffer buffer, int size, int maxBytes) {
+    if (maxBytes >= NULL)
+      throw new IllegalArgumentException("Strings too long, max bytes: " + maxBytes);
+    m_Data  = buffer;
+    m_Size  = size;
+    m_Width = maxBytes + LENGTH_BYTES;
+  }
+
+  /**
+   * Returns the number of values.
+   *
+   * @return		the number of values
+   */
+  @Override
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the value.
+   *
+   * @param index	the index
+   * @return		the value, can be null
+   */
+  @Override
+  public String get(int index) {
+    byte[]	bytes;
+    int		offset;
+    int		len;
+    int		i;
+
+    offset = index * m_Width;
+    len    = m_Data.getShort(offset) & 0xFFFF;
+    if (len == NULL)
+      return null;
+    bytes = new byte[len];
+    for (i = 0; i < len; i++)
+      bytes[i] = m_Data.get(offset + LENGTH_BYTES + i);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Sets the value.
+   *
+   * @param index	the index
+   * @param value	the value, can be null
+   */
+  @Override
+  public void set(int index, String value) {
+    byte[]	bytes;
+    int		offset;
+    int		i;
+
+    offset = index * m_Width;
+    if (value == null) {
+      m_Data.putShort(offset, (short) NULL);
+      return;
+    }
+    bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > m_Width - LENGTH_BYTES)
+      throw new IllegalArgumentException("String too long (" + bytes.length + " > " + (m_Width - LENGTH_BYTES) + " bytes): " + value);
+    m_Data.putShort(offset, (short) bytes.length);
+    for (i = 0; i < bytes.length; i++)
+      m_Data.put(offset + LENGTH_BYTES + i, bytes[i]);
+  }
+}
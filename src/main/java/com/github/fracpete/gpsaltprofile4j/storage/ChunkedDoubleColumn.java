@@ -0,0 +1,143 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ChunkedDoubleColumn.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+import java.util.Arrays;
+
+/**
+ * Column of doubles made up of consecutive columns, eg one per chunk of a
+ * trace, which allows filling in the column while its final size is not
+ * known yet. Once all parts are added, the column must not be modified
+ * structurally anymore.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ChunkedDoubleColumn
+  implements DoubleColumn {
+
+  /** the parts. */
+  protected DoubleColumn[] m_Parts;
+
+  /** the index of the first value of each part. */
+  protected int[] m_Offsets;
+
+  /** the number of parts. */
+  protected int m_Count;
+
+  /** the total number of values. */
+  protected int m_Size;
+
+  /**
+   * Initializes the empty column.
+   */
+  public ChunkedDoubleColumn() {
+    m_Parts   = new DoubleColumn[16];
+    m_Offsets = new int[16];
+    m_Count   = 0;
+    m_Size    = 0;
+  }
+
+  /**
+   * Appends the part, which gets used as is. Empty parts get ignored.
+   *
+   * @param part	the part to append
+   */
+  public void add(DoubleColumn part) {
+    if (part.size() == 0)
+      return;
+    if (m_Count == m_Parts.length) {
+      m_Parts   = Arrays.copyOf(m_Parts, m_Count * 2);
+      m_Offsets = Arrays.copyOf(m_Offsets, m_Count * 2);
+    }
+    m_Parts[m_Count]   = part;
+    m_Offsets[m_Count] = m_Size;
+    m_Count++;
+    m_Size += part.size();
+  }
+
+  /**
+   * Locates the part containing the index.
+   *
+   * @param offsets	the index of the first value of each part
+   * @param count	the number of parts
+   * @param index	the index to locate
+   * @return		the part
+   */
+  static int find(int[] offsets, int count, int index) {
+    int		low;
+    int		high;
+    int		mid;
+
+    low  = 0;
+    high = count - 1;
+    while (low < high) {
+      mid = (low + high + 1) >>> 1;
+      if (offsets[mid] <= index)
+	low = mid;
+      else
+	high = mid - 1;
+    }
+
+    return low;
+  }
+
+  /**
+   * Returns the number of values.
+   *
+   * @return		the number of values
+   */
+  @Override
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the value.
+   *
+   * @param index	the index
+   * @return		the value
+   */
+  @Override
+  public double get(int index) {
+    int		part;
+
+    if ((index < 0) || (index >= m_Size))
+      throw new IndexOutOfBoundsException("Index " + index + " outside 0-" + (m_Size - 1));
+    part = find(m_Offsets, m_Count, index);
+    return m_Parts[part].get(index - m_Offsets[part]);
+  }
+
+  /**
+   * Sets the value.
+   *
+   * @param index	the index
+   * @param value	the value
+   */
+  @Override
+  public void set(int index, double value) {
+    int		part;
+
+    if ((index < 0) || (index >= m_Size))
+      throw new IndexOutOfBoundsException("Index " + index + " outside 0-" + (m_Size - 1));
+    part = find(m_Offsets, m_Count, index);
+    m_Parts[part].set(index - m_Offsets[part], value);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DoubleColumn.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+/**
+ * Interface for columns of doubles. Setting values at different indices
+ * from different threads is safe.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public interface DoubleColumn {
+
+  /**
+   * Returns the number of values.
+   *
+   * @return		the number of values
+   */
+  public int size();
+
+  /**
+   * Returns the value.
+   *
+   * @param index	the index
+   * @return		the value
+   */
+  public double get(int index);
+
+  /**
+   * Sets the value.
+   *
+   * @param index	the index
+   * @param value	the value
+   */
+  public void set(int index, double value);
+}
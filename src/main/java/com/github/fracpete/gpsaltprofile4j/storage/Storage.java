@@ -0,0 +1,123 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Storage.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+import java.io.File;
+
+/**
+ * Immutable storage configuration for profile columns. Columns are kept
+ * either on the heap or in direct memory, until the memory budget of a
+ * profile is exhausted; any further columns get spilled to memory-mapped
+ * temporary files.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class Storage {
+
+  /**
+   * Where to keep the columns while within the budget.
+   */
+  public enum Mode {
+    /** plain arrays on the heap. */
+    HEAP,
+    /** direct buffers outside the heap. */
+    OFFHEAP,
+  }
+
+  /** the value for an unlimited budget. */
+  public static final long UNLIMITED = -1;
+
+  /** the default storage: heap, unlimited. */
+  public static final Storage DEFAULT = new Storage(Mode.HEAP, UNLIMITED, null);
+
+  /** the mode. */
+  protected final Mode m_Mode;
+
+  /** the memory budget per profile in bytes, negative for unlimited. */
+  protected final long m_Budget;
+
+  /** the directory for the spill files, null for the system's temp directory. */
+  protected final File m_TmpDir;
+
+  /**
+   * Initializes the storage.
+   *
+   * @param mode	where to keep the columns
+   * @param budget	the memory budget per profile in bytes, negative for unlimited
+   * @param tmpDir	the directory for spill files, null for the system's temp directory
+   */
+  public Storage(Mode mode, long budget, File tmpDir) {
+    if (mode == null)
+      throw new IllegalArgumentException("No storage mode provided!");
+    if ((tmpDir != null) && !tmpDir.isDirectory())
+      throw new IllegalArgumentException("Temp directory does not exist: " + tmpDir);
+    m_Mode   = mode;
+    m_Budget = (budget < 0) ? UNLIMITED : budget;
+    m_TmpDir = tmpDir;
+  }
+
+  /**
+   * Returns the mode.
+   *
+   * @return		the mode
+   */
+  public Mode getMode() {
+    return m_Mode;
+  }
+
+  /**
+   * Returns the memory budget per profile.
+   *
+   * @return		the budget in bytes, {@link #UNLIMITED} if unlimited
+   */
+  public long getBudget() {
+    return m_Budget;
+  }
+
+  /**
+   * Returns the directory for spill files.
+   *
+   * @return		the directory, null for the system's temp directory
+   */
+  public File getTmpDir() {
+    return m_TmpDir;
+  }
+
+  /**
+   * Returns a new allocator for the columns of a single profile.
+   *
+   * @return		the allocator
+   */
+  public Allocator newAllocator() {
+    return new Allocator(this);
+  }
+
+  /**
+   * Returns a short description of the storage.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return m_Mode + ", budget: " + ((m_Budget == UNLIMITED) ? "unlimited" : m_Budget + " bytes")
+      + ", tmp dir: " + ((m_TmpDir == null) ? System.getProperty("java.io.tmpdir") : m_TmpDir);
+  }
+}
@@ -29,7 +29,9 @@ set ERROR_CODE=0
 
 @REM Slurp the command line arguments.  This loop allows for an unlimited number
 @REM of arguments (up to the command line limit, anyway).
-set MEMORY=256m
+if "%MEMORY%"=="" set MEMORY=256m
+set DIRECT=
+if not "%DIRECT_MEMORY%"=="" set DIRECT=-XX:MaxDirectMemorySize=%DIRECT_MEMORY%
 set MAIN=com.github.fracpete.gpsaltprofile4j.Generate
 set BASEDIR=%~dp0\..
 set JCMD=java
@@ -43,7 +45,7 @@ goto endInit
 @REM Reaching here means variables are defined and arguments have been captured
 :endInit
 
-%JCMD% -Xmx%MEMORY% -classpath %CLASSPATH% -Dbasedir="%BASEDIR%" %MAIN% %*
+%JCMD% -Xmx%MEMORY% %DIRECT% -classpath %CLASSPATH% -Dbasedir="%BASEDIR%" %MAIN% %*
 if ERRORLEVEL 1 goto error
 goto end
 
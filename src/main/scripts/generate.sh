@@ -89,8 +89,8 @@ if $cygwin; then
   [ -n "$AGENT" ] && AGENT=`cygpath --path --windows "$AGENT"`
 fi
 
-# check options
-MEMORY=256m
+# check options (heap and direct memory can be overridden via environment)
+MEMORY=${MEMORY:-256m}
 MAIN=com.github.fracpete.gpsaltprofile4j.Generate
 
 # launch class
@@ -98,5 +98,6 @@ MAIN=com.github.fracpete.gpsaltprofile4j.Generate
   -classpath "$CLASSPATH" \
   -Dbasedir="$BASEDIR" \
   -Xmx$MEMORY \
+  ${DIRECT_MEMORY:+-XX:MaxDirectMemorySize=$DIRECT_MEMORY} \
   $MAIN \
   "$@"
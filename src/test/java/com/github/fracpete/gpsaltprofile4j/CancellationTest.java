@@ -0,0 +1,203 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CancellationTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.formats.CSV;
+import com.github.fracpete.gpsformats4j.formats.GPX;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests cancelling conversions and their timeouts.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class CancellationTest {
+
+  /**
+   * Never-ending GPX, producing trackpoints forever.
+   */
+  public static class EndlessGPX
+    extends InputStream {
+
+    /** the current trackpoint. */
+    protected byte[] m_Current;
+
+    /** the position in the current trackpoint. */
+    protected int m_Pos;
+
+    /** the number of trackpoints so far. */
+    protected long m_Count;
+
+    /**
+     * Initializes the stream.
+     */
+    public EndlessGPX() {
+      m_Current = "<gpx><trk><name>endless</name><trkseg>\n".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int read() {
+      if (m_Pos == m_Current.length) {
+	m_Count++;
+	m_Current = ("<trkpt lat=\"47." + (m_Count % 1000) + "\" lon=\"8.0\"><ele>" + (m_Count % 500) + "</ele><time>2020-01-01T10:00:00Z</time></trkpt>\n").getBytes(StandardCharsets.UTF_8);
+	m_Pos = 0;
+      }
+      return m_Current[m_Pos++];
+    }
+  }
+
+  /** the executor to run the tasks on. */
+  protected ExecutorService m_Executor;
+
+  @Before
+  public void setUp() {
+    m_Executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    m_Executor.shutdownNow();
+  }
+
+  /**
+   * Checks that the future completed with a timeout.
+   *
+   * @param future	the future to check
+   * @param seconds	the maximum number of seconds to wait
+   */
+  protected void assertTimeout(CompletableFuture<?> future, int seconds) throws Exception {
+    try {
+      future.get(seconds, TimeUnit.SECONDS);
+      fail("Expected timeout");
+    }
+    catch (ExecutionException e) {
+      assertTrue("TimeoutException expected: " + e.getCause(), e.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test
+  public void testTimeoutWithoutChecks() throws Exception {
+    final CountDownLatch		release;
+    final Cancellation			cancellation;
+    CompletableFuture<String>		future;
+    long				start;
+
+    release      = new CountDownLatch(1);
+    cancellation = new Cancellation(200, TimeUnit.MILLISECONDS);
+    start        = System.nanoTime();
+    // ignores the token and interrupts, like a third-party parser
+    future = cancellation.async(() -> {
+      while (release.getCount() > 0) {
+	try {
+	  release.await();
+	}
+	catch (InterruptedException e) {
+	  // ignored
+	}
+      }
+      return "done";
+    }, m_Executor);
+    assertTimeout(future, 5);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+    assertTrue(cancellation.isStopped());
+    release.countDown();
+  }
+
+  @Test
+  public void testCancelInterruptsTask() throws Exception {
+    final CountDownLatch		started;
+    final AtomicBoolean			interrupted;
+    final Cancellation			cancellation;
+    CompletableFuture<String>		future;
+
+    started      = new CountDownLatch(1);
+    interrupted  = new AtomicBoolean();
+    cancellation = new Cancellation();
+    future = cancellation.async(() -> {
+      started.countDown();
+      try {
+	Thread.sleep(60000);
+      }
+      catch (InterruptedException e) {
+	interrupted.set(true);
+      }
+      return "done";
+    }, m_Executor);
+    started.await();
+    future.cancel(true);
+    assertTrue(cancellation.isCancelled());
+    // next task on the same thread must not see the interrupt
+    assertFalse(m_Executor.submit(() -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS));
+    assertTrue(interrupted.get());
+  }
+
+  @Test
+  public void testCompletesBeforeDeadline() throws Exception {
+    CompletableFuture<String>	future;
+
+    future = new Cancellation(10, TimeUnit.SECONDS).async(() -> "done", m_Executor);
+    assertEquals("done", future.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testNoneStaysUncancelled() throws Exception {
+    CompletableFuture<String>	future;
+
+    future = Cancellation.NONE.async(() -> {
+      Thread.sleep(60000);
+      return "done";
+    }, m_Executor);
+    future.cancel(true);
+    assertFalse(Cancellation.NONE.isCancelled());
+    assertFalse(Cancellation.NONE.isStopped());
+  }
+
+  @Test
+  public void testEndlessInputTimesOut() throws Exception {
+    ProfileEngine		engine;
+    CompletableFuture<String>	future;
+
+    engine = new ProfileEngine(GPX.class, "", CSV.class, "");
+    future = engine.convertAsync(new EndlessGPX(), new ByteArrayOutputStream(), m_Executor, 300, TimeUnit.MILLISECONDS);
+    assertTimeout(future, 5);
+    // the worker stops at its next check and becomes available again
+    assertEquals("free", m_Executor.submit(() -> "free").get(5, TimeUnit.SECONDS));
+  }
+}
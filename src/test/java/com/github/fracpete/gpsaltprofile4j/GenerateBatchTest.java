@@ -0,0 +1,213 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GenerateBatchTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.batch.WorkQueue;
+import com.github.fracpete.gpsaltprofile4j.batch.WorkerStats;
+import com.github.fracpete.gpsaltprofile4j.io.ParallelTraceReaderTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests several batch workers, each in its own JVM, processing the same
+ * queue.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class GenerateBatchTest {
+
+  /** the number of worker processes. */
+  public static final int WORKERS = 3;
+
+  /** the number of valid traces. */
+  public static final int TRACES = 8;
+
+  /** the maximum time for the workers in seconds. */
+  public static final int TIMEOUT = 120;
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Starts a JVM running the batch worker.
+   *
+   * @param log		the file to write the output to
+   * @param args	the options
+   * @return		the process
+   * @throws IOException	if starting fails
+   */
+  protected Process start(File log, String... args) throws IOException {
+    List<String>	cmd;
+    ProcessBuilder	builder;
+
+    cmd = new ArrayList<>();
+    cmd.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+    cmd.add("-cp");
+    cmd.add(System.getProperty("java.class.path"));
+    cmd.add(GenerateBatch.class.getName());
+    cmd.addAll(Arrays.asList(args));
+    builder = new ProcessBuilder(cmd);
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(log);
+
+    return builder.start();
+  }
+
+  /**
+   * Waits for the process to finish.
+   *
+   * @param process	the process
+   * @param log		the output of the process
+   * @throws Exception	if waiting fails or the process times out
+   */
+  protected void waitFor(Process process, File log) throws Exception {
+    if (!process.waitFor(TIMEOUT, TimeUnit.SECONDS)) {
+      process.destroyForcibly();
+      fail("Worker timed out:\n" + new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+    }
+    assertEquals(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8), 0, process.exitValue());
+  }
+
+  /**
+   * Returns the sorted names of the files in the directory.
+   *
+   * @param dir		the directory
+   * @return		the file names
+   */
+  protected List<String> names(File dir) {
+    String[]	result;
+
+    result = dir.list();
+    Arrays.sort(result);
+
+    return Arrays.asList(result);
+  }
+
+  @Test
+  public void testWorkerProcesses() throws Exception {
+    File		queue;
+    File		todo;
+    File		output;
+    File		input;
+    List<String>	traces;
+    List<String>	outputs;
+    List<WorkerStats>	stats;
+    Process[]		workers;
+    File		log;
+    String		total;
+    String[]		cells;
+    long		bytes;
+    long		files;
+    long		failed;
+    long		processed;
+    long		points;
+    int			i;
+
+    queue  = m_Folder.newFolder("queue");
+    output = new File(m_Folder.getRoot(), "output");
+    todo   = new File(queue, WorkQueue.TODO);
+    assertTrue(todo.mkdirs());
+    traces  = new ArrayList<>();
+    outputs = new ArrayList<>();
+    bytes   = 0;
+    for (i = 0; i < TRACES; i++) {
+      // same base name, different extension
+      input = new File(todo, "trace" + (i / 2) + ((i % 2 == 0) ? ".gpx" : ".xml"));
+      ParallelTraceReaderTest.writeGPX(input, "");
+      traces.add(input.getName());
+      outputs.add(input.getName() + ".csv");
+      bytes += input.length();
+    }
+    Files.write(new File(todo, "broken.gpx").toPath(), "<gpx><trk><trkseg><trkpt lat=".getBytes(StandardCharsets.UTF_8));
+
+    // same queue, separate JVMs
+    workers = new Process[WORKERS];
+    for (i = 0; i < WORKERS; i++)
+      workers[i] = start(new File(m_Folder.getRoot(), "worker" + i + ".log"),
+	"--" + GenerateBatch.QUEUE_DIR, queue.getAbsolutePath(),
+	"--" + GenerateBatch.INPUT_FORMAT, "GPX",
+	"--" + GenerateBatch.OUTPUT_DIR, output.getAbsolutePath(),
+	"--" + GenerateBatch.OUTPUT_FORMAT, "CSV",
+	"--" + GenerateBatch.WORKER, "worker" + i,
+	"--" + GenerateBatch.POLL, "1");
+    for (i = 0; i < WORKERS; i++)
+      waitFor(workers[i], new File(m_Folder.getRoot(), "worker" + i + ".log"));
+
+    // every trace processed exactly once
+    Collections.sort(traces);
+    Collections.sort(outputs);
+    assertEquals(traces, names(new File(queue, WorkQueue.DONE)));
+    assertEquals(Arrays.asList("broken.gpx", "broken.gpx" + WorkQueue.ERROR_EXT), names(new File(queue, WorkQueue.FAILED)));
+    assertTrue(names(todo).isEmpty());
+    assertTrue(names(new File(queue, WorkQueue.CLAIMED)).isEmpty());
+    assertEquals(outputs, names(output));
+    for (String name: outputs)
+      assertEquals(name, ParallelTraceReaderTest.TRACKS.length * ParallelTraceReaderTest.POINTS + 1, Files.readAllLines(new File(output, name).toPath()).size());
+
+    // statistics across the workers
+    stats     = WorkerStats.loadAll(new File(queue, WorkQueue.WORKERS));
+    files     = 0;
+    failed    = 0;
+    processed = 0;
+    points    = 0;
+    assertEquals(WORKERS, stats.size());
+    for (WorkerStats s: stats) {
+      files     += s.getFiles();
+      failed    += s.getFailed();
+      processed += s.getBytes();
+      points    += s.getPoints();
+    }
+    assertEquals(TRACES, files);
+    assertEquals(1, failed);
+    assertEquals(bytes, processed);
+    assertEquals((long) TRACES * ParallelTraceReaderTest.TRACKS.length * ParallelTraceReaderTest.POINTS, points);
+
+    // report across all workers
+    log = new File(m_Folder.getRoot(), "report.log");
+    waitFor(start(log, "--" + GenerateBatch.QUEUE_DIR, queue.getAbsolutePath(), "--" + GenerateBatch.REPORT), log);
+    total = null;
+    for (String line: Files.readAllLines(log.toPath()))
+      if (line.startsWith("Total (" + WORKERS + " workers)"))
+	total = line;
+    assertNotNull(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8), total);
+    cells = total.substring(total.indexOf(')') + 1).trim().split("\\s+");
+    assertEquals(files, Long.parseLong(cells[0]));
+    assertEquals(failed, Long.parseLong(cells[1]));
+    assertEquals(String.format("%.1f", bytes / 1048576.0), cells[2]);
+    assertEquals(points, Long.parseLong(cells[3]));
+  }
+}
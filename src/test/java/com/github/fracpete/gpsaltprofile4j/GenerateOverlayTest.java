@@ -0,0 +1,55 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GenerateOverlayTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests the naming of the overlaid traces.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class GenerateOverlayTest {
+
+  @Test
+  public void testUniqueNames() {
+    File[]	files;
+
+    files = new File[]{new File("a", "ride.gpx"), new File("b", "ride.gpx"), new File("run.gpx")};
+    assertArrayEquals(
+      new String[]{files[0].getPath(), files[1].getPath(), "run.gpx"},
+      GenerateOverlay.names(files));
+  }
+
+  @Test
+  public void testSameFileTwice() {
+    File[]	files;
+
+    files = new File[]{new File("ride.gpx"), new File("ride.gpx")};
+    assertArrayEquals(
+      new String[]{"ride.gpx", "ride.gpx (2)"},
+      GenerateOverlay.names(files));
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GenerateTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.io.ParallelTraceReaderTest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that generating several outputs from a single parse gives the same
+ * outputs as separate runs.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class GenerateTest {
+
+  /** the outputs: file name, format and options. */
+  public static final String[][] OUTPUTS = {
+    {"plain.csv", "CSV", ""},
+    {"metrics.csv", "CSV", "columns=ELAPSED,SPEED,GRADE"},
+    {"elevation.png", "PNG", "width=400 height=120"},
+    {"speed.png", "PNG", "width=300 height=100 x=ELAPSED y=SPEED"},
+  };
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /** the input file. */
+  protected File m_Input;
+
+  @Before
+  public void setUp() throws IOException {
+    m_Input = new File(m_Folder.getRoot(), "trace.gpx");
+    ParallelTraceReaderTest.writeGPX(m_Input, "");
+  }
+
+  /**
+   * Runs the conversion.
+   *
+   * @param args	the options
+   * @throws Exception	if setting the options fails
+   */
+  protected void generate(String... args) throws Exception {
+    Generate	generate;
+
+    generate = new Generate();
+    generate.setOptions(args);
+    assertNull(generate.execute());
+  }
+
+  /**
+   * Generates each output in a separate run.
+   *
+   * @param dir		the directory for the outputs
+   * @throws Exception	if generating fails
+   */
+  protected void separate(File dir) throws Exception {
+    for (String[] output: OUTPUTS)
+      generate(
+	"--" + Generate.INPUT_FILE, m_Input.getAbsolutePath(),
+	"--" + Generate.INPUT_FORMAT, "GPX",
+	"--" + Generate.OUTPUT_FILE, new File(dir, output[0]).getAbsolutePath(),
+	"--" + Generate.OUTPUT_FORMAT, output[1],
+	"--" + Generate.OUTPUT_OPTIONS, output[2]);
+  }
+
+  /**
+   * Returns the options for generating the outputs in a single run.
+   *
+   * @param input	the input file
+   * @param dir		the directory for the outputs
+   * @param outputs	the outputs to generate
+   * @return		the options
+   */
+  protected String[] fanOut(String input, File dir, String[]... outputs) {
+    String[]	result;
+    int		i;
+
+    result    = new String[4 + outputs.length * 6];
+    result[0] = "--" + Generate.INPUT_FILE;
+    result[1] = input;
+    result[2] = "--" + Generate.INPUT_FORMAT;
+    result[3] = "GPX";
+    for (i = 0; i < outputs.length; i++) {
+      result[4 + i * 6]     = "--" + Generate.OUTPUT_FILE;
+      result[4 + i * 6 + 1] = new File(dir, outputs[i][0]).getAbsolutePath();
+      result[4 + i * 6 + 2] = "--" + Generate.OUTPUT_FORMAT;
+      result[4 + i * 6 + 3] = outputs[i][1];
+      result[4 + i * 6 + 4] = "--" + Generate.OUTPUT_OPTIONS;
+      result[4 + i * 6 + 5] = outputs[i][2];
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks that the outputs are the same; images get compared pixel by
+   * pixel.
+   *
+   * @param expected	the directory with the expected outputs
+   * @param actual	the directory with the actual outputs
+   * @param outputs	the outputs to compare
+   * @throws IOException	if reading fails
+   */
+  protected void assertSameOutputs(File expected, File actual, String[]... outputs) throws IOException {
+    BufferedImage	exp;
+    BufferedImage	act;
+
+    for (String[] output: outputs) {
+      if (output[1].equals("PNG")) {
+	exp = ImageIO.read(new File(expected, output[0]));
+	act = ImageIO.read(new File(actual, output[0]));
+	assertEquals(output[0], exp.getWidth(), act.getWidth());
+	assertEquals(output[0], exp.getHeight(), act.getHeight());
+	assertArrayEquals(output[0],
+	  exp.getRGB(0, 0, exp.getWidth(), exp.getHeight(), null, 0, exp.getWidth()),
+	  act.getRGB(0, 0, act.getWidth(), act.getHeight(), null, 0, act.getWidth()));
+      }
+      else {
+	assertEquals(output[0],
+	  new String(Files.readAllBytes(new File(expected, output[0]).toPath()), StandardCharsets.UTF_8),
+	  new String(Files.readAllBytes(new File(actual, output[0]).toPath()), StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @Test
+  public void testFanOutSameAsSeparate() throws Exception {
+    File	expected;
+    File	actual;
+
+    expected = m_Folder.newFolder("separate");
+    actual   = m_Folder.newFolder("fanout");
+    separate(expected);
+    generate(fanOut(m_Input.getAbsolutePath(), actual, OUTPUTS));
+    assertSameOutputs(expected, actual, OUTPUTS);
+  }
+
+  @Test
+  public void testStreamedFanOutSameAsSeparate() throws Exception {
+    File	expected;
+    File	actual;
+    String[][]	outputs;
+    InputStream	stdin;
+
+    expected = m_Folder.newFolder("separate");
+    actual   = m_Folder.newFolder("streamed");
+    outputs  = new String[][]{OUTPUTS[0], OUTPUTS[1]};
+    separate(expected);
+    stdin = System.in;
+    try (InputStream in = new FileInputStream(m_Input)) {
+      // CSV outputs only, streamed from stdin
+      System.setIn(in);
+      generate(fanOut(Generate.STDIO, actual, outputs));
+    }
+    finally {
+      System.setIn(stdin);
+    }
+    assertSameOutputs(expected, actual, outputs);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProfileAssert.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Assertions for comparing profiles.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ProfileAssert {
+
+  /**
+   * Checks that the two profiles are exactly the same, i.e., all readers
+   * and generating from records agree down to the last bit.
+   *
+   * @param expected	the expected profile
+   * @param actual	the actual profile
+   */
+  public static void assertSameProfile(Profile expected, Profile actual) {
+    int		i;
+
+    assertEquals("size", expected.size(), actual.size());
+    assertEquals("rejected", expected.getRejected(), actual.getRejected());
+    for (i = 0; i < expected.size(); i++) {
+      assertEquals("track #" + i, expected.getTrack(i), actual.getTrack(i));
+      assertEquals("time #" + i, expected.getTime(i), actual.getTime(i));
+      assertEquals("lat #" + i, expected.getLatitude(i), actual.getLatitude(i), 0.0);
+      assertEquals("lon #" + i, expected.getLongitude(i), actual.getLongitude(i), 0.0);
+      assertEquals("elevation #" + i, expected.getElevation(i), actual.getElevation(i), 0.0);
+      assertEquals("elapsed #" + i, expected.getElapsed(i), actual.getElapsed(i), 0.0);
+      assertEquals("distance #" + i, expected.getDistance(i), actual.getDistance(i), 0.0);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProfileTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j;
+
+import com.github.fracpete.gpsaltprofile4j.formats.CSV;
+import com.github.fracpete.gpsaltprofile4j.formats.Metric;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the metrics derived by the profile and the CSV writer.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ProfileTest {
+
+  /**
+   * Returns a profile that starts stationary, followed by a track that
+   * also does.
+   *
+   * @return		the profile
+   */
+  protected Profile stationary() {
+    return new Profile(
+      new String[]{"one", "one", "one", "one", "one", "two", "two", "two"},
+      new String[]{"2020-01-01T10:00:00Z", "2020-01-01T10:00:10Z", "2020-01-01T10:00:20Z", "2020-01-01T10:00:30Z", "2020-01-01T10:00:40Z",
+	"2020-01-02T10:00:00Z", "2020-01-02T10:00:10Z", "2020-01-02T10:00:20Z"},
+      new double[]{47.0, 47.0, 47.0, 47.001, 47.001, 47.001, 47.001, 47.002},
+      new double[]{8.0, 8.0, 8.0, 8.0, 8.0, 8.0, 8.0, 8.0},
+      new double[]{0.0, 0.0, 0.0, 100.0, 100.0, 0.0, 0.0, 100.0},
+      new double[]{100, 100, 101, 102, 102, 102, 102, 100},
+      8);
+  }
+
+  @Test
+  public void testTrackStart() {
+    Profile	profile;
+
+    profile = stationary();
+    assertTrue(profile.isTrackStart(0));
+    assertFalse(profile.isTrackStart(1));
+    assertTrue(profile.isTrackStart(5));
+    assertFalse(profile.isTrackStart(6));
+  }
+
+  @Test
+  public void testStationaryStart() {
+    Profile	profile;
+
+    profile = stationary();
+    assertTrue(Double.isNaN(profile.getSpeed(0)));
+    assertTrue(Double.isNaN(profile.getGrade(0)));
+    // not moving yet, but time passes
+    assertEquals(0.0, profile.getDistance(1), 0.0);
+    assertEquals(0.0, profile.getSpeed(1), 0.0);
+    assertEquals(0.0, profile.getSpeed(2), 0.0);
+    assertTrue(Double.isNaN(profile.getGrade(1)));
+    assertTrue(Double.isNaN(profile.getGrade(2)));
+    assertEquals(10.0, profile.getSpeed(3), 0.0);
+    assertEquals(1.0, profile.getGrade(3), 0.0);
+    // stopped again
+    assertEquals(0.0, profile.getSpeed(4), 0.0);
+    // not derived from the last point of the previous track
+    assertTrue(Double.isNaN(profile.getSpeed(5)));
+    assertTrue(Double.isNaN(profile.getGrade(5)));
+    assertEquals(0.0, profile.getSpeed(6), 0.0);
+    assertEquals(10.0, profile.getSpeed(7), 0.0);
+    assertEquals(-2.0, profile.getGrade(7), 0.0);
+  }
+
+  @Test
+  public void testStationaryStartCSV() {
+    Profile			profile;
+    CSV				csv;
+    ByteArrayOutputStream	out;
+    String[]			lines;
+    String[]			cells;
+    int				i;
+
+    profile = stationary();
+    csv     = new CSV();
+    csv.setColumns(new Metric[]{Metric.SPEED, Metric.GRADE});
+    out     = new ByteArrayOutputStream();
+    assertNull(csv.write(profile, out));
+    lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\r?\n");
+    assertEquals(profile.size() + 1, lines.length);
+    for (i = 0; i < profile.size(); i++) {
+      cells = lines[i + 1].split(",", -1);
+      assertEquals("speed #" + i, Double.isNaN(profile.getSpeed(i)) ? "" : "" + profile.getSpeed(i), cells[4]);
+      assertEquals("grade #" + i, Double.isNaN(profile.getGrade(i)) ? "" : "" + profile.getGrade(i), cells[5]);
+    }
+    assertEquals("0.0", lines[2].split(",", -1)[4]);
+  }
+}
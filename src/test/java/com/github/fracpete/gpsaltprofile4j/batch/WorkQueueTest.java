@@ -0,0 +1,334 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WorkQueueTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.batch;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the work queue, also with several workers claiming concurrently.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class WorkQueueTest {
+
+  /** the lease timeout in msec. */
+  public static final long LEASE = 60000;
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /** the queue directory. */
+  protected File m_Dir;
+
+  @Before
+  public void setUp() throws IOException {
+    m_Dir = m_Folder.newFolder("queue");
+    queue("setup").initialize();
+  }
+
+  /**
+   * Returns a queue for the worker.
+   *
+   * @param worker	the worker ID
+   * @return		the queue
+   */
+  protected WorkQueue queue(String worker) {
+    return new WorkQueue(m_Dir, worker, LEASE);
+  }
+
+  /**
+   * Adds a file to the todo directory.
+   *
+   * @param name	the file name
+   * @param content	the content of the file
+   * @return		the file
+   * @throws IOException	if writing fails
+   */
+  protected File add(String name, String content) throws IOException {
+    File	result;
+
+    result = new File(new File(m_Dir, WorkQueue.TODO), name);
+    Files.write(result.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+    return result;
+  }
+
+  /**
+   * Returns the sorted names of the files in the sub-directory.
+   *
+   * @param name	the sub-directory
+   * @return		the file names
+   */
+  protected List<String> names(String name) {
+    String[]	result;
+
+    result = new File(m_Dir, name).list();
+    Arrays.sort(result);
+
+    return Arrays.asList(result);
+  }
+
+  /**
+   * Makes the file look as if it had not been touched for longer than the
+   * lease.
+   *
+   * @param file	the file to age
+   */
+  protected void age(File file) {
+    assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * LEASE));
+  }
+
+  @Test
+  public void testClaimAndComplete() throws IOException {
+    WorkQueue	queue;
+    File	claimed;
+
+    queue = queue("a");
+    add("trace.gpx", "x");
+    claimed = queue.claim();
+    assertNotNull(claimed);
+    assertEquals("a" + WorkQueue.SEPARATOR + "trace.gpx", claimed.getName());
+    assertEquals("trace.gpx", WorkQueue.originalName(claimed));
+    assertFalse(queue.isDrained());
+    assertEquals(null, queue.claim());
+    assertTrue(queue.complete(claimed));
+    assertTrue(queue.isDrained());
+    assertEquals(Arrays.asList("trace.gpx"), names(WorkQueue.DONE));
+  }
+
+  @Test
+  public void testFail() throws IOException {
+    WorkQueue	queue;
+    File	claimed;
+
+    queue = queue("a");
+    add("trace.gpx", "x");
+    claimed = queue.claim();
+    assertTrue(queue.fail(claimed, "broken"));
+    assertEquals(Arrays.asList("trace.gpx", "trace.gpx" + WorkQueue.ERROR_EXT), names(WorkQueue.FAILED));
+    assertEquals("broken", new String(Files.readAllBytes(new File(new File(m_Dir, WorkQueue.FAILED), "trace.gpx" + WorkQueue.ERROR_EXT).toPath()), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testClaimOfOldFileIsNotStale() throws IOException {
+    File	claimed;
+
+    // eg copied into the queue preserving the time stamp
+    age(add("trace.gpx", "x"));
+    claimed = queue("a").claim();
+    assertNotNull(claimed);
+    assertTrue(queue("b").reclaim().isEmpty());
+    assertTrue(queue("a").complete(claimed));
+  }
+
+  @Test
+  public void testReclaimStale() throws IOException {
+    WorkQueue	queue;
+    File	claimed;
+    List<File>	reclaimed;
+
+    queue = queue("a");
+    add("trace.gpx", "x");
+    claimed = queue.claim();
+    age(claimed);
+    reclaimed = queue("b").reclaim();
+    assertEquals(1, reclaimed.size());
+    assertEquals("trace.gpx", reclaimed.get(0).getName());
+    assertEquals(Arrays.asList("trace.gpx"), names(WorkQueue.TODO));
+    assertTrue(names(WorkQueue.CLAIMED).isEmpty());
+    // the crashed worker lost its claim
+    assertFalse(queue.renew(claimed));
+    assertFalse(queue.complete(claimed));
+  }
+
+  @Test
+  public void testReclaimKeepsExisting() throws IOException {
+    File	claimed;
+    List<File>	reclaimed;
+
+    add("trace.gpx", "first");
+    claimed = queue("a").claim();
+    age(claimed);
+    add("trace.gpx", "second");
+    reclaimed = queue("b").reclaim();
+    assertEquals(1, reclaimed.size());
+    assertEquals("trace-1.gpx", reclaimed.get(0).getName());
+    assertEquals(Arrays.asList("trace-1.gpx", "trace.gpx"), names(WorkQueue.TODO));
+    assertEquals("first", new String(Files.readAllBytes(reclaimed.get(0).toPath()), StandardCharsets.UTF_8));
+    assertEquals("second", new String(Files.readAllBytes(new File(new File(m_Dir, WorkQueue.TODO), "trace.gpx").toPath()), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCompleteKeepsExisting() throws IOException {
+    WorkQueue	queue;
+
+    queue = queue("a");
+    add("trace.gpx", "first");
+    assertTrue(queue.complete(queue.claim()));
+    add("trace.gpx", "second");
+    assertTrue(queue.complete(queue.claim()));
+    assertEquals(Arrays.asList("trace-1.gpx", "trace.gpx"), names(WorkQueue.DONE));
+    assertEquals("first", new String(Files.readAllBytes(new File(new File(m_Dir, WorkQueue.DONE), "trace.gpx").toPath()), StandardCharsets.UTF_8));
+    assertEquals("second", new String(Files.readAllBytes(new File(new File(m_Dir, WorkQueue.DONE), "trace-1.gpx").toPath()), StandardCharsets.UTF_8));
+    assertTrue(names(WorkQueue.CLAIMED).isEmpty());
+  }
+
+  @Test
+  public void testFailKeepsExisting() throws IOException {
+    WorkQueue	queue;
+
+    queue = queue("a");
+    add("trace.gpx", "first");
+    assertTrue(queue.fail(queue.claim(), "broken"));
+    add("trace.gpx", "second");
+    assertTrue(queue.fail(queue.claim(), "also broken"));
+    assertEquals(Arrays.asList(
+      "trace-1.gpx", "trace-1.gpx" + WorkQueue.ERROR_EXT, "trace.gpx", "trace.gpx" + WorkQueue.ERROR_EXT), names(WorkQueue.FAILED));
+    assertEquals("broken", new String(Files.readAllBytes(new File(new File(m_Dir, WorkQueue.FAILED), "trace.gpx" + WorkQueue.ERROR_EXT).toPath()), StandardCharsets.UTF_8));
+    assertEquals("also broken", new String(Files.readAllBytes(new File(new File(m_Dir, WorkQueue.FAILED), "trace-1.gpx" + WorkQueue.ERROR_EXT).toPath()), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testNumbered() {
+    assertEquals("trace.gpx", WorkQueue.numbered("trace.gpx", 0));
+    assertEquals("trace-2.gpx", WorkQueue.numbered("trace.gpx", 2));
+    assertEquals("trace-1", WorkQueue.numbered("trace", 1));
+    assertEquals(".hidden-1", WorkQueue.numbered(".hidden", 1));
+  }
+
+  @Test
+  public void testConcurrentWorkers() throws Exception {
+    final Map<String,AtomicInteger>	processed;
+    final CyclicBarrier			barrier;
+    ExecutorService			executor;
+    List<Future<Integer>>		futures;
+    Set<String>				expected;
+    int					workers;
+    int					total;
+    int					i;
+
+    expected = new HashSet<>();
+    for (i = 0; i < 300; i++) {
+      add("trace" + i + ".gpx", "" + i);
+      expected.add("trace" + i + ".gpx");
+    }
+    workers   = 8;
+    processed = new ConcurrentHashMap<>();
+    barrier   = new CyclicBarrier(workers);
+    executor  = Executors.newFixedThreadPool(workers);
+    futures   = new ArrayList<>();
+    for (i = 0; i < workers; i++) {
+      final WorkQueue queue = queue("w" + i);
+      futures.add(executor.submit((Callable<Integer>) () -> {
+	int count = 0;
+	File claimed;
+	barrier.await();
+	while (!queue.isDrained()) {
+	  queue.reclaim();
+	  claimed = queue.claim();
+	  if (claimed == null)
+	    continue;
+	  processed.computeIfAbsent(WorkQueue.originalName(claimed), k -> new AtomicInteger()).incrementAndGet();
+	  if (queue.complete(claimed))
+	    count++;
+	}
+	return count;
+      }));
+    }
+    total = 0;
+    for (Future<Integer> future: futures)
+      total += future.get();
+    executor.shutdown();
+
+    assertEquals(expected.size(), total);
+    assertEquals(expected, processed.keySet());
+    for (String name: processed.keySet())
+      assertEquals(name, 1, processed.get(name).get());
+    assertEquals(expected, new HashSet<>(names(WorkQueue.DONE)));
+    assertTrue(names(WorkQueue.TODO).isEmpty());
+    assertTrue(names(WorkQueue.CLAIMED).isEmpty());
+  }
+
+  @Test
+  public void testConcurrentReclaim() throws Exception {
+    final CyclicBarrier		barrier;
+    ExecutorService		executor;
+    List<Future<List<File>>>	futures;
+    WorkQueue			queue;
+    Set<String>			expected;
+    int				total;
+    int				i;
+
+    queue    = queue("crashed");
+    expected = new HashSet<>();
+    for (i = 0; i < 100; i++) {
+      add("trace" + i + ".gpx", "" + i);
+      expected.add("trace" + i + ".gpx");
+    }
+    for (i = 0; i < 100; i++)
+      age(queue.claim());
+    barrier  = new CyclicBarrier(4);
+    executor = Executors.newFixedThreadPool(4);
+    futures  = new ArrayList<>();
+    for (i = 0; i < 4; i++) {
+      final WorkQueue other = queue("w" + i);
+      futures.add(executor.submit(() -> {
+	barrier.await();
+	return other.reclaim();
+      }));
+    }
+    total = 0;
+    for (Future<List<File>> future: futures)
+      total += future.get().size();
+    executor.shutdown();
+
+    // each stale claim went back exactly once, under its own name
+    assertEquals(expected.size(), total);
+    assertEquals(expected, new HashSet<>(names(WorkQueue.TODO)));
+    assertTrue(names(WorkQueue.CLAIMED).isEmpty());
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ElevationCorrectionTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.dem;
+
+import com.github.fracpete.gpsaltprofile4j.Generate;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsaltprofile4j.io.ErrorPolicy;
+import com.github.fracpete.gpsaltprofile4j.io.PointHandler;
+import com.github.fracpete.gpsformats4j.formats.GPX;
+import gnu.trove.list.array.TDoubleArrayList;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests correcting elevations with the different modes, using a synthetic
+ * tile.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ElevationCorrectionTest {
+
+  /** the trace: DEM elevation 300 for the first two points, no tile for the last one. */
+  public static final String TRACE =
+    "one,2020-01-01T10:00:00Z,47.75,8.25,100\n"
+      + "one,2020-01-01T10:00:10Z,47.75,8.25,\n"
+      + "one,2020-01-01T10:00:20Z,10.5,10.5,120\n";
+
+  /** the trace with malformed elevations, between two valid ones and at the end. */
+  public static final String MALFORMED =
+    "one,2020-01-01T10:00:00Z,47.75,8.25,100\n"
+      + "one,2020-01-01T10:00:10Z,47.75,8.26,oops\n"
+      + "one,2020-01-01T10:00:20Z,47.75,8.27,120\n"
+      + "one,2020-01-01T10:00:30Z,47.75,8.28,oops\n";
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /** the tiles. */
+  protected TileCache m_Tiles;
+
+  @Before
+  public void setUp() throws IOException {
+    HGTTileTest.writeTile(m_Folder.getRoot(), 47, 8, HGTTileTest.SAMPLES);
+    m_Tiles = new TileCache(m_Folder.getRoot(), 2);
+  }
+
+  /**
+   * Parses the records.
+   *
+   * @param csv		the records
+   * @return		the records
+   * @throws IOException	if parsing fails
+   */
+  protected List<CSVRecord> records(String csv) throws IOException {
+    return CSVFormat.DEFAULT
+      .withHeader(Format.KEY_TRACK, Format.KEY_TIME, Generate.KEY_LAT, Generate.KEY_LON, Format.KEY_ELEVATION)
+      .parse(new StringReader(csv))
+      .getRecords();
+  }
+
+  /**
+   * Corrects the trace and checks that correcting streamed points gives
+   * the same elevations.
+   *
+   * @param mode	the mode
+   * @param weight	the weight of the DEM elevation
+   * @return		the corrected profile
+   * @throws IOException	if correcting fails
+   */
+  protected Profile correct(ElevationCorrection.Mode mode, double weight) throws IOException {
+    ElevationCorrection		correction;
+    Profile			profile;
+    Profile			result;
+    final TDoubleArrayList	streamed;
+    PointHandler		handler;
+    int				i;
+
+    correction = new ElevationCorrection(m_Tiles, mode, weight);
+    profile    = ProfileEngine.generate(records(TRACE));
+    result     = correction.correct(profile);
+    streamed   = new TDoubleArrayList();
+    handler    = correction.correcting((track, time, elapsed, lat, lon, distance, elevation) -> streamed.add(elevation));
+    for (i = 0; i < profile.size(); i++)
+      handler.point(profile.getTrack(i), profile.getTime(i), profile.getElapsed(i), profile.getLatitude(i), profile.getLongitude(i), profile.getDistance(i), profile.getElevation(i));
+    for (i = 0; i < profile.size(); i++)
+      assertEquals("streamed #" + i, result.getElevation(i), streamed.get(i), 0.0);
+
+    return result;
+  }
+
+  @Test
+  public void testReplace() throws IOException {
+    Profile	profile;
+
+    profile = correct(ElevationCorrection.Mode.REPLACE, ElevationCorrection.DEFAULT_WEIGHT);
+    assertEquals(300, profile.getElevation(0), 1e-9);
+    assertEquals(300, profile.getElevation(1), 1e-9);
+    // no tile, recorded elevation kept
+    assertEquals(120, profile.getElevation(2), 0.0);
+  }
+
+  @Test
+  public void testBlend() throws IOException {
+    Profile	profile;
+
+    profile = correct(ElevationCorrection.Mode.BLEND, 0.25);
+    assertEquals(0.25 * 300 + 0.75 * 100, profile.getElevation(0), 1e-9);
+    // missing elevation, DEM only
+    assertEquals(300, profile.getElevation(1), 1e-9);
+    assertEquals(120, profile.getElevation(2), 0.0);
+  }
+
+  @Test
+  public void testFill() throws IOException {
+    Profile	profile;
+
+    profile = correct(ElevationCorrection.Mode.FILL, ElevationCorrection.DEFAULT_WEIGHT);
+    assertEquals(100, profile.getElevation(0), 0.0);
+    assertEquals(300, profile.getElevation(1), 1e-9);
+    assertEquals(120, profile.getElevation(2), 0.0);
+  }
+
+  @Test
+  public void testFillAfterInterpolate() throws Exception {
+    ProfileEngine	engine;
+    Profile		profile;
+
+    engine = new ProfileEngine(GPX.class, "")
+      .withErrorPolicy(ErrorPolicy.INTERPOLATE)
+      .withCorrection(new ElevationCorrection(m_Tiles, ElevationCorrection.Mode.FILL, ElevationCorrection.DEFAULT_WEIGHT));
+    profile = engine.profile(records(MALFORMED));
+    assertEquals(100, profile.getElevation(0), 0.0);
+    // interpolated while reading, not filled in from the DEM
+    assertTrue(profile.getElevation(1) > 100 && profile.getElevation(1) < 120);
+    assertEquals(120, profile.getElevation(2), 0.0);
+    // nothing to interpolate from, still missing after reading and filled in
+    assertEquals(m_Tiles.get(47.75, 8.28).elevation(47.75, 8.28), profile.getElevation(3), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWeight() {
+    new ElevationCorrection(m_Tiles, ElevationCorrection.Mode.BLEND, 1.5);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * HGTTileTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.dem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading synthetic HGT tiles and caching them.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class HGTTileTest {
+
+  /** 3x3 samples, north to south; 258 reads as 513 if little-endian. */
+  public static final short[][] SAMPLES = {
+    {100, 200, 300},
+    {400, 500, 600},
+    {700, 800, 258},
+  };
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Writes the samples as big-endian HGT tile.
+   *
+   * @param dir		the directory to write to
+   * @param lat		the latitude of the south-western corner
+   * @param lon		the longitude of the south-western corner
+   * @param samples	the samples, row by row from north to south
+   * @return		the file
+   * @throws IOException	if writing fails
+   */
+  public static File writeTile(File dir, int lat, int lon, short[][] samples) throws IOException {
+    File	result;
+    ByteBuffer	data;
+
+    data = ByteBuffer.allocate(samples.length * samples.length * 2);
+    for (short[] row: samples) {
+      for (short sample: row)
+	data.putShort(sample);
+    }
+    result = new File(dir, HGTTile.filename(lat, lon));
+    Files.write(result.toPath(), data.array());
+
+    return result;
+  }
+
+  @Test
+  public void testFilename() {
+    assertEquals("N47E008.hgt", HGTTile.filename(47, 8));
+    assertEquals("N00E000.hgt", HGTTile.filename(0, 0));
+    assertEquals("S01W123.hgt", HGTTile.filename(-1, -123));
+  }
+
+  @Test
+  public void testIndexing() throws IOException {
+    HGTTile	tile;
+
+    writeTile(m_Folder.getRoot(), 47, 8, SAMPLES);
+    tile = HGTTile.load(m_Folder.getRoot(), 47, 8);
+    assertTrue(tile.isAvailable());
+    // row 0 is the northern edge, column 0 the western one
+    assertEquals(100, tile.elevation(48.0, 8.0), 0.0);
+    assertEquals(200, tile.elevation(48.0, 8.5), 0.0);
+    assertEquals(400, tile.elevation(47.5, 8.0), 0.0);
+    assertEquals(500, tile.elevation(47.5, 8.5), 0.0);
+    assertEquals(800, tile.elevation(47.0, 8.5), 0.0);
+  }
+
+  @Test
+  public void testByteOrder() throws IOException {
+    HGTTile	tile;
+
+    writeTile(m_Folder.getRoot(), 47, 8, SAMPLES);
+    tile = HGTTile.load(m_Folder.getRoot(), 47, 8);
+    assertEquals(258, tile.elevation(47.0, 9.0), 0.0);
+  }
+
+  @Test
+  public void testBilinear() throws IOException {
+    HGTTile	tile;
+
+    writeTile(m_Folder.getRoot(), 47, 8, SAMPLES);
+    tile = HGTTile.load(m_Folder.getRoot(), 47, 8);
+    assertEquals((100 + 200 + 400 + 500) / 4.0, tile.elevation(47.75, 8.25), 1e-9);
+    assertEquals(0.75 * 100 + 0.25 * 200, tile.elevation(48.0, 8.125), 1e-9);
+    assertEquals(0.5 * 400 + 0.5 * 700, tile.elevation(47.25, 8.0), 1e-9);
+    // eastern and southern edges use the last row/column of samples
+    assertEquals(300, tile.elevation(48.0, 9.0), 0.0);
+    assertEquals(0.5 * 300 + 0.5 * 600, tile.elevation(47.75, 9.0), 1e-9);
+    assertEquals(0.5 * 700 + 0.5 * 800, tile.elevation(47.0, 8.25), 1e-9);
+  }
+
+  @Test
+  public void testVoid() throws IOException {
+    HGTTile	tile;
+
+    writeTile(m_Folder.getRoot(), 47, 8, new short[][]{
+      {100, 200, 300},
+      {400, HGTTile.VOID, 600},
+      {700, 800, 900},
+    });
+    tile = HGTTile.load(m_Folder.getRoot(), 47, 8);
+    assertTrue(Double.isNaN(tile.elevation(47.5, 8.5)));
+    assertTrue(Double.isNaN(tile.elevation(47.75, 8.25)));
+    assertTrue(Double.isNaN(tile.elevation(47.25, 8.75)));
+  }
+
+  @Test
+  public void testMissing() throws IOException {
+    HGTTile	tile;
+
+    tile = HGTTile.load(m_Folder.getRoot(), 47, 8);
+    assertFalse(tile.isAvailable());
+    assertTrue(Double.isNaN(tile.elevation(47.5, 8.5)));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidSize() throws IOException {
+    Files.write(new File(m_Folder.getRoot(), HGTTile.filename(47, 8)).toPath(), new byte[17]);
+    HGTTile.load(m_Folder.getRoot(), 47, 8);
+  }
+
+  @Test
+  public void testCacheEviction() throws IOException {
+    TileCache	cache;
+    HGTTile	tile;
+
+    writeTile(m_Folder.getRoot(), 47, 8, SAMPLES);
+    cache = new TileCache(m_Folder.getRoot(), 2);
+    tile  = cache.get(47.5, 8.5);
+    assertEquals(47, tile.getLatitude());
+    assertEquals(8, tile.getLongitude());
+    assertSame(tile, cache.get(47, 8));
+    // missing tiles get cached as well
+    assertSame(cache.get(10, 10), cache.get(10.5, 10.5));
+    // least recently used
+    assertSame(tile, cache.get(47, 8));
+    cache.get(11, 11);
+    assertSame(tile, cache.get(47, 8));
+    cache.get(12, 12);
+    cache.get(13, 13);
+    assertNotSame(tile, cache.get(47, 8));
+    assertEquals(500, cache.get(47, 8).elevation(47.5, 8.5), 0.0);
+  }
+
+  @Test
+  public void testNegativeCoordinates() throws IOException {
+    TileCache	cache;
+    HGTTile	tile;
+
+    writeTile(m_Folder.getRoot(), -1, -123, SAMPLES);
+    cache = new TileCache(m_Folder.getRoot(), 1);
+    tile  = cache.get(-0.5, -122.5);
+    assertEquals(-1, tile.getLatitude());
+    assertEquals(-123, tile.getLongitude());
+    assertEquals(500, tile.elevation(-0.5, -122.5), 0.0);
+  }
+}
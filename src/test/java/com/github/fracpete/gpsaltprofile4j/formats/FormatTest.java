@@ -0,0 +1,148 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FormatTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.formats;
+
+import com.github.fracpete.gpsaltprofile4j.Cancellation;
+import com.github.fracpete.gpsaltprofile4j.Generate;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the default methods of the format interface and the formatting of
+ * elevations.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class FormatTest {
+
+  /** the trace as records. */
+  public static final String TRACE =
+    "one,2020-01-01T10:00:00Z,47.0,8.0,100\n"
+      + "one,2020-01-01T10:00:10Z,47.001,8.0,100.5\n"
+      + "one,2020-01-01T10:00:20Z,47.002,8.0,\n";
+
+  /**
+   * Format that only implements writing records, like formats written
+   * before profiles got introduced.
+   */
+  public static class RecordsOnly
+    implements Format {
+
+    @Override
+    public String write(List<CSVRecord> data, File output) {
+      StringBuilder	content;
+
+      content = new StringBuilder();
+      for (CSVRecord rec: data)
+	content.append(rec.get(KEY_TRACK)).append(',').append(rec.get(KEY_ELEVATION)).append('\n');
+      try {
+	Files.write(output.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+	return null;
+      }
+      catch (IOException e) {
+	return "Failed to write: " + output + "\n" + e;
+      }
+    }
+  }
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Generates the profile from the records.
+   *
+   * @return		the profile
+   * @throws IOException	if generating fails
+   */
+  protected Profile profile() throws IOException {
+    List<CSVRecord>	records;
+
+    records = CSVFormat.DEFAULT
+      .withHeader(Format.KEY_TRACK, Format.KEY_TIME, Generate.KEY_LAT, Generate.KEY_LON, Format.KEY_ELEVATION)
+      .parse(new StringReader(TRACE))
+      .getRecords();
+
+    return ProfileEngine.generate(records);
+  }
+
+  @Test
+  public void testDefaultWriteFile() throws IOException {
+    File	file;
+
+    file = m_Folder.newFile("out.txt");
+    assertNull(new RecordsOnly().write(profile(), file));
+    assertEquals("one,100\none,100.5\none,\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDefaultWriteStream() throws IOException {
+    ByteArrayOutputStream	out;
+
+    out = new ByteArrayOutputStream();
+    assertNull(new RecordsOnly().write(profile(), out));
+    assertEquals("one,100\none,100.5\none,\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDefaultWriteCancelled() throws IOException {
+    Cancellation		cancellation;
+    File			file;
+    ByteArrayOutputStream	out;
+
+    cancellation = new Cancellation();
+    cancellation.cancel();
+    file = new File(m_Folder.getRoot(), "out.txt");
+    assertNotNull(new RecordsOnly().write(profile(), file, cancellation));
+    assertFalse(file.exists());
+    out = new ByteArrayOutputStream();
+    assertNotNull(new RecordsOnly().write(profile(), out, cancellation));
+    assertEquals(0, out.size());
+  }
+
+  @Test
+  public void testFormatElevation() {
+    assertEquals("123", Profile.formatElevation(123.0));
+    assertEquals("-5", Profile.formatElevation(-5.0));
+    assertEquals("0", Profile.formatElevation(0.0));
+    assertEquals("123.5", Profile.formatElevation(123.50));
+    assertEquals("0.25", Profile.formatElevation(0.25));
+    assertEquals("", Profile.formatElevation(Double.NaN));
+    assertEquals("1.0E15", Profile.formatElevation(1e15));
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ImagePoolTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.formats;
+
+import com.github.fracpete.gpsaltprofile4j.Generate;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the image pool and that rendering PNGs into pooled images gives
+ * the same pixels as rendering into fresh ones.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ImagePoolTest {
+
+  @Before
+  public void setUp() {
+    ImagePool.SHARED.clear();
+  }
+
+  @After
+  public void tearDown() {
+    ImagePool.SHARED.clear();
+  }
+
+  /**
+   * Generates a profile with the elevations, one point every 10 seconds.
+   *
+   * @param elevations	the elevations
+   * @return		the profile
+   * @throws IOException	if generating fails
+   */
+  protected Profile profile(double... elevations) throws IOException {
+    StringBuilder	csv;
+    List<CSVRecord>	records;
+    int			i;
+
+    csv = new StringBuilder();
+    for (i = 0; i < elevations.length; i++)
+      csv.append("one,2020-01-01T10:").append(String.format("%02d:%02d", i / 6, (i % 6) * 10)).append("Z,")
+	.append(47.0 + i * 0.001).append(",8.0,").append(elevations[i]).append('\n');
+    records = CSVFormat.DEFAULT
+      .withHeader(Format.KEY_TRACK, Format.KEY_TIME, Generate.KEY_LAT, Generate.KEY_LON, Format.KEY_ELEVATION)
+      .parse(new StringReader(csv.toString()))
+      .getRecords();
+
+    return ProfileEngine.generate(records);
+  }
+
+  /**
+   * Sets up a PNG format.
+   *
+   * @param width	the width
+   * @param height	the height
+   * @param x		the metric for the horizontal axis
+   * @param y		the metric for the vertical axis
+   * @return		the format
+   */
+  protected PNG png(int width, int height, Metric x, Metric y) {
+    PNG		result;
+
+    result = new PNG();
+    result.setWidth(width);
+    result.setHeight(height);
+    result.setX(x);
+    result.setY(y);
+
+    return result;
+  }
+
+  /**
+   * Renders the profile and returns the pixels of the decoded PNG.
+   *
+   * @param png		the format to use
+   * @param profile	the profile to render
+   * @return		the pixels
+   * @throws IOException	if decoding fails
+   */
+  protected int[] pixels(PNG png, Profile profile) throws IOException {
+    ByteArrayOutputStream	out;
+    BufferedImage		image;
+
+    out = new ByteArrayOutputStream();
+    assertNull(png.write(profile, out));
+    image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(png.getWidth(), image.getWidth());
+    assertEquals(png.getHeight(), image.getHeight());
+
+    return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+  }
+
+  /**
+   * Renders the profile into a newly created image. The pool must not
+   * hold an idle image of that size.
+   *
+   * @param png		the format to use
+   * @param profile	the profile to render
+   * @return		the pixels
+   * @throws IOException	if decoding fails
+   */
+  protected int[] fresh(PNG png, Profile profile) throws IOException {
+    long	created;
+    int[]	result;
+
+    created = ImagePool.SHARED.getCreated();
+    result  = pixels(png, profile);
+    assertEquals(created + 1, ImagePool.SHARED.getCreated());
+
+    return result;
+  }
+
+  /**
+   * Renders the profile into a pooled image.
+   *
+   * @param png		the format to use
+   * @param profile	the profile to render
+   * @return		the pixels
+   * @throws IOException	if decoding fails
+   */
+  protected int[] pooled(PNG png, Profile profile) throws IOException {
+    long	reused;
+    int[]	result;
+
+    reused = ImagePool.SHARED.getReused();
+    result = pixels(png, profile);
+    assertEquals(reused + 1, ImagePool.SHARED.getReused());
+
+    return result;
+  }
+
+  @Test
+  public void testCounters() {
+    ImagePool		pool;
+    BufferedImage	first;
+    BufferedImage	second;
+
+    pool  = new ImagePool(1, 2);
+    first = pool.acquire(10, 20);
+    assertEquals(10, first.getWidth());
+    assertEquals(20, first.getHeight());
+    second = pool.acquire(10, 20);
+    assertNotSame(first, second);
+    assertEquals(2, pool.getCreated());
+    assertEquals(0, pool.getReused());
+    pool.release(first);
+    // only one idle image per size
+    pool.release(second);
+    assertSame(first, pool.acquire(10, 20));
+    assertEquals(1, pool.getReused());
+    assertNotSame(second, pool.acquire(10, 20));
+    assertEquals(3, pool.getCreated());
+  }
+
+  @Test
+  public void testSizes() {
+    ImagePool		pool;
+    BufferedImage	image;
+
+    pool  = new ImagePool(2, 2);
+    image = pool.acquire(10, 20);
+    pool.release(image);
+    // same number of pixels, different size
+    assertNotSame(image, pool.acquire(20, 10));
+    assertSame(image, pool.acquire(10, 20));
+    pool.release(image);
+    // least recently used size gets dropped
+    pool.release(pool.acquire(30, 30));
+    pool.release(pool.acquire(40, 40));
+    assertNotSame(image, pool.acquire(10, 20));
+    assertEquals(5, pool.getCreated());
+    assertEquals(1, pool.getReused());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxIdle() {
+    new ImagePool(0, 1);
+  }
+
+  @Test
+  public void testPooledSameAsFresh() throws IOException {
+    PNG		png;
+    Profile	climb;
+    Profile	descent;
+    int[]	expectedClimb;
+    int[]	expectedDescent;
+
+    png             = png(300, 100, Metric.DISTANCE, Metric.ELEVATION);
+    climb           = profile(100, 150, 200, 400, 380, 500, 800);
+    descent         = profile(900, 700, 300, 250, 100, 50, 10, 0);
+    expectedClimb   = fresh(png, climb);
+    ImagePool.SHARED.clear();
+    expectedDescent = fresh(png, descent);
+    assertFalse(Arrays.equals(expectedClimb, expectedDescent));
+    // pooled image still holds the other chart
+    assertArrayEquals(expectedClimb, pooled(png, climb));
+    assertArrayEquals(expectedDescent, pooled(png, descent));
+    assertArrayEquals(expectedClimb, pooled(png, climb));
+  }
+
+  @Test
+  public void testSizesAndOptionsDontInterfere() throws IOException {
+    PNG		large;
+    PNG		small;
+    Profile	profile;
+    int[]	expectedLarge;
+    int[]	expectedSmall;
+    int		i;
+
+    large         = png(300, 100, Metric.DISTANCE, Metric.ELEVATION);
+    small         = png(200, 80, Metric.ELAPSED, Metric.SPEED);
+    profile       = profile(100, 150, 200, 400, 380, 500, 800);
+    expectedLarge = fresh(large, profile);
+    expectedSmall = fresh(small, profile);
+    for (i = 0; i < 3; i++) {
+      assertArrayEquals("large #" + i, expectedLarge, pooled(large, profile));
+      assertArrayEquals("small #" + i, expectedSmall, pooled(small, profile));
+    }
+  }
+}
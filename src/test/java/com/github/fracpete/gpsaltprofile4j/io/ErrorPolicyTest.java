@@ -0,0 +1,192 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ErrorPolicyTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.github.fracpete.gpsaltprofile4j.Generate;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+import com.github.fracpete.gpsformats4j.formats.GPX;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static com.github.fracpete.gpsaltprofile4j.ProfileAssert.assertSameProfile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the handling of malformed records by the readers and by generating
+ * profiles from records, for all error policies.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ErrorPolicyTest {
+
+  /** the same trace as {@link TraceStreamReaderTest#DIRTY}, as records. */
+  public static final String DIRTY_CSV =
+    "one,2020-01-01T10:00:00Z,47.0,8.0,100\n"
+      + "one,2020-01-01T10:00:10Z,47.001,8.0,oops\n"
+      + "one,2020-01-01T10:00:20Z,47.002,8.0,x\n"
+      + "one,2020-01-01T10:00:30Z,47.003,8.0,\n"
+      + "one,2020-01-01T10:00:40Z,47.004,8.0,140\n"
+      + "one,2020-01-01T10:00:50Z,bad,8.0,150\n"
+      + "one,2020-01-01T10:01:00Z,47.005,8.0,?\n"
+      + "two,2020-01-02T10:00:00Z,47.1,8.1,200\n"
+      + "two,2020-01-02T10:00:10Z,47.101,8.1,210\n";
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Generates the profile from the records.
+   *
+   * @param policy	how to handle malformed records
+   * @return		the profile
+   * @throws IOException	if generating fails
+   */
+  protected Profile generate(ErrorPolicy policy) throws IOException {
+    List<CSVRecord>	records;
+
+    records = CSVFormat.DEFAULT
+      .withHeader(Format.KEY_TRACK, Format.KEY_TIME, Generate.KEY_LAT, Generate.KEY_LON, Format.KEY_ELEVATION)
+      .parse(new StringReader(DIRTY_CSV))
+      .getRecords();
+
+    return ProfileEngine.generate(records, Storage.DEFAULT.newAllocator(), policy);
+  }
+
+  /**
+   * Reads the GPX from a stream.
+   *
+   * @param policy	how to handle malformed trackpoints
+   * @return		the profile
+   * @throws IOException	if reading fails
+   */
+  protected Profile stream(ErrorPolicy policy) throws IOException {
+    return new TraceStreamReader(policy).read(
+      new ByteArrayInputStream(TraceStreamReaderTest.DIRTY.getBytes(StandardCharsets.UTF_8)), GPX.class, Storage.DEFAULT.newAllocator());
+  }
+
+  /**
+   * Reads the GPX file in parallel.
+   *
+   * @param policy	how to handle malformed trackpoints
+   * @return		the profile
+   * @throws IOException	if reading fails
+   */
+  protected Profile parallel(ErrorPolicy policy) throws IOException {
+    File	file;
+
+    file = m_Folder.newFile();
+    Files.write(file.toPath(), TraceStreamReaderTest.DIRTY.getBytes(StandardCharsets.UTF_8));
+
+    return new ParallelTraceReader(2).read(file, GPX.class, Storage.DEFAULT.newAllocator(), policy);
+  }
+
+  @Test
+  public void testSkip() throws IOException {
+    Profile	profile;
+
+    profile = generate(ErrorPolicy.SKIP);
+    assertEquals(5, profile.size());
+    assertEquals(4, profile.getRejected());
+    assertEquals(100, profile.getElevation(0), 0.0);
+    // blank elevations are missing, not malformed
+    assertTrue(Double.isNaN(profile.getElevation(1)));
+    assertEquals(140, profile.getElevation(2), 0.0);
+    assertEquals("two", profile.getTrack(3));
+    assertEquals(0.0, profile.getDistance(3), 0.0);
+    assertEquals(0.0, profile.getElapsed(3), 0.0);
+    assertSameProfile(profile, stream(ErrorPolicy.SKIP));
+    assertSameProfile(profile, parallel(ErrorPolicy.SKIP));
+  }
+
+  @Test
+  public void testInterpolate() throws IOException {
+    Profile	profile;
+
+    profile = generate(ErrorPolicy.INTERPOLATE);
+    assertEquals(8, profile.size());
+    assertEquals(4, profile.getRejected());
+    // linear by distance between 100 and 140, equally spaced points
+    assertEquals(110, profile.getElevation(1), 0.5);
+    assertEquals(120, profile.getElevation(2), 0.5);
+    assertTrue(profile.getElevation(1) < profile.getElevation(2));
+    assertTrue(Double.isNaN(profile.getElevation(3)));
+    assertEquals(140, profile.getElevation(4), 0.0);
+    // no valid elevation after it within the track
+    assertTrue(Double.isNaN(profile.getElevation(5)));
+    assertEquals(200, profile.getElevation(6), 0.0);
+    assertSameProfile(profile, stream(ErrorPolicy.INTERPOLATE));
+    assertSameProfile(profile, parallel(ErrorPolicy.INTERPOLATE));
+  }
+
+  @Test
+  public void testFail() throws IOException {
+    try {
+      generate(ErrorPolicy.FAIL);
+      fail("generate: malformed elevation expected");
+    }
+    catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("oops"));
+    }
+    try {
+      stream(ErrorPolicy.FAIL);
+      fail("stream: malformed elevation expected");
+    }
+    catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("oops"));
+    }
+    try {
+      parallel(ErrorPolicy.FAIL);
+      fail("parallel: malformed elevation expected");
+    }
+    catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("oops"));
+    }
+  }
+
+  @Test
+  public void testValidUnaffected() throws IOException {
+    File	file;
+    Profile	expected;
+
+    file = m_Folder.newFile("trace.gpx");
+    ParallelTraceReaderTest.writeGPX(file, "");
+    expected = new ParallelTraceReader(2).read(file, GPX.class, Storage.DEFAULT.newAllocator(), ErrorPolicy.FAIL);
+    assertEquals(0, expected.getRejected());
+    assertSameProfile(expected, new ParallelTraceReader(2).read(file, GPX.class, Storage.DEFAULT.newAllocator(), ErrorPolicy.SKIP));
+    assertSameProfile(expected, new ParallelTraceReader(2).read(file, GPX.class, Storage.DEFAULT.newAllocator(), ErrorPolicy.INTERPOLATE));
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * NumberParserTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the validating number parser.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class NumberParserTest {
+
+  /**
+   * Checks that the string parses to exactly the same number as
+   * {@link Double#parseDouble(String)}.
+   *
+   * @param s		the string to parse
+   */
+  protected void assertSame(String s) {
+    assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)), Double.doubleToLongBits(NumberParser.parse(s)));
+  }
+
+  /**
+   * Checks that the string is rejected.
+   *
+   * @param s		the string to parse
+   */
+  protected void assertMalformed(String s) {
+    assertTrue("'" + s + "'", Double.isNaN(NumberParser.parse(s)));
+  }
+
+  @Test
+  public void testValid() {
+    assertEquals(12.5, NumberParser.parse("12.5"), 0.0);
+    assertEquals(12.5, NumberParser.parse(" \t12.5\n"), 0.0);
+    assertEquals(3.0, NumberParser.parse("+3"), 0.0);
+    assertEquals(-3.25, NumberParser.parse("-3.25"), 0.0);
+    assertEquals(0.5, NumberParser.parse(".5"), 0.0);
+    assertEquals(5.0, NumberParser.parse("5."), 0.0);
+    assertEquals(1000.0, NumberParser.parse("1e3"), 0.0);
+    assertEquals(0.01, NumberParser.parse("1E-2"), 0.0);
+    assertEquals(150.0, NumberParser.parse("1.5e+2"), 0.0);
+    assertEquals(7.0, NumberParser.parse("007"), 0.0);
+    assertEquals(0.0, NumberParser.parse("0.000"), 0.0);
+  }
+
+  @Test
+  public void testSignedZero() {
+    assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(NumberParser.parse("0")));
+    assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(NumberParser.parse("-0.0")));
+    assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(NumberParser.parse("-0e10")));
+  }
+
+  @Test
+  public void testMalformed() {
+    assertMalformed(null);
+    assertMalformed("");
+    assertMalformed("   ");
+    assertMalformed("-");
+    assertMalformed("+");
+    assertMalformed(".");
+    assertMalformed("-.");
+    assertMalformed("e5");
+    assertMalformed("1e");
+    assertMalformed("1e+");
+    assertMalformed("1.2.3");
+    assertMalformed("1,5");
+    assertMalformed("12 m");
+    assertMalformed("1 2");
+    assertMalformed("--1");
+    assertMalformed("0x10");
+    assertMalformed("NaN");
+    assertMalformed("Infinity");
+    assertMalformed("1d");
+    assertMalformed("1f");
+  }
+
+  @Test
+  public void testBlank() {
+    assertTrue(NumberParser.isBlank(null));
+    assertTrue(NumberParser.isBlank(""));
+    assertTrue(NumberParser.isBlank(" \t\r\n"));
+    assertFalse(NumberParser.isBlank(" 1 "));
+    assertFalse(NumberParser.isBlank("x"));
+  }
+
+  @Test
+  public void testBeyondFastPath() {
+    assertSame("1234567890123456789");
+    assertSame("0.12345678901234567890123");
+    assertSame("9007199254740993");
+    assertSame("123456.789e-30");
+    assertSame("1e23");
+    assertSame("4.9e-324");
+    assertSame("1.7976931348623157e308");
+    assertSame("0.000000000000000000000000000001");
+    assertSame("100000000000000000000000000000000000000000");
+    assertEquals(Double.POSITIVE_INFINITY, NumberParser.parse("1e400"), 0.0);
+    assertEquals(0.0, NumberParser.parse("1e-400"), 0.0);
+  }
+
+  @Test
+  public void testSameAsParseDouble() {
+    Random	random;
+    int		i;
+
+    random = new Random(1);
+    for (i = 0; i < 20000; i++) {
+      // coordinates and elevations as recorded
+      assertSame(String.format(Locale.ROOT, "%.6f", (random.nextDouble() - 0.5) * 360));
+      assertSame(String.format(Locale.ROOT, "%.2f", random.nextDouble() * 9000 - 500));
+      // arbitrary doubles, in the shortest form and with exponents
+      assertSame(Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7fefffffffffffffL)));
+      assertSame(random.nextInt(1000000) + "e" + (random.nextInt(60) - 30));
+    }
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelTraceReaderTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+import com.github.fracpete.gpsformats4j.formats.GPX;
+import com.github.fracpete.gpsformats4j.formats.TCX;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static com.github.fracpete.gpsaltprofile4j.ProfileAssert.assertSameProfile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the parallel and the stream reader against reading the same file
+ * via gpsformats4j and generating the profile from the records.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class ParallelTraceReaderTest {
+
+  /** the number of points per track, enough for several chunks. */
+  public static final int POINTS = 4000;
+
+  /** the track names, null for unnamed. */
+  public static final String[] TRACKS = {"Morning &amp; Evening", null, null, "B", "B"};
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Returns the declaration of the namespace prefix, if any.
+   *
+   * @param ns		the namespace prefix, eg "gpx:" or ""
+   * @param uri		the namespace URI
+   * @return		the attribute, empty if no prefix
+   */
+  protected static String xmlns(String ns, String uri) {
+    if (ns.isEmpty())
+      return "";
+    return " xmlns:" + ns.substring(0, ns.length() - 1) + "=\"" + uri + "\"";
+  }
+
+  /**
+   * Writes a GPX file, with tags using the prefix.
+   *
+   * @param file	the file to write to
+   * @param ns		the namespace prefix, eg "gpx:" or ""
+   * @throws IOException	if writing fails
+   */
+  public static void writeGPX(File file, String ns) throws IOException {
+    int		t;
+    int		i;
+
+    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+      out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      out.println("<" + ns + "gpx" + xmlns(ns, "http://www.topografix.com/GPX/1/1") + " version=\"1.1\">");
+      for (t = 0; t < TRACKS.length; t++) {
+	out.println("  <" + ns + "trk>");
+	if (TRACKS[t] != null)
+	  out.println("    <" + ns + "name>" + TRACKS[t] + "</" + ns + "name>");
+	out.println("    <" + ns + "trkseg>");
+	for (i = 0; i < POINTS; i++) {
+	  if (i == POINTS / 2)
+	    out.println("    </" + ns + "trkseg>\n    <" + ns + "trkseg>");
+	  out.println("      <" + ns + "trkpt lat=\"" + (47.0 + (t * POINTS + i) * 1e-5) + "\" lon=\"" + (-122.0 + i * 2e-5) + "\">");
+	  out.println("        <" + ns + "ele>" + (100 + (i % 50) * 0.5) + "</" + ns + "ele>");
+	  out.println("        <" + ns + "time>2020-01-0" + (t + 1) + "T10:" + String.format("%02d:%02d", (i / 60) % 60, i % 60) + "Z</" + ns + "time>");
+	  out.println("      </" + ns + "trkpt>");
+	}
+	out.println("    </" + ns + "trkseg>");
+	out.println("  </" + ns + "trk>");
+      }
+      out.println("</" + ns + "gpx>");
+    }
+  }
+
+  /**
+   * Writes a TCX file, with tags using the prefix.
+   *
+   * @param file	the file to write to
+   * @param ns		the namespace prefix, eg "tcx:" or ""
+   * @throws IOException	if writing fails
+   */
+  public static void writeTCX(File file, String ns) throws IOException {
+    int		t;
+    int		i;
+
+    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+      out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      out.println("<" + ns + "TrainingCenterDatabase" + xmlns(ns, "http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2") + "><" + ns + "Activities>");
+      for (t = 0; t < 3; t++) {
+	out.println("<" + ns + "Activity Sport=\"Running\">");
+	out.println("  <" + ns + "Id>2020-01-0" + (t + 1) + "T10:00:00Z</" + ns + "Id>");
+	out.println("  <" + ns + "Lap><" + ns + "Track>");
+	for (i = 0; i < POINTS; i++) {
+	  out.println("    <" + ns + "Trackpoint>");
+	  out.println("      <" + ns + "Time>2020-01-0" + (t + 1) + "T10:" + String.format("%02d:%02d", (i / 60) % 60, i % 60) + "Z</" + ns + "Time>");
+	  out.println("      <" + ns + "Position><" + ns + "LatitudeDegrees>" + (-38.0 + i * 1e-5) + "</" + ns + "LatitudeDegrees>"
+	    + "<" + ns + "LongitudeDegrees>" + (175.0 + t + i * 1e-5) + "</" + ns + "LongitudeDegrees></" + ns + "Position>");
+	  out.println("      <" + ns + "AltitudeMeters>" + (140 + (i % 30)) + "</" + ns + "AltitudeMeters>");
+	  out.println("    </" + ns + "Trackpoint>");
+	}
+	out.println("  </" + ns + "Track></" + ns + "Lap>");
+	out.println("</" + ns + "Activity>");
+      }
+      out.println("</" + ns + "Activities></" + ns + "TrainingCenterDatabase>");
+    }
+  }
+
+  /**
+   * Writes a GPX file with a single track, with large parts of the
+   * trackpoints commented out or within a CDATA section (spanning the chunk
+   * boundaries), and some values as CDATA.
+   *
+   * @param file	the file to write to
+   * @return		the number of trackpoints not commented out
+   * @throws IOException	if writing fails
+   */
+  public static int writeCommentedGPX(File file) throws IOException {
+    int		result;
+    boolean	comment;
+    boolean	cdata;
+    int		i;
+
+    result = 0;
+    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+      out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      out.println("<!-- <trk><name>not a track</name> -->");
+      out.println("<gpx version=\"1.1\"><trk><name><![CDATA[Up & <down>]]></name><trkseg>");
+      for (i = 0; i < 5 * POINTS; i++) {
+	comment = (i >= POINTS / 2) && (i < 3 * POINTS);
+	cdata   = (i >= 7 * POINTS / 2) && (i < 9 * POINTS / 2);
+	if (i == POINTS / 2)
+	  out.println("<!--");
+	else if (i == 7 * POINTS / 2)
+	  out.println("<desc><![CDATA[");
+	if (!comment && !cdata)
+	  result++;
+	out.println("  <trkpt lat=\"" + (47.0 + i * 1e-5) + "\" lon=\"" + (-122.0 + i * 2e-5) + "\">");
+	if (!comment && !cdata && (i % 7 == 0))
+	  out.println("    <ele> <![CDATA[ " + (100 + (i % 50) * 0.5) + " ]]> </ele>");
+	else if (!comment)
+	  out.println("    <ele>" + (100 + (i % 50) * 0.5) + "</ele><!-- <ele>1</ele> -->");
+	else
+	  out.println("    <ele>" + (100 + (i % 50) * 0.5) + "</ele>");
+	out.println("    <time>2020-01-01T" + String.format("%02d:%02d:%02d", i / 3600, (i / 60) % 60, i % 60) + "Z</time>");
+	out.println("  </trkpt>");
+	if (i == 3 * POINTS - 1)
+	  out.println("-->");
+	else if (i == 9 * POINTS / 2 - 1)
+	  out.println("]]></desc>");
+      }
+      out.println("</trkseg></trk></gpx>");
+    }
+
+    return result;
+  }
+
+  /**
+   * Copies the resource into a temporary file.
+   *
+   * @param name	the name of the resource
+   * @return		the file
+   * @throws IOException	if copying fails
+   */
+  protected File resource(String name) throws IOException {
+    File	result;
+
+    result = new File(m_Folder.getRoot(), name);
+    try (InputStream in = getClass().getResourceAsStream("/" + name)) {
+      Files.copy(in, result.toPath());
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the file via gpsformats4j and generates the profile from the
+   * records.
+   *
+   * @param file	the file to read
+   * @param format	the format
+   * @param policy	how to handle malformed trackpoints
+   * @return		the profile
+   * @throws Exception	if reading fails
+   */
+  protected Profile reference(File file, Class format, ErrorPolicy policy) throws Exception {
+    return new ProfileEngine(format, "").withErrorPolicy(policy).profile(file);
+  }
+
+  /**
+   * Reads the file via gpsformats4j and generates the profile from the
+   * records.
+   *
+   * @param file	the file to read
+   * @param format	the format
+   * @return		the profile
+   * @throws Exception	if reading fails
+   */
+  protected Profile reference(File file, Class format) throws Exception {
+    return reference(file, format, ErrorPolicy.FAIL);
+  }
+
+  /**
+   * Reads the file from a stream, trickling in a few bytes at a time.
+   *
+   * @param file	the file to read
+   * @param format	the format
+   * @param policy	how to handle malformed trackpoints
+   * @param max		the maximum number of bytes per read
+   * @return		the profile
+   * @throws IOException	if reading fails
+   */
+  protected Profile stream(File file, Class format, ErrorPolicy policy, int max) throws IOException {
+    try (InputStream in = new TraceStreamReaderTest.TrickleInputStream(new FileInputStream(file), max, max)) {
+      return new TraceStreamReader(policy).read(in, format, Storage.DEFAULT.newAllocator());
+    }
+  }
+
+  /**
+   * Returns the number of chunks the file gets split into.
+   *
+   * @param reader	the reader
+   * @param file	the file
+   * @param format	the format
+   * @return		the number of chunks
+   * @throws IOException	if splitting fails
+   */
+  protected int chunks(ParallelTraceReader reader, File file, Class format) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return reader.boundaries(channel, ParallelTraceReader.dialect(format)).size() - 1;
+    }
+  }
+
+  /**
+   * Returns the number of points at which the track or distance starts over.
+   *
+   * @param profile	the profile to check
+   * @return		the number of track starts
+   */
+  protected int trackStarts(Profile profile) {
+    int		result;
+    int		i;
+
+    result = 0;
+    for (i = 0; i < profile.size(); i++) {
+      if ((i == 0) || !profile.getTrack(i).equals(profile.getTrack(i - 1)) || (profile.getDistance(i) < profile.getDistance(i - 1)))
+	result++;
+    }
+
+    return result;
+  }
+
+  @Test
+  public void testGPX() throws Exception {
+    File			file;
+    ParallelTraceReader		reader;
+    Profile			expected;
+    Profile			actual;
+
+    file = m_Folder.newFile("trace.gpx");
+    writeGPX(file, "");
+    reader = new ParallelTraceReader(4);
+    assertTrue("several chunks", chunks(reader, file, GPX.class) > 2);
+    expected = reference(file, GPX.class);
+    actual   = reader.read(file, GPX.class);
+    assertEquals(TRACKS.length * POINTS, expected.size());
+    assertSameProfile(expected, actual);
+  }
+
+  @Test
+  public void testTrackNames() throws IOException {
+    File	file;
+    Profile	profile;
+
+    file = m_Folder.newFile("trace.gpx");
+    writeGPX(file, "");
+    profile = new ParallelTraceReader(4).read(file, GPX.class);
+    assertEquals("Morning & Evening", profile.getTrack(0));
+    assertEquals("", profile.getTrack(POINTS));
+    assertEquals("", profile.getTrack(3 * POINTS - 1));
+    assertEquals("B", profile.getTrack(3 * POINTS));
+    // unnamed tracks and tracks with the same name continue each other
+    assertEquals(3, trackStarts(profile));
+    assertEquals(0.0, profile.getElapsed(POINTS), 0.0);
+    assertTrue(profile.getElapsed(2 * POINTS) > profile.getElapsed(2 * POINTS - 1));
+  }
+
+  @Test
+  public void testPrefixedGPX() throws Exception {
+    File			plain;
+    File			prefixed;
+    ParallelTraceReader		reader;
+
+    plain    = m_Folder.newFile("plain.gpx");
+    prefixed = m_Folder.newFile("prefixed.gpx");
+    writeGPX(plain, "");
+    writeGPX(prefixed, "gpx:");
+    reader = new ParallelTraceReader(4);
+    assertEquals(chunks(reader, plain, GPX.class), chunks(reader, prefixed, GPX.class));
+    assertSameProfile(reference(plain, GPX.class), reader.read(prefixed, GPX.class));
+    assertSameProfile(reference(plain, GPX.class), stream(prefixed, GPX.class, ErrorPolicy.FAIL, 4096));
+  }
+
+  @Test
+  public void testPrefixedTCX() throws Exception {
+    File			plain;
+    File			prefixed;
+    ParallelTraceReader		reader;
+    Profile			expected;
+
+    plain    = m_Folder.newFile("plain.tcx");
+    prefixed = m_Folder.newFile("prefixed.tcx");
+    writeTCX(plain, "");
+    writeTCX(prefixed, "tcx:");
+    reader = new ParallelTraceReader(4);
+    assertTrue("several chunks", chunks(reader, prefixed, TCX.class) > 2);
+    expected = reference(plain, TCX.class);
+    assertEquals(3 * POINTS, expected.size());
+    assertEquals("2020-01-02T10:00:00Z", expected.getTrack(POINTS));
+    assertSameProfile(expected, reader.read(prefixed, TCX.class));
+    assertSameProfile(expected, stream(prefixed, TCX.class, ErrorPolicy.FAIL, 4096));
+  }
+
+  @Test
+  public void testSameAsRecordsGPX() throws Exception {
+    File	file;
+    Profile	expected;
+
+    file     = resource("test.gpx");
+    expected = reference(file, GPX.class);
+    assertEquals(3, expected.size());
+    assertSameProfile(expected, new ParallelTraceReader(4).read(file, GPX.class));
+    assertSameProfile(expected, stream(file, GPX.class, ErrorPolicy.FAIL, 7));
+  }
+
+  @Test
+  public void testSameAsRecordsTCX() throws Exception {
+    File	file;
+    Profile	expected;
+
+    file     = resource("test.tcx");
+    expected = reference(file, TCX.class);
+    assertEquals(790, expected.size());
+    assertSameProfile(expected, new ParallelTraceReader(4).read(file, TCX.class));
+    assertSameProfile(expected, stream(file, TCX.class, ErrorPolicy.FAIL, 100));
+
+    file = m_Folder.newFile("trace.tcx");
+    writeTCX(file, "");
+    expected = reference(file, TCX.class);
+    assertEquals(3 * POINTS, expected.size());
+    assertSameProfile(expected, new ParallelTraceReader(4).read(file, TCX.class));
+  }
+
+  @Test
+  public void testCommentsAndCDATA() throws Exception {
+    File			file;
+    ParallelTraceReader		reader;
+    Profile			expected;
+    int				points;
+
+    file   = m_Folder.newFile("commented.gpx");
+    points = writeCommentedGPX(file);
+    reader = new ParallelTraceReader(4);
+    assertTrue("several chunks", chunks(reader, file, GPX.class) > 2);
+    expected = reference(file, GPX.class);
+    assertEquals(points, expected.size());
+    assertEquals("Up & <down>", expected.getTrack(0));
+    assertSameProfile(expected, reader.read(file, GPX.class));
+    assertSameProfile(expected, stream(file, GPX.class, ErrorPolicy.FAIL, 4096));
+  }
+
+  @Test
+  public void testSplitWithinComment() throws Exception {
+    File	file;
+    String	gpx;
+    Profile	expected;
+    int		max;
+
+    gpx = "<gpx><trk><name>a</name><trkseg>\n"
+      + "<trkpt lat=\"47.0\" lon=\"8.0\"><ele>100</ele><time>2020-01-01T10:00:00Z</time></trkpt>\n"
+      + "<!-- <trkpt lat=\"1.0\" lon=\"1.0\"><ele>1</ele></trkpt>\n"
+      + "<trkpt lat=\"2.0\" lon=\"2.0\"><ele>2</ele></trkpt> -->\n"
+      + "<trkpt lat=\"47.001\" lon=\"8.0\"><desc><![CDATA[<trkpt lat=\"3.0\" lon=\"3.0\"> -->]]></desc><ele>110</ele><time>2020-01-01T10:00:10Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.002\" lon=\"8.0\"><ele>120</ele><time>2020-01-01T10:00:20Z</time></trkpt>\n"
+      + "</trkseg></trk></gpx>\n";
+    file = m_Folder.newFile("split.gpx");
+    Files.write(file.toPath(), gpx.getBytes(StandardCharsets.UTF_8));
+    expected = reference(file, GPX.class);
+    assertEquals(3, expected.size());
+    for (max = 1; max <= 64; max *= 2)
+      assertSameProfile(expected, stream(file, GPX.class, ErrorPolicy.FAIL, max));
+  }
+
+  @Test
+  public void testPausedTCX() throws Exception {
+    File		file;
+    String		tcx;
+    Profile		expected;
+    ErrorPolicy		policy;
+
+    tcx = "<TrainingCenterDatabase><Activities><Activity><Id>run</Id><Lap><Track>\n"
+      + "<Trackpoint><Time>2020-01-01T10:00:00Z</Time><Position><LatitudeDegrees>47.0</LatitudeDegrees><LongitudeDegrees>8.0</LongitudeDegrees></Position><AltitudeMeters>100</AltitudeMeters></Trackpoint>\n"
+      + "<Trackpoint><Time>2020-01-01T10:00:10Z</Time><AltitudeMeters>105</AltitudeMeters></Trackpoint>\n"
+      + "<Trackpoint><Time>2020-01-01T10:00:20Z</Time><Position><LatitudeDegrees>47.001</LatitudeDegrees><LongitudeDegrees>8.0</LongitudeDegrees></Position><AltitudeMeters>110</AltitudeMeters></Trackpoint>\n"
+      + "</Track></Lap></Activity></Activities></TrainingCenterDatabase>\n";
+    file = m_Folder.newFile("paused.tcx");
+    Files.write(file.toPath(), tcx.getBytes(StandardCharsets.UTF_8));
+
+    for (ErrorPolicy p: new ErrorPolicy[]{ErrorPolicy.SKIP, ErrorPolicy.INTERPOLATE}) {
+      policy   = p;
+      expected = reference(file, TCX.class, policy);
+      assertEquals(2, expected.size());
+      assertEquals(1, expected.getRejected());
+      assertEquals(20.0, expected.getElapsed(1), 0.0);
+      assertSameProfile(expected, new ParallelTraceReader(2).read(file, TCX.class, Storage.DEFAULT.newAllocator(), policy));
+      assertSameProfile(expected, stream(file, TCX.class, policy, 64));
+    }
+
+    try {
+      new ParallelTraceReader(2).read(file, TCX.class, Storage.DEFAULT.newAllocator(), ErrorPolicy.FAIL);
+      fail("parallel: missing position expected");
+    }
+    catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("2020-01-01T10:00:10Z"));
+    }
+    try {
+      stream(file, TCX.class, ErrorPolicy.FAIL, 64);
+      fail("stream: missing position expected");
+    }
+    catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("2020-01-01T10:00:10Z"));
+    }
+  }
+
+  @Test
+  public void testUnescape() {
+    assertEquals("A & B", TraceChunk.unescape("A &amp; B"));
+    assertEquals("<\"'>", TraceChunk.unescape("&lt;&quot;&apos;&gt;"));
+    assertEquals("AB\u00e9", TraceChunk.unescape("&#65;&#x42;&#233;"));
+    assertEquals("a &unknown; & b", TraceChunk.unescape("a &unknown; & b"));
+    assertEquals("plain", TraceChunk.unescape("plain"));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TimeParserTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the validating timestamp parser.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class TimeParserTest {
+
+  /** 2020-01-01T10:00:00Z in seconds since the epoch. */
+  public static final double BASE = 1577872800.0;
+
+  /**
+   * Checks that the string is rejected.
+   *
+   * @param s		the string to parse
+   */
+  protected void assertMalformed(String s) {
+    assertTrue("'" + s + "'", Double.isNaN(TimeParser.parse(s)));
+  }
+
+  @Test
+  public void testValid() {
+    assertEquals(0.0, TimeParser.parse("1970-01-01T00:00:00Z"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01T10:00:00Z"), 0.0);
+    assertEquals(BASE, TimeParser.parse("  2020-01-01T10:00:00Z\n"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01t10:00:00z"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01 10:00:00Z"), 0.0);
+    // without zone taken as UTC
+    assertEquals(BASE, TimeParser.parse("2020-01-01T10:00:00"), 0.0);
+    assertEquals(-86400.0, TimeParser.parse("1969-12-31T00:00:00Z"), 0.0);
+  }
+
+  @Test
+  public void testFraction() {
+    assertEquals(BASE + 0.5, TimeParser.parse("2020-01-01T10:00:00.5Z"), 1e-9);
+    assertEquals(BASE + 0.123, TimeParser.parse("2020-01-01T10:00:00,123Z"), 1e-9);
+    assertEquals(BASE + 0.999999, TimeParser.parse("2020-01-01T10:00:00.999999+00:00"), 1e-6);
+    assertEquals(BASE + 0.25, TimeParser.parse("2020-01-01T10:00:00.25"), 1e-9);
+  }
+
+  @Test
+  public void testZones() {
+    assertEquals(BASE, TimeParser.parse("2020-01-01T12:00:00+02:00"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01T12:00:00+0200"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01T12:00:00+02"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01T15:30:00+05:30"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01T02:00:00-08:00"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2019-12-31T23:00:00-11"), 0.0);
+    assertEquals(BASE, TimeParser.parse("2020-01-01T10:00:00-00:00"), 0.0);
+  }
+
+  @Test
+  public void testCalendar() {
+    assertEquals(LocalDate.of(2020, 2, 29).toEpochDay() * 86400.0, TimeParser.parse("2020-02-29T00:00:00Z"), 0.0);
+    assertEquals(LocalDate.of(2000, 2, 29).toEpochDay() * 86400.0, TimeParser.parse("2000-02-29T00:00:00Z"), 0.0);
+    assertEquals(LocalDate.of(1600, 3, 1).toEpochDay() * 86400.0, TimeParser.parse("1600-03-01T00:00:00Z"), 0.0);
+    assertEquals(LocalDate.of(1, 1, 1).toEpochDay() * 86400.0, TimeParser.parse("0001-01-01T00:00:00Z"), 0.0);
+    assertEquals(LocalDate.of(9999, 12, 31).toEpochDay() * 86400.0, TimeParser.parse("9999-12-31T00:00:00Z"), 0.0);
+    assertMalformed("2021-02-29T00:00:00Z");
+    assertMalformed("1900-02-29T00:00:00Z");
+    assertMalformed("2020-04-31T00:00:00Z");
+    assertMalformed("2020-00-10T00:00:00Z");
+    assertMalformed("2020-13-10T00:00:00Z");
+    assertMalformed("2020-01-00T00:00:00Z");
+    assertMalformed("2020-01-32T00:00:00Z");
+  }
+
+  @Test
+  public void testLeapSecond() {
+    // taken as the first second of the next minute
+    assertEquals(TimeParser.parse("2017-01-01T00:00:00Z"), TimeParser.parse("2016-12-31T23:59:60Z"), 0.0);
+    assertMalformed("2016-12-31T23:59:61Z");
+  }
+
+  @Test
+  public void testMalformed() {
+    assertMalformed(null);
+    assertMalformed("");
+    assertMalformed("   ");
+    assertMalformed("2020-01-01");
+    assertMalformed("2020-01-01T10:00Z");
+    assertMalformed("2020-01-01T10:00:0Z");
+    assertMalformed("20-01-01T10:00:00Z");
+    assertMalformed("2020/01/01T10:00:00Z");
+    assertMalformed("2020-01-01X10:00:00Z");
+    assertMalformed("2020-01-01T10-00-00Z");
+    assertMalformed("2020-01-01T24:00:00Z");
+    assertMalformed("2020-01-01T10:60:00Z");
+    assertMalformed("2020-01-01T10:00:00.Z");
+    assertMalformed("2020-01-01T10:00:00.5.5Z");
+    assertMalformed("2020-01-01T10:00:00ZZ");
+    assertMalformed("2020-01-01T10:00:00Z x");
+    assertMalformed("2020-01-01T10:00:00+2:00");
+    assertMalformed("2020-01-01T10:00:00+02:0");
+    assertMalformed("2020-01-01T10:00:00+0200x");
+    assertMalformed("2020-01-01T10:00:00+19:00");
+    assertMalformed("2020-01-01T10:00:00+02:60");
+    assertMalformed("2020-01-01T10:00:00 UTC");
+    assertMalformed("2020-0a-01T10:00:00Z");
+  }
+
+  @Test
+  public void testSameAsJavaTime() {
+    DateTimeFormatter	formatter;
+    OffsetDateTime	time;
+    Random		random;
+    long		seconds;
+    int			i;
+
+    formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxx");
+    random    = new Random(1);
+    for (i = 0; i < 20000; i++) {
+      seconds = (long) (random.nextDouble() * 8000000000L) - 2000000000L;
+      time    = OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneOffset.ofTotalSeconds((random.nextInt(57) - 28) * 1800));
+      assertEquals(time.format(formatter), seconds, TimeParser.parse(time.format(formatter)), 0.0);
+    }
+  }
+}
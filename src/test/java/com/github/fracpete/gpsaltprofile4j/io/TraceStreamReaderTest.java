@@ -0,0 +1,180 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TraceStreamReaderTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.io;
+
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import com.github.fracpete.gpsaltprofile4j.formats.CSV;
+import com.github.fracpete.gpsaltprofile4j.storage.Storage;
+import com.github.fracpete.gpsformats4j.formats.GPX;
+import com.github.fracpete.gpsformats4j.formats.TCX;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static com.github.fracpete.gpsaltprofile4j.ProfileAssert.assertSameProfile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading GPX/TCX from streams, with the data arriving in pieces
+ * that split tags at arbitrary positions.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class TraceStreamReaderTest {
+
+  /**
+   * Returns only a few bytes per read.
+   */
+  public static class TrickleInputStream
+    extends FilterInputStream {
+
+    /** for the number of bytes per read. */
+    protected final Random m_Random;
+
+    /** the maximum number of bytes per read. */
+    protected final int m_Max;
+
+    /**
+     * Initializes the stream.
+     *
+     * @param in	the stream to read from
+     * @param max	the maximum number of bytes per read
+     * @param seed	the seed for the number of bytes per read
+     */
+    public TrickleInputStream(InputStream in, int max, long seed) {
+      super(in);
+      m_Max    = max;
+      m_Random = new Random(seed);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return super.read(b, off, Math.min(len, 1 + m_Random.nextInt(m_Max)));
+    }
+  }
+
+  /** a trace with malformed and missing elevations, across two tracks. */
+  public static final String DIRTY =
+    "<?xml version=\"1.0\"?>\n<gpx>\n"
+      + "<trk><name>one</name><trkseg>\n"
+      + "<trkpt lat=\"47.0\" lon=\"8.0\"><ele>100</ele><time>2020-01-01T10:00:00Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.001\" lon=\"8.0\"><ele>oops</ele><time>2020-01-01T10:00:10Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.002\" lon=\"8.0\"><ele>x</ele><time>2020-01-01T10:00:20Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.003\" lon=\"8.0\"><time>2020-01-01T10:00:30Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.004\" lon=\"8.0\"><ele>140</ele><time>2020-01-01T10:00:40Z</time></trkpt>\n"
+      + "<trkpt lat=\"bad\" lon=\"8.0\"><ele>150</ele><time>2020-01-01T10:00:50Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.005\" lon=\"8.0\"><ele>?</ele><time>2020-01-01T10:01:00Z</time></trkpt>\n"
+      + "</trkseg></trk>\n"
+      + "<trk><name>two</name><trkseg>\n"
+      + "<trkpt lat=\"47.1\" lon=\"8.1\"><ele>200</ele><time>2020-01-02T10:00:00Z</time></trkpt>\n"
+      + "<trkpt lat=\"47.101\" lon=\"8.1\"><ele>210</ele><time>2020-01-02T10:00:10Z</time></trkpt>\n"
+      + "</trkseg></trk>\n</gpx>\n";
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Reads the stream into a profile.
+   *
+   * @param in		the stream to read
+   * @param format	the format
+   * @param policy	how to handle malformed trackpoints
+   * @return		the profile
+   * @throws IOException	if reading fails
+   */
+  protected Profile read(InputStream in, Class format, ErrorPolicy policy) throws IOException {
+    try {
+      return new TraceStreamReader(policy).read(in, format, Storage.DEFAULT.newAllocator());
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void testSplitBoundaries() throws IOException {
+    File	file;
+    Profile	whole;
+    int		max;
+
+    file = m_Folder.newFile("trace.gpx");
+    ParallelTraceReaderTest.writeGPX(file, "gpx:");
+    whole = read(new FileInputStream(file), GPX.class, ErrorPolicy.FAIL);
+    assertEquals(ParallelTraceReaderTest.TRACKS.length * ParallelTraceReaderTest.POINTS, whole.size());
+    for (max = 16; max <= 4096; max *= 16)
+      assertSameProfile(whole, read(new TrickleInputStream(new FileInputStream(file), max, max), GPX.class, ErrorPolicy.FAIL));
+    assertSameProfile(whole, new ParallelTraceReader(4).read(file, GPX.class));
+  }
+
+  @Test
+  public void testSplitBoundariesTCX() throws IOException {
+    File	file;
+    Profile	whole;
+
+    file = m_Folder.newFile("trace.tcx");
+    ParallelTraceReaderTest.writeTCX(file, "");
+    whole = read(new FileInputStream(file), TCX.class, ErrorPolicy.FAIL);
+    assertSameProfile(whole, read(new TrickleInputStream(new FileInputStream(file), 64, 42), TCX.class, ErrorPolicy.FAIL));
+  }
+
+  @Test
+  public void testInterpolateAcrossReads() throws IOException {
+    File	file;
+    byte[]	data;
+    Profile	parallel;
+    int		max;
+
+    data = DIRTY.getBytes(StandardCharsets.UTF_8);
+    file = m_Folder.newFile("dirty.gpx");
+    java.nio.file.Files.write(file.toPath(), data);
+    parallel = new ParallelTraceReader(2).read(file, GPX.class, Storage.DEFAULT.newAllocator(), ErrorPolicy.INTERPOLATE);
+    assertEquals(8, parallel.size());
+    assertEquals(4, parallel.getRejected());
+    assertTrue(parallel.getElevation(1) > 100 && parallel.getElevation(1) < 140);
+    assertTrue(Double.isNaN(parallel.getElevation(3)));
+    assertTrue(Double.isNaN(parallel.getElevation(5)));
+    for (max = 1; max <= 64; max *= 2)
+      assertSameProfile(parallel, read(new TrickleInputStream(new ByteArrayInputStream(data), max, max), GPX.class, ErrorPolicy.INTERPOLATE));
+  }
+
+  @Test
+  public void testStreamsWithoutParallelReader() throws Exception {
+    ProfileEngine	engine;
+    Profile		profile;
+
+    engine = new ProfileEngine(GPX.class, "", CSV.class, "");
+    assertTrue(engine.canStream());
+    profile = engine.withErrorPolicy(ErrorPolicy.SKIP).profile(new TrickleInputStream(new ByteArrayInputStream(DIRTY.getBytes(StandardCharsets.UTF_8)), 16, 1));
+    assertEquals(5, profile.size());
+    assertEquals(4, profile.getRejected());
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StorageTest.java
+ * Copyright (C) 2026 FracPete
+ */
+
+package com.github.fracpete.gpsaltprofile4j.storage;
+
+import com.github.fracpete.gpsaltprofile4j.Generate;
+import com.github.fracpete.gpsaltprofile4j.Profile;
+import com.github.fracpete.gpsaltprofile4j.ProfileAssert;
+import com.github.fracpete.gpsaltprofile4j.ProfileEngine;
+import com.github.fracpete.gpsaltprofile4j.formats.Format;
+import com.github.fracpete.gpsaltprofile4j.io.ErrorPolicy;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that heap, direct and spilled columns behave the same and that the
+ * allocator keeps to the budget.
+ *
+ * @author FracPete (fracpete at gmail dot com)
+ */
+public class StorageTest {
+
+  /** the doubles to store. */
+  public static final double[] DOUBLES = {
+    0.0, -0.0, 1.5, -123.456, Double.NaN, Double.MIN_VALUE, Double.MAX_VALUE,
+    Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 47.123456789012345,
+  };
+
+  /** the strings to store, the longest one with {@link #MAX_BYTES}. */
+  public static final String[] STRINGS = {
+    "", null, "a", "Morning & Evening", "\u00e4\u00f6\u00fc", "\u20ac", "\ud83d\udeb2", "abcdefghijklmnop",
+  };
+
+  /** the maximum number of UTF-8 bytes of the strings. */
+  public static final int MAX_BYTES = 17;
+
+  @Rule
+  public TemporaryFolder m_Folder = new TemporaryFolder();
+
+  /**
+   * Returns the storages to compare: heap and direct memory within the
+   * budget, and either of them without budget, ie spilled.
+   *
+   * @return		the storages
+   */
+  protected Storage[] storages() {
+    return new Storage[]{
+      new Storage(Storage.Mode.HEAP, Storage.UNLIMITED, m_Folder.getRoot()),
+      new Storage(Storage.Mode.OFFHEAP, Storage.UNLIMITED, m_Folder.getRoot()),
+      new Storage(Storage.Mode.HEAP, 0, m_Folder.getRoot()),
+      new Storage(Storage.Mode.OFFHEAP, 0, m_Folder.getRoot()),
+    };
+  }
+
+  @Test
+  public void testDoubles() throws IOException {
+    DoubleColumn	column;
+    int			i;
+
+    for (Storage storage: storages()) {
+      column = storage.newAllocator().doubles(DOUBLES.length);
+      assertEquals(storage.toString(), DOUBLES.length, column.size());
+      for (i = 0; i < DOUBLES.length; i++)
+	column.set(i, DOUBLES[i]);
+      // bit for bit, including NaN and signed zero
+      for (i = 0; i < DOUBLES.length; i++)
+	assertEquals(storage + ": #" + i, Double.doubleToRawLongBits(DOUBLES[i]), Double.doubleToRawLongBits(column.get(i)));
+    }
+  }
+
+  @Test
+  public void testStrings() throws IOException {
+    StringColumn	column;
+    int			i;
+
+    for (Storage storage: storages()) {
+      column = storage.newAllocator().strings(STRINGS.length, MAX_BYTES);
+      assertEquals(storage.toString(), STRINGS.length, column.size());
+      for (i = 0; i < STRINGS.length; i++)
+	column.set(i, STRINGS[i]);
+      for (i = 0; i < STRINGS.length; i++)
+	assertEquals(storage + ": #" + i, STRINGS[i], column.get(i));
+      // overwrite with shorter values
+      for (i = 0; i < STRINGS.length; i++)
+	column.set(i, (STRINGS[i] == null) ? "x" : null);
+      for (i = 0; i < STRINGS.length; i++)
+	assertEquals(storage + ": #" + i, (STRINGS[i] == null) ? "x" : null, column.get(i));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStringTooLong() throws IOException {
+    new Storage(Storage.Mode.HEAP, 0, m_Folder.getRoot()).newAllocator().strings(1, 2).set(0, "\u20ac");
+  }
+
+  @Test
+  public void testUtf8Length() {
+    for (String s: STRINGS)
+      assertEquals(s, (s == null) ? 0 : s.getBytes(StandardCharsets.UTF_8).length, Allocator.utf8Length(s));
+  }
+
+  @Test
+  public void testBudget() throws IOException {
+    Allocator	allocator;
+
+    allocator = new Storage(Storage.Mode.HEAP, 1000, m_Folder.getRoot()).newAllocator();
+    assertTrue(allocator.doubles(100) instanceof ArrayDoubleColumn);
+    assertEquals(800, allocator.getUsed());
+    assertEquals(0, allocator.getSpilled());
+    // no longer fits
+    assertTrue(allocator.doubles(50) instanceof BufferDoubleColumn);
+    assertEquals(800, allocator.getUsed());
+    assertEquals(400, allocator.getSpilled());
+    // strings get charged with the maximum size as well
+    assertTrue(allocator.strings(10, 18) instanceof ArrayStringColumn);
+    assertEquals(1000, allocator.getUsed());
+    assertTrue(allocator.doubles(1) instanceof BufferDoubleColumn);
+    assertEquals(1000, allocator.getUsed());
+    assertEquals(408, allocator.getSpilled());
+    // spill files get deleted right away
+    assertEquals(0, m_Folder.getRoot().list().length);
+  }
+
+  @Test
+  public void testOffHeapBudget() throws IOException {
+    Allocator	allocator;
+
+    allocator = new Storage(Storage.Mode.OFFHEAP, 800, m_Folder.getRoot()).newAllocator();
+    assertTrue(allocator.doubles(100) instanceof BufferDoubleColumn);
+    assertEquals(800, allocator.getUsed());
+    assertEquals(0, allocator.getSpilled());
+    allocator.doubles(100);
+    assertEquals(800, allocator.getUsed());
+    assertEquals(800, allocator.getSpilled());
+  }
+
+  @Test
+  public void testUnlimited() throws IOException {
+    Allocator	allocator;
+
+    allocator = Storage.DEFAULT.newAllocator();
+    allocator.doubles(1000);
+    allocator.strings(100, 30);
+    assertEquals(8000 + 3200, allocator.getUsed());
+    assertEquals(0, allocator.getSpilled());
+  }
+
+  @Test
+  public void testConcurrentBudget() throws Exception {
+    final Allocator		allocator;
+    ExecutorService		executor;
+    List<Future<Object>>	futures;
+    Callable<Object>		task;
+    int				i;
+
+    allocator = new Storage(Storage.Mode.HEAP, 8000, m_Folder.getRoot()).newAllocator();
+    executor  = Executors.newFixedThreadPool(8);
+    futures   = new ArrayList<>();
+    task      = () -> {
+      for (int n = 0; n < 20; n++)
+	allocator.doubles(10);
+      return null;
+    };
+    try {
+      for (i = 0; i < 8; i++)
+	futures.add(executor.submit(task));
+      for (Future<Object> future: futures)
+	assertNull(future.get());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    // 8 threads x 20 columns x 80 bytes, 100 columns fit exactly
+    assertEquals(8000, allocator.getUsed());
+    assertEquals(4800, allocator.getSpilled());
+  }
+
+  @Test
+  public void testChunked() throws IOException {
+    ChunkedDoubleColumn	doubles;
+    ChunkedStringColumn	strings;
+    Storage[]		storages;
+    DoubleColumn	partD;
+    StringColumn	partS;
+    int			i;
+    int			n;
+
+    storages = storages();
+    doubles  = new ChunkedDoubleColumn();
+    strings  = new ChunkedStringColumn();
+    n        = 0;
+    for (i = 0; i < DOUBLES.length; i++) {
+      // parts of different sizes, backed differently
+      partD = storages[i % storages.length].newAllocator().doubles(i);
+      partS = storages[i % storages.length].newAllocator().strings(i, MAX_BYTES);
+      doubles.add(partD);
+      strings.add(partS);
+      n += i;
+    }
+    assertEquals(n, doubles.size());
+    assertEquals(n, strings.size());
+    for (i = 0; i < n; i++) {
+      doubles.set(i, DOUBLES[i % DOUBLES.length]);
+      strings.set(i, STRINGS[i % STRINGS.length]);
+    }
+    for (i = 0; i < n; i++) {
+      assertEquals("#" + i, Double.doubleToRawLongBits(DOUBLES[i % DOUBLES.length]), Double.doubleToRawLongBits(doubles.get(i)));
+      assertEquals("#" + i, STRINGS[i % STRINGS.length], strings.get(i));
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testChunkedOutOfBounds() {
+    ChunkedDoubleColumn	doubles;
+
+    doubles = new ChunkedDoubleColumn();
+    doubles.add(new ArrayDoubleColumn(3));
+    doubles.get(3);
+  }
+
+  @Test
+  public void testProfile() throws IOException {
+    StringBuilder	csv;
+    List<CSVRecord>	records;
+    Profile		expected;
+    Allocator		allocator;
+    int			i;
+
+    csv = new StringBuilder();
+    for (i = 0; i < 1000; i++)
+      csv.append((i < 500) ? "Morning \u00e4" : "\ud83d\udeb2").append(",2020-01-01T10:")
+	.append(String.format("%02d:%02d", i / 60, i % 60)).append("Z,")
+	.append(47.0 + i * 1e-4).append(",8.0,").append((i % 7 == 0) ? "" : "" + (100 + i * 0.25)).append('\n');
+    records = CSVFormat.DEFAULT
+      .withHeader(Format.KEY_TRACK, Format.KEY_TIME, Generate.KEY_LAT, Generate.KEY_LON, Format.KEY_ELEVATION)
+      .parse(new StringReader(csv.toString()))
+      .getRecords();
+    expected = ProfileEngine.generate(records);
+    for (Storage storage: storages()) {
+      allocator = storage.newAllocator();
+      ProfileAssert.assertSameProfile(expected, ProfileEngine.generate(records, allocator, ErrorPolicy.SKIP));
+      if (storage.getBudget() == 0)
+	assertTrue(storage.toString(), allocator.getSpilled() > 0);
+    }
+  }
+}